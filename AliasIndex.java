@@ -0,0 +1,244 @@
+package imagebooru;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Indice de aliases do dicionario de tags: resolve cada tag até sua tag
+ * canonica (o fim da cadeia de aliases) uma vez só, e responde as consultas
+ * seguintes com uma busca num mapa.<br/><br/>
+ *
+ * A cadeia é seguida pelas chaves (veja ImgTag.getKey()): o alias de uma tag
+ * é trocado pela versão do dicionario com a mesma chave, que pode ter um
+ * alias mais novo que a cópia guardada dentro da tag. Se a chave não estiver
+ * no dicionario, vale o ultimo alias da cópia. Seguindo chaves, uma cadeia
+ * pode fechar um ciclo (a → b → a). Os membros de um ciclo são a propia
+ * canonica, as tags que levam ao ciclo resolvem para a primeira tag do ciclo
+ * que encontram, e os ciclos são listados em {@link #getCycles()}.<br/><br/>
+ *
+ * A resolução é uma busca em profundidade memorizada: cada tag do caminho
+ * recebe o resultado, então cada cadeia é percorrida uma vez. A cada tag
+ * nova ou alterada (veja {@link #add(ImgTag)}), só as tags cuja cadeia passa
+ * por ela são esquecidas, e resolvidas de novo na proxima consulta. Para
+ * manter o indice atualizado com as tags que um PostParser busca, use
+ * <tt>AbstractPostParser.attachAliasIndex()</tt>.<br/><br/>
+ *
+ * Seguro para uso por varias threads.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class AliasIndex {
+    private final HashMap<String,ImgTag> dict = new HashMap<>();
+    private final HashMap<String,String> aliasOf = new HashMap<>();//Chave -> chave do alias, como indexado.
+    private final HashMap<String,List<String>> aliasedBy = new HashMap<>();//Chave -> chaves que apontam para ela.
+    private final HashMap<String,ImgTag> canonical = new HashMap<>();
+    private final LinkedHashMap<String,ImgTags> cycles = new LinkedHashMap<>();//Chave da primeira tag -> ciclo.
+    private long lookups = 0, resolved = 0;
+
+    private Object throwIfNull(Object o){
+        if(o==null) { throw new NullPointerException("Nada de nulls!"); }
+        return o;
+    }
+
+    /**
+     * Cria o indice com as tags de c e resolve todas as cadeias.
+     *
+     * @param c dicionario de tags.
+     */
+    public AliasIndex(Collection<ImgTag> c){
+        addAll(c);
+        resolveAll();
+    }
+
+    public AliasIndex(){
+    }
+
+    //Alimentação:
+
+    /**
+     * Adiciona ou substitui uma tag, esquecendo a canonica de todas as tags
+     * cuja cadeia passa por ela.
+     *
+     * @param t tag nova ou atualizada.
+     */
+    public synchronized void add(ImgTag t){
+        throwIfNull(t);
+        String key = t.getKey();
+        String newAlias = t.getAliasKey();
+        String oldAlias = aliasOf.get(key);
+        ImgTag old = dict.put(key, t);
+        boolean aliasChanged = !Objects.equals(oldAlias, newAlias);
+        if(aliasChanged){
+            if(oldAlias!=null){
+                List<String> l = aliasedBy.get(oldAlias);
+                if(l!=null) { l.remove(key); if(l.isEmpty()) { aliasedBy.remove(oldAlias); } }
+                aliasOf.remove(key);
+            }
+            if(newAlias!=null){
+                aliasOf.put(key, newAlias);
+                addDependent(newAlias, key);
+            }
+        }
+        //A mesma tag com o mesmo alias (só o count mudou): nada a esquecer.
+        if( aliasChanged||(old!=t) ) { invalidateFrom(key); }
+    }
+
+    private void addDependent(String target, String key){
+        List<String> l = aliasedBy.computeIfAbsent(target, k -> new ArrayList<>(2));
+        if(!l.contains(key)) { l.add(key); }
+    }
+
+    /**
+     * @param c tags novas ou atualizadas.
+     */
+    public synchronized void addAll(Collection<ImgTag> c){
+        for(ImgTag t : c) { add(t); }
+    }
+
+    /**
+     * Esquece a canonica de key e de todas as tags que chegam a key.
+     */
+    private void invalidateFrom(String key){
+        canonical.remove(key);
+        if( !aliasedBy.containsKey(key)&&cycles.isEmpty() ) { return; }//Caso comum: ninguém depende dela.
+        ArrayDeque<String> todo = new ArrayDeque<>();
+        HashSet<String> seen = new HashSet<>();
+        todo.add(key);
+        while(!todo.isEmpty()){
+            String k = todo.poll();
+            if(!seen.add(k)) { continue; }
+            canonical.remove(k);
+            List<String> from = aliasedBy.get(k);
+            if(from!=null) { todo.addAll(from); }
+        }
+        //Um ciclo que passava por key pode ter sido desfeito.
+        cycles.values().removeIf(cy -> {
+            for(ImgTag t : cy) { if(seen.contains(t.getKey())) { return true; } }
+            return false;
+        });
+    }
+
+    //Resolução:
+
+    /**
+     * Resolve start pela busca em profundidade memorizada.
+     */
+    private ImgTag resolve(ImgTag start){
+        String startKey = start.getKey();
+        ImgTag done = canonical.get(startKey);
+        if(done!=null) { return done; }
+        if( !start.hasAlias()&&!aliasOf.containsKey(startKey) ) {
+            canonical.put(startKey, start);//Sem alias: sem caminho a montar.
+            return start;
+        }
+        ArrayList<ImgTag> path = new ArrayList<>(4);
+        ArrayList<String> pathKeys = new ArrayList<>(4);
+        HashMap<String,Integer> onPath = null;//Só para cadeias longas.
+        ImgTag cur = start;
+        ImgTag result;
+        while(true){
+            String k = cur.getKey();
+            ImgTag memo = canonical.get(k);
+            if(memo!=null) { result = memo; break; }
+            int at = (onPath!=null) ? onPath.getOrDefault(k, -1) : pathKeys.indexOf(k);
+            if(at>=0){
+                //Ciclo: path[at..] fecham a cadeia. Cada membro é a sua canonica.
+                ImgTags cy = new ImgTags();
+                for(int i=at; i<path.size(); i++){
+                    ImgTag m = path.get(i);
+                    cy.add(m);
+                    canonical.put(m.getKey(), m);
+                }
+                cycles.put(k, cy);
+                result = path.get(at);
+                path.subList(at, path.size()).clear();
+                break;
+            }
+            boolean inDict = (dict.get(k)==cur);
+            String next = inDict ? aliasOf.get(k) : cur.getAliasKey();
+            if(next==null) { result = cur; break; }
+            if(onPath!=null) { onPath.put(k, path.size()); }
+            else if(path.size()==16) {
+                onPath = new HashMap<>();
+                for(int i=0; i<pathKeys.size(); i++) { onPath.put(pathKeys.get(i), i); }
+                onPath.put(k, path.size());
+            }
+            path.add(cur);
+            pathKeys.add(k);
+            ImgTag n = dict.get(next);
+            if(n==null){
+                //Fora do dicionario: vale a cópia guardada na tag, e a 
+                //canonica deve ser esquecida quando a chave aparecer.
+                if(!inDict) { addDependent(next, k); }
+                n = cur.getAlias();
+            }
+            cur = n;
+        }
+        for(String pk : pathKeys.subList(0, path.size())) { canonical.put(pk, result); }
+        canonical.putIfAbsent(startKey, result);
+        resolved += path.size();
+        return result;
+    }
+
+    /**
+     * Resolve todas as tags do dicionario que ainda não foram resolvidas.
+     *
+     * @return quantidade de ciclos conhecidos.
+     */
+    public synchronized int resolveAll(){
+        for(ImgTag t : dict.values()) { resolve(t); }
+        return cycles.size();
+    }
+
+    /**
+     * Retorna a tag canonica de t: o fim da sua cadeia de aliases, na versão
+     * do dicionario. Depois da primeira consulta, custa uma busca no mapa.
+     *
+     * @param t tag.
+     * @return tag canonica, ou t se não houver alias. Não é uma cópia.
+     */
+    public synchronized ImgTag canonical(ImgTag t){
+        throwIfNull(t);
+        lookups++;
+        String key = t.getKey();
+        ImgTag done = canonical.get(key);
+        if(done!=null) { return done; }
+        ImgTag d = dict.get(key);
+        if( (d==null)&&!t.hasAlias() ) { return t; }
+        return resolve( (d!=null) ? d : t );
+    }
+
+    /**
+     * @return os ciclos de aliases encontrados até agora, cada um com as
+     * tags na ordem da cadeia.
+     */
+    public synchronized List<ImgTags> getCycles(){
+        ArrayList<ImgTags> ret = new ArrayList<>();
+        for(ImgTags cy : cycles.values()) { ret.add(new ImgTags(cy)); }
+        return Collections.unmodifiableList(ret);
+    }
+
+    /**
+     * @return quantidade de tags no indice.
+     */
+    public synchronized int size(){
+        return dict.size();
+    }
+
+    /**
+     * @return texto curto com as estatisticas do indice.
+     */
+    public synchronized String getStats(){
+        return String.format("%d tags, %d resolvidas, %d consultas, %d ciclos",
+                dict.size(), resolved, lookups, cycles.size());
+    }
+}
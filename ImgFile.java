@@ -1,5 +1,6 @@
 package imagebooru;
 
+import imagebooru.utils.ImgHeaderSniffer;
 import java.io.File;
 import java.util.Objects;
 
@@ -15,6 +16,25 @@ import java.util.Objects;
 public final class ImgFile {
     private File file;
     private int id;
+    private String booru = null;
+    private ImgFormat format = null;//Detectado sob demanda.
+    private int width = -1, height = -1;
+    
+    /**
+     * Lista os formatos de imagem reconheciveis pelo conteudo do arquivo.
+     * O formato é definido pelos "magic bytes" do inicio do arquivo, e não
+     * pela sua extensão. veja {@link ImgHeaderSniffer ImgHeaderSniffer}.
+     * 
+     * @since 2.5
+     */
+    public enum ImgFormat {
+        fmtUnknown,
+        fmtJpeg,
+        fmtPng,
+        fmtGif,
+        fmtWebp,
+        fmtBmp
+    };
     
     private Object throwIfNull(Object o){
         if(o==null) { throw new NullPointerException("Nada de nulls!"); }
@@ -47,15 +67,54 @@ public final class ImgFile {
      */
     public final static String IllegalCaractersRegex = "\\\\|/|\\*|\\?|\"|\\<|\\>|\\:|\\|";
     
+    /**
+     * Os mesmos caracteres de IllegalCaractersRegex, para busca sem regex.
+     */
+    private final static String IllegalCaracters = "\\/*?\"<>:|";
+    
+    /**
+     * @param c caracter a ser testado.
+     * @return true se c for ilegal em nomes de arquivo Windows.
+     * @since 2.5
+     */
+    public static boolean isIllegalCh(char c){
+        return IllegalCaracters.indexOf(c)>-1;
+    }
+    
     /**
      * Verifica se a String fornecida tem algum caracter ilegal.
-     * O faz via P.O.G. comparando a própia String com sua versão "legal".
+     * Percorre a String uma vez, sem alocar nada.
      * 
      * @param s string a ser testada.
      * @return true se ela conter algum caracter ilegal.
      */
     public static boolean hasIllegalChs(String s){
-        return !s.equals(s.replaceAll(IllegalCaractersRegex, ""));
+        for(int i=0; i<s.length(); i++){
+            if( isIllegalCh(s.charAt(i)) ) { return true; }
+        }
+        return false;
+    }
+    
+    /**
+     * Remove os caracteres ilegais de s. Equivale a 
+     * <tt>s.replaceAll(IllegalCaractersRegex, "")</tt>, mas sem regex, e 
+     * retorna a própia s (sem alocar) se ela não tiver nenhum.
+     * 
+     * @param s string a ser "limpa".
+     * @return s sem caracteres ilegais.
+     * @since 2.5
+     */
+    public static String removeIllegalChs(String s){
+        int i = 0;
+        while( (i<s.length()) && !isIllegalCh(s.charAt(i)) ) { i++; }
+        if(i==s.length()) { return s; }
+        StringBuilder sb = new StringBuilder(s.length()-1);
+        sb.append(s, 0, i);
+        for(; i<s.length(); i++){
+            char c = s.charAt(i);
+            if( !isIllegalCh(c) ) { sb.append(c); }
+        }
+        return sb.toString();
     }
     
     /**
@@ -163,6 +222,33 @@ public final class ImgFile {
         setFilename(new File(filename));
     }
     
+    /**
+     * Construtor apartir de id, Arquivo e formato já detectado.
+     * Evita que o cabeçalho do arquivo seja lido novamente quando quem o
+     * construiu já conhece seu formato.
+     * 
+     * @param id id da imagem em seu respectivo booru.
+     * @param file Arquivo da Imagem.
+     * @param format formato da imagem. Se null, será detectado sob demanda.
+     */
+    public ImgFile(int id, File file, ImgFormat format){
+        this(id, file);
+        this.format = format;
+    }
+    
+    /**
+     * Construtor apartir de id, Arquivo, formato e ImageBooru de origem.
+     * 
+     * @param id id da imagem em seu respectivo booru.
+     * @param file Arquivo da Imagem.
+     * @param format formato da imagem. Se null, será detectado sob demanda.
+     * @param booru URL do ImageBooru de origem. Pode ser null se desconhecido.
+     */
+    public ImgFile(int id, File file, ImgFormat format, String booru){
+        this(id, file, format);
+        this.booru = booru;
+    }
+    
     /*INFERNO DE SETS E GETS!!!*/
 
     /**
@@ -198,4 +284,45 @@ public final class ImgFile {
         this.id = throwIfZeroOrNeg(id);
     }
     
+    /**
+     * @return URL do ImageBooru de origem desta imagem, ou null se desconhecido.
+     */
+    public String getBooru() {
+        return booru;
+    }
+    
+    /**
+     * Retorna o formato real desta imagem, detectado pelo conteudo do
+     * arquivo. Somente o cabeçalho é lido, e só na primeira chamada.
+     * 
+     * @return formato da imagem, ou <tt>fmtUnknown</tt> se não reconhecido.
+     */
+    public ImgFormat getFormat() {
+        if(format==null) { format = ImgHeaderSniffer.sniff(file); }
+        return format;
+    }
+    
+    private void loadDimensions(){
+        if(width>=0) { return; }
+        int[] d = ImgHeaderSniffer.readDimensions(file, getFormat());
+        width  = (d!=null) ? d[0] : 0;
+        height = (d!=null) ? d[1] : 0;
+    }
+    
+    /**
+     * @return largura da imagem em pixels, lida do cabeçalho. 0 se desconhecida.
+     */
+    public int getWidth() {
+        loadDimensions();
+        return width;
+    }
+    
+    /**
+     * @return altura da imagem em pixels, lida do cabeçalho. 0 se desconhecida.
+     */
+    public int getHeight() {
+        loadDimensions();
+        return height;
+    }
+    
 }
@@ -214,10 +214,7 @@ public final class ImgTag {
                 && (t.getBooruURL().equals(getBooruURL())) 
                 && (t.getNome().equals(getNome())) 
                 && (t.getCount()==getCount()) 
-                && ( 
-                        ((t.getAlias()==null)&&(getAlias()==null)) 
-                        || t.getAlias().equals(getAlias()) 
-                )
+                && Objects.equals(t.alias, alias)//Sem cópias.
                 && (t.getType().equals(getType()));
     }
 
@@ -228,11 +225,24 @@ public final class ImgTag {
         hash = 79 * hash + this.getCount();
         hash = 79 * hash + Objects.hashCode(this.getBooruURL());
         hash = 79 * hash + Objects.hashCode(this.getNome());
-        hash = 79 * hash + Objects.hashCode(this.getAlias());
+        hash = 79 * hash + Objects.hashCode(this.alias);
         hash = 79 * hash + (this.getType() != null ? this.getType().hashCode() : 0);
         return hash;
     }
     
+    /**
+     * Retorna uma chave que identifica esta TAG entre versões dela mesma.
+     * Duas ImgTag com a mesma chave representam a mesma TAG do mesmo 
+     * ImageBooru, mesmo que count, tipo ou alias tenham mudado. O nome faz
+     * parte da chave pois alguns ImageBooru(s) não expõem ids de tag (veja
+     * KonachanPostParserImpl).
+     * 
+     * @return "booruURL \t id \t nome".
+     */
+    public String getKey(){
+        return getBooruURL()+"\t"+getId()+"\t"+getNome();
+    }
+    
     /**
      * Retorna a representação em String desta TAG.
      * representação ideal para ser salva em arquivo texto, mas pouco desejavel
@@ -245,8 +255,21 @@ public final class ImgTag {
      */
     @Override
     public String toString(){
-        if(this==null) { return "null"; } //Faz sentido?
-        return String.format("{%d\t%s\t%s\t%d\t%s\t%s}", getId(), getBooruURL(), getNome(), getCount(), getType(), getAlias());
+        StringBuilder sb = new StringBuilder(64+getNome().length()+getBooruURL().length());
+        appendTo(sb);
+        return sb.toString();
+    }
+    
+    /**
+     * Escreve toString() em sb, incluindo os alias, sem Strings 
+     * intermediarias.
+     */
+    private void appendTo(StringBuilder sb){
+        sb.append('{').append(getId()).append('\t').append(getBooruURL()).append('\t')
+          .append(getNome()).append('\t').append(getCount()).append('\t').append(getType()).append('\t');
+        if(alias==null) { sb.append("null"); }
+        else { alias.appendTo(sb); }
+        sb.append('}');
     }
     
     /*Construtores:*/
@@ -258,7 +281,7 @@ public final class ImgTag {
         setNome(source.getNome());
         setCount(source.getCount());
         setType(source.getType());
-        setAlias(source.getAlias());
+        setAlias(source.alias);//setAlias() já copia.
     }
     
     /**
@@ -328,7 +351,16 @@ public final class ImgTag {
         return v;
     }    
     private int intFromString(String s){
-        return Integer.parseInt( s.replaceAll("[^0-9]*","") );
+        //Caminho rapido: só digitos, o caso de todo arquivo salvo.
+        int i = 0;
+        while( (i<s.length()) && (s.charAt(i)>='0') && (s.charAt(i)<='9') ) { i++; }
+        if( (i==s.length()) && (i>0) ) { return Integer.parseInt(s); }
+        StringBuilder sb = new StringBuilder(s.length());
+        for(i=0; i<s.length(); i++){
+            char c = s.charAt(i);
+            if( (c>='0')&&(c<='9') ) { sb.append(c); }
+        }
+        return Integer.parseInt(sb.toString());
     }    
     private Object throwIfNull(Object o){
         if(o==null) { throw new NullPointerException(); }
@@ -433,6 +465,38 @@ public final class ImgTag {
     public ImgTag getAlias() {
         return (alias!=null) ? new ImgTag(alias) : null;
     }
+    
+    /**
+     * @return true se esta ImgTag tem alias. Não copia nada.
+     * @since 2.5
+     */
+    public boolean hasAlias() {
+        return alias!=null;
+    }
+    
+    /**
+     * @return chave (veja getKey()) do alias desta ImgTag, ou null se não
+     * houver alias. Não copia o alias.
+     * @since 2.5
+     */
+    public String getAliasKey() {
+        return (alias!=null) ? alias.getKey() : null;
+    }
+    
+    /**
+     * Retorna o ultimo alias da cadeia de alias desta ImgTag.
+     * Equivale a repetir <tt>getAlias()</tt> até achar uma tag sem alias, 
+     * mas copia só a tag final.
+     * 
+     * @return cópia do ultimo alias, ou a própia tag se não houver alias.
+     * @since 2.5
+     */
+    public ImgTag getFinalAlias() {
+        if(alias==null) { return this; }
+        ImgTag t = alias;
+        while(t.alias!=null) { t = t.alias; }
+        return new ImgTag(t);
+    }
 
     /**
      * Seta o alias desta ImgTag.
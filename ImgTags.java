@@ -19,13 +19,34 @@ public class ImgTags extends ArrayList<ImgTag> {
     
     //To String e auxiliares, unico motivo desta existencia.
     
-    private String semChsIlegais(String s){
-        //Leia essa @#~!* como (\ ou / ou * ou ? ou " ou < ou > ou |).
-        return s.replaceAll(ImgFile.IllegalCaractersRegex,"");
+    /**
+     * Adiciona o nome tn a sb, já tratado: sem espaços nas pontas, espaços do
+     * meio trocados por "_" e sem caracteres ilegais. Equivale a
+     * <tt>semChsIlegais(tn.trim().replaceAll(" ", "_"))</tt>, sem criar 
+     * Strings intermediarias.
+     */
+    static void appendSafeTag(StringBuilder sb, String tn){
+        int b = 0, e = tn.length();
+        while( (b<e) && (tn.charAt(b)<=' ') ) { b++; }
+        while( (e>b) && (tn.charAt(e-1)<=' ') ) { e--; }
+        for(int i=b; i<e; i++){
+            char c = tn.charAt(i);
+            if(c==' ') { sb.append('_'); }
+            else if( !ImgFile.isIllegalCh(c) ) { sb.append(c); }
+        }
     }
     
-    private String safeTag(String tn){
-        return semChsIlegais(tn.trim().replaceAll(" ", "_"));
+    /**
+     * @return tamanho do nome tn depois de tratado por appendSafeTag().
+     */
+    private static int safeTagLength(String tn){
+        int b = 0, e = tn.length(), n = 0;
+        while( (b<e) && (tn.charAt(b)<=' ') ) { b++; }
+        while( (e>b) && (tn.charAt(e-1)<=' ') ) { e--; }
+        for(int i=b; i<e; i++){
+            if( !ImgFile.isIllegalCh(tn.charAt(i)) ) { n++; }
+        }
+        return n;
     }
     
     /**
@@ -40,11 +61,27 @@ public class ImgTags extends ArrayList<ImgTag> {
      */
     @Override
     public String toString(){
-        StringBuilder ret = new StringBuilder();
-        for(ImgTag t : this){
-            ret.append( safeTag(t.getNome()) ).append(" ");
+        if(isEmpty()) { return ""; }
+        StringBuilder ret = new StringBuilder(toStringLength());
+        for(int i=0; i<size(); i++){
+            if(i>0) { ret.append(' '); }
+            appendSafeTag(ret, get(i).getNome());
         }
-        return (ret.length()>0) ? ret.substring(0, ret.length()-1) : "";
+        return ret.toString();
+    }
+    
+    /**
+     * Retorna o tamanho que <tt>toString()</tt> teria, sem gera-lo.
+     * Util para checar limites de tamanho de nomes de arquivo enquanto tags
+     * são removidas.
+     * 
+     * @return <tt>toString().length()</tt>.
+     * @since 2.5
+     */
+    public int toStringLength(){
+        int n = size()-1;
+        for(ImgTag t : this) { n += safeTagLength(t.getNome()); }
+        return Math.max(n, 0);
     }
     
     private void throwIfNull(Object o){
@@ -72,7 +109,7 @@ public class ImgTags extends ArrayList<ImgTag> {
      * @param c Collection qualquer a ser "copiada". Não deve conter nulls.
      */
     public ImgTags(Collection<? extends ImgTag> c){
-        super();
+        super( (c==null) ? 15 : c.size() );
         if(c==null) { return; }
         throwIfHasNull(c);
         super.addAll(c);
@@ -0,0 +1,277 @@
+package imagebooru;
+
+import imagebooru.persistence.AbstractTagsPersistence;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Arvore de prefixos (trie) sobre os nomes das tags de um ImageBooru, para
+ * completar prefixos e encontrar nomes parecidos sem percorrer o dicionario
+ * inteiro.<br/><br/>
+ *
+ * Os nomes são normalizados como aparecem nos nomes de arquivo (veja
+ * {@link #normalize(java.lang.String)}): sem espaços nas pontas, espaços do
+ * meio trocados por "_", sem caracteres ilegais e em minusculas. Assim um
+ * nome tirado de um arquivo encontra a tag original. Se duas tags tiverem o
+ * mesmo nome normalizado, fica a de maior count.<br/><br/>
+ *
+ * Os nós ficam em arrays paralelos (rotulo, primeiro filho, irmão, tag e o
+ * maior count da subarvore), sem um objeto por nó. O maior count permite
+ * entregar as completações em ordem de count visitando só o necessario.
+ * <br/><br/>
+ *
+ * Não é seguro adicionar tags enquanto outras threads consultam; depois de
+ * construida, pode ser consultada por varias threads.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public final class TagTrie {
+    private char[] label = new char[64];
+    private int[] child = new int[64], sibling = new int[64], tag = new int[64], maxCount = new int[64];
+    private int nodes = 1;//0 é a raiz.
+    private final ArrayList<ImgTag> tags = new ArrayList<>();
+
+    public TagTrie(){
+        child[0] = sibling[0] = tag[0] = -1;
+        maxCount[0] = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Normaliza um nome de tag como ele aparece nos nomes de arquivo.
+     *
+     * @param nome nome da tag, ou o trecho de um nome de arquivo.
+     * @return nome normalizado.
+     */
+    public static String normalize(String nome){
+        StringBuilder sb = new StringBuilder(nome.length());
+        ImgTags.appendSafeTag(sb, nome);
+        for(int i=0; i<sb.length(); i++) { sb.setCharAt(i, Character.toLowerCase(sb.charAt(i))); }
+        return sb.toString();
+    }
+
+    //Construção:
+
+    private int newNode(char c, int next){
+        if(nodes==label.length){
+            int n = nodes*2;
+            label = Arrays.copyOf(label, n);
+            child = Arrays.copyOf(child, n);
+            sibling = Arrays.copyOf(sibling, n);
+            tag = Arrays.copyOf(tag, n);
+            maxCount = Arrays.copyOf(maxCount, n);
+        }
+        label[nodes] = c;
+        child[nodes] = -1;
+        sibling[nodes] = next;
+        tag[nodes] = -1;
+        maxCount[nodes] = Integer.MIN_VALUE;
+        return nodes++;
+    }
+
+    /**
+     * @return o filho de node com rotulo c, criado se preciso. Os filhos
+     * ficam em ordem de rotulo.
+     */
+    private int childOrCreate(int node, char c){
+        int prev = -1, cur = child[node];
+        while( (cur>=0)&&(label[cur]<c) ) { prev = cur; cur = sibling[cur]; }
+        if( (cur>=0)&&(label[cur]==c) ) { return cur; }
+        int n = newNode(c, cur);
+        if(prev<0) { child[node] = n; } else { sibling[prev] = n; }
+        return n;
+    }
+
+    private int find(String key){
+        int node = 0;
+        for(int i=0; (i<key.length())&&(node>=0); i++){
+            char c = key.charAt(i);
+            int cur = child[node];
+            while( (cur>=0)&&(label[cur]<c) ) { cur = sibling[cur]; }
+            node = ( (cur>=0)&&(label[cur]==c) ) ? cur : -1;
+        }
+        return node;
+    }
+
+    /**
+     * Adiciona uma tag.
+     *
+     * @param t tag. Não nula.
+     */
+    public void add(ImgTag t){
+        if(t==null) { throw new NullPointerException("Nada de nulls!"); }
+        String key = normalize(t.getNome());
+        int node = 0;
+        maxCount[0] = Math.max(maxCount[0], t.getCount());
+        for(int i=0; i<key.length(); i++){
+            node = childOrCreate(node, key.charAt(i));
+            maxCount[node] = Math.max(maxCount[node], t.getCount());
+        }
+        if(tag[node]<0) {
+            tag[node] = tags.size();
+            tags.add(t);
+        } else if(tags.get(tag[node]).getCount()<t.getCount()) {
+            tags.set(tag[node], t);
+        }
+    }
+
+    /**
+     * Reduz os arrays ao tamanho usado. Chamado ao fim de build(); depois
+     * dele, add() continua funcionando.
+     */
+    public void trimToSize(){
+        label = Arrays.copyOf(label, nodes);
+        child = Arrays.copyOf(child, nodes);
+        sibling = Arrays.copyOf(sibling, nodes);
+        tag = Arrays.copyOf(tag, nodes);
+        maxCount = Arrays.copyOf(maxCount, nodes);
+        tags.trimToSize();
+    }
+
+    /**
+     * Constroi a trie de um ImageBooru em uma passada pelas tags
+     * persistidas, sem montar a lista completa.
+     *
+     * @param src persistencia de onde as tags serão lidas.
+     * @param booruURL URL do ImageBooru, ou null para todas as tags.
+     * @return nova trie.
+     */
+    public static TagTrie build(AbstractTagsPersistence src, final String booruURL){
+        final TagTrie ret = new TagTrie();
+        src.load(new AbstractTagsPersistence.TagVisitor() {
+            @Override
+            public void visit(ImgTag t) {
+                if( (booruURL==null)||booruURL.equals(t.getBooruURL()) ) { ret.add(t); }
+            }
+
+            @Override
+            public void malformed(long recordNo, String raw, RuntimeException cause) {
+                //Ignorado, como em AbstractPostParser.addAllToTagInfo().
+            }
+        });
+        ret.trimToSize();
+        return ret;
+    }
+
+    /**
+     * Constroi uma trie por ImageBooru em uma passada pelas tags
+     * persistidas.
+     *
+     * @param src persistencia de onde as tags serão lidas.
+     * @return mapa de URL do ImageBooru para sua trie.
+     */
+    public static Map<String,TagTrie> buildPerBooru(AbstractTagsPersistence src){
+        final HashMap<String,TagTrie> ret = new HashMap<>();
+        src.load(new AbstractTagsPersistence.TagVisitor() {
+            @Override
+            public void visit(ImgTag t) {
+                ret.computeIfAbsent(t.getBooruURL(), k -> new TagTrie()).add(t);
+            }
+
+            @Override
+            public void malformed(long recordNo, String raw, RuntimeException cause) {
+            }
+        });
+        for(TagTrie t : ret.values()) { t.trimToSize(); }
+        return ret;
+    }
+
+    //Consulta:
+
+    /**
+     * @param nome nome da tag, normalizado ou não.
+     * @return a tag com este nome normalizado, ou null.
+     */
+    public ImgTag get(String nome){
+        int node = find(normalize(nome));
+        return ( (node<0)||(tag[node]<0) ) ? null : tags.get(tag[node]);
+    }
+
+    /**
+     * Retorna as tags que começam com prefix, da maior para a menor count.
+     * Visita somente os ramos que ainda podem ter uma das <tt>limit</tt>
+     * maiores.
+     *
+     * @param prefix prefixo, normalizado ou não.
+     * @param limit quantidade maxima de tags. Maior que 0.
+     * @return tags encontradas, em ordem decrescente de count.
+     */
+    public ImgTags complete(String prefix, int limit){
+        if(limit<=0) { throw new IllegalArgumentException("limit deve ser maior que 0"); }
+        ImgTags ret = new ImgTags();
+        int start = find(normalize(prefix));
+        if(start<0) { return ret; }
+        //Itens { prioridade, indice }: nós pelo maior count da subarvore, e
+        //tags (indice negativo) pelo count.
+        PriorityQueue<long[]> pq = new PriorityQueue<>( (a,b) -> Long.compare(b[0], a[0]) );
+        pq.add(new long[]{ maxCount[start], start });
+        while( !pq.isEmpty()&&(ret.size()<limit) ){
+            long[] e = pq.poll();
+            int i = (int)e[1];
+            if(i<0) { ret.add(tags.get(-i-1)); continue; }
+            if(tag[i]>=0) { pq.add(new long[]{ tags.get(tag[i]).getCount(), -tag[i]-1 }); }
+            for(int c=child[i]; c>=0; c=sibling[c]) { pq.add(new long[]{ maxCount[c], c }); }
+        }
+        return ret;
+    }
+
+    /**
+     * Retorna as tags cujo nome normalizado está a no maximo maxDistance
+     * edições (inserção, remoção ou troca de um caractere) de nome. Percorre
+     * a trie calculando uma linha da distancia de Levenshtein por nó, e
+     * abandona os ramos que já passaram de maxDistance.
+     *
+     * @param nome nome procurado, normalizado ou não.
+     * @param maxDistance distancia maxima. Não negativa.
+     * @param limit quantidade maxima de tags. Maior que 0.
+     * @return tags encontradas, da menor para a maior distancia, e de maior
+     * count entre as de mesma distancia.
+     */
+    public ImgTags fuzzy(String nome, int maxDistance, int limit){
+        if(maxDistance<0) { throw new IllegalArgumentException("maxDistance não deve ser negativo"); }
+        if(limit<=0) { throw new IllegalArgumentException("limit deve ser maior que 0"); }
+        String key = normalize(nome);
+        int[] row = new int[key.length()+1];
+        for(int j=0; j<row.length; j++) { row[j] = j; }
+        ArrayList<long[]> found = new ArrayList<>();//{ distancia, indice da tag }
+        if( (tag[0]>=0)&&(row[key.length()]<=maxDistance) ) { found.add(new long[]{ row[key.length()], tag[0] }); }
+        for(int c=child[0]; c>=0; c=sibling[c]) { fuzzy(c, key, row, maxDistance, found); }
+        found.sort( (a,b) -> (a[0]!=b[0]) ? Long.compare(a[0], b[0])
+                : Integer.compare(tags.get((int)b[1]).getCount(), tags.get((int)a[1]).getCount()) );
+        ImgTags ret = new ImgTags();
+        for(int i=0; (i<found.size())&&(i<limit); i++) { ret.add(tags.get((int)found.get(i)[1])); }
+        return ret;
+    }
+
+    private void fuzzy(int node, String key, int[] prev, int maxDistance, ArrayList<long[]> found){
+        int[] row = new int[prev.length];
+        row[0] = prev[0]+1;
+        int min = row[0];
+        for(int j=1; j<row.length; j++){
+            int sub = prev[j-1]+( (key.charAt(j-1)==label[node]) ? 0 : 1 );
+            row[j] = Math.min(sub, Math.min(prev[j]+1, row[j-1]+1));
+            min = Math.min(min, row[j]);
+        }
+        if(min>maxDistance) { return; }
+        if( (tag[node]>=0)&&(row[key.length()]<=maxDistance) ) { found.add(new long[]{ row[key.length()], tag[node] }); }
+        for(int c=child[node]; c>=0; c=sibling[c]) { fuzzy(c, key, row, maxDistance, found); }
+    }
+
+    /**
+     * @return quantidade de tags.
+     */
+    public int size(){
+        return tags.size();
+    }
+
+    /**
+     * @return quantidade de nós, incluindo a raiz.
+     */
+    public int getNodeCount(){
+        return nodes;
+    }
+}
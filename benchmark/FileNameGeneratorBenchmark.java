@@ -0,0 +1,47 @@
+package imagebooru.benchmark;
+
+import imagebooru.ImgTags;
+import imagebooru.filenamemaker.DefaultFileNameGeneratorImpl;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Geração de nomes de arquivo sobre posts com a distribuição de tags de
+ * TagFixtures. Com <tt>maxLength</tt> pequeno, a maioria dos posts passa
+ * pela remoção de tags.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FileNameGeneratorBenchmark {
+    @Param({"120", "253"})
+    public int maxLength;
+    
+    private DefaultFileNameGeneratorImpl gen;
+    private ImgTags[] posts;
+    private int i = 0;
+    
+    @Setup
+    public void setup(){
+        gen = new DefaultFileNameGeneratorImpl("Konachan.com");
+        gen.setMaxFilenameLength(maxLength);
+        posts = TagFixtures.posts(TagFixtures.dictionary(4096), 1024);
+    }
+    
+    @Benchmark
+    public String generateAsString(){
+        i = (i+1)%posts.length;
+        return gen.generateAsString(i+1, posts[i]);
+    }
+}
@@ -0,0 +1,76 @@
+package imagebooru.benchmark;
+
+import imagebooru.ImgFile;
+import imagebooru.directory.KonachanIdExtractorImpl;
+import imagebooru.directory.KonachanImageDirectoryImpl;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Extração de ids de nomes de arquivo e leitura de um diretório sintetico.
+ * <tt>getIdFromFileName()</tt> é protegido nos ImageDirectory, então é 
+ * medido pelo extrator que eles usam.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class ImageDirectoryBenchmark {
+    @Param({"1000", "10000"})
+    public int files;
+    
+    @Param({"false", "true"})
+    public boolean sniff;
+    
+    private final KonachanIdExtractorImpl extractor = new KonachanIdExtractorImpl();
+    private String[] names;
+    private File dir;
+    private KonachanImageDirectoryImpl imgDir;
+    private int i = 0;
+    
+    @Setup
+    public void setup() throws IOException{
+        names = TagFixtures.konachanFileNames(files);
+        dir = Files.createTempDirectory("imagebooru-bench").toFile();
+        byte[] png = { (byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R' };
+        for(int k=0; k<names.length; k++){
+            File f = new File(dir, names[k].replace('/', '_'));
+            if(!f.exists()) { Files.write(f.toPath(), png); }
+        }
+        imgDir = new KonachanImageDirectoryImpl(dir);
+        imgDir.setSniffFormat(sniff);
+    }
+    
+    @TearDown
+    public void tearDown(){
+        for(File f : dir.listFiles()) { f.delete(); }
+        dir.delete();
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int getIdFromFileName(){
+        i = (i+1)%names.length;
+        return extractor.getIdFromFileName(names[i]);
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Collection<ImgFile> getAllImgFiles(){
+        return imgDir.getAllImgFiles();
+    }
+}
@@ -0,0 +1,57 @@
+package imagebooru.benchmark;
+
+import imagebooru.ImgTag;
+import imagebooru.ImgTags;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Conversões de ImgTag e ImgTags de e para texto: o formato dos dicionarios
+ * em arquivo texto e os nomes de arquivo.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ImgTagBenchmark {
+    private ImgTags dict;
+    private String[] lines;
+    private ImgTags[] posts;
+    private int i = 0;
+    
+    @Setup
+    public void setup(){
+        dict = TagFixtures.dictionary(4096);
+        lines = new String[dict.size()];
+        for(int k=0; k<lines.length; k++) { lines[k] = dict.get(k).toString(); }
+        posts = TagFixtures.posts(dict, 1024);
+    }
+    
+    private int next(int n){
+        return (i = (i+1)%n);
+    }
+    
+    @Benchmark
+    public ImgTag parse(){
+        return new ImgTag( lines[next(lines.length)] );
+    }
+    
+    @Benchmark
+    public String tagToString(){
+        return dict.get( next(dict.size()) ).toString();
+    }
+    
+    @Benchmark
+    public String tagsToString(){
+        return posts[ next(posts.length) ].toString();
+    }
+}
@@ -0,0 +1,175 @@
+package imagebooru.benchmark;
+
+import imagebooru.ImgTags;
+import imagebooru.postparser.AbstractPostParser;
+import imagebooru.postparser.EshuushuuPostParserImpl;
+import imagebooru.postparser.KonachanPostParserImpl;
+import imagebooru.postparser.PostNotFoundException;
+import imagebooru.utils.SimpleMetrics;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Teste de carga de ponta a ponta dos PostParsers contra um StubBooruServer
+ * local. Busca os mesmos posts com KonachanPostParserImpl e
+ * EshuushuuPostParserImpl, com varias threads compartilhando cada parser, e
+ * reporta posts/s e latencias p50/p99 por post.<br/><br/>
+ *
+ * Uso: <tt>LoadTestHarness [posts] [threads] [latMinMs] [latMaxMs] [erro] [429]</tt>.
+ * Padrão: 2000 posts, 16 threads, 5-20 ms, sem erros. Com erros ou 429, o
+ * intervalo entre tentativas dos parsers é reduzido para 50 ms.<br/><br/>
+ *
+ * No e-shuushuu a primeira passada tem o cache de tags vazio, e cada tag
+ * nova custa uma requisição; por isso cada parser é medido duas vezes
+ * (cache frio e cache quente).
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class LoadTestHarness {
+    private final AbstractPostParser parser;
+    private final int threads;
+
+    /**
+     * Resultado de uma execução.
+     */
+    public static final class Result {
+        public final String name;
+        public final int posts, failures;
+        public final long elapsedNanos;
+        public final SimpleMetrics.SimpleTimer latency;
+
+        Result(String name, int posts, int failures, long elapsedNanos, SimpleMetrics.SimpleTimer latency){
+            this.name = name;
+            this.posts = posts;
+            this.failures = failures;
+            this.elapsedNanos = elapsedNanos;
+            this.latency = latency;
+        }
+
+        public double getPostsPerSecond(){
+            return (elapsedNanos==0) ? 0 : posts*1e9/elapsedNanos;
+        }
+
+        @Override
+        public String toString(){
+            return String.format("%-22s %6d posts %5d falhas %9.1f posts/s  p50 %7.2f ms  p99 %7.2f ms  max %7.2f ms",
+                    name, posts, failures, getPostsPerSecond(),
+                    latency.percentile(0.5)/1e6, latency.percentile(0.99)/1e6, latency.getMax()/1e6);
+        }
+    }
+
+    /**
+     * @param parser parser a ser medido. Deve ser seguro para varias threads.
+     * @param threads quantidade de threads buscando posts.
+     */
+    public LoadTestHarness(AbstractPostParser parser, int threads){
+        if(parser==null) { throw new NullPointerException("parser não deve ser null"); }
+        if(threads<=0) { throw new IllegalArgumentException("threads deve ser maior que 0."); }
+        this.parser = parser;
+        this.threads = threads;
+    }
+
+    /**
+     * Busca todos os ids e espera terminar. Um post sem tags conta como
+     * falha (os parsers devolvem lista vazia quando desistem).
+     *
+     * @param name nome da execução, para o relatorio.
+     * @param ids ids a buscar.
+     * @return resultado.
+     * @throws InterruptedException se interrompido esperando.
+     */
+    public Result run(String name, int[] ids) throws InterruptedException{
+        final SimpleMetrics m = new SimpleMetrics();
+        final SimpleMetrics.SimpleTimer latency = m.timer("post");
+        final AtomicInteger next = new AtomicInteger(), failures = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try{
+            List<Future<?>> workers = new ArrayList<>(threads);
+            for(int w=0; w<threads; w++){
+                workers.add( pool.submit(() -> {
+                    int i;
+                    while( (i = next.getAndIncrement())<ids.length ){
+                        long t0 = System.nanoTime();
+                        ImgTags tags;
+                        try{
+                            tags = parser.fetchAllTagsById(ids[i]);
+                        } catch(PostNotFoundException ex) {
+                            tags = null;
+                        }
+                        latency.record(System.nanoTime()-t0);
+                        if( (tags==null)||tags.isEmpty() ) { failures.incrementAndGet(); }
+                    }
+                }) );
+            }
+            for(Future<?> f : workers){
+                try{
+                    f.get();
+                } catch (ExecutionException ex) {
+                    throw new IllegalStateException("Falha no teste de carga: "+ex.getCause(), ex.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return new Result(name, ids.length, failures.get(), System.nanoTime()-start, latency);
+    }
+
+    /**
+     * @param n quantidade de ids.
+     * @param max maior id.
+     * @return n ids entre 1 e max, embaralhados com semente fixa.
+     */
+    public static int[] shuffledIds(int n, int max){
+        Random r = new Random(TagFixtures.seed);
+        int[] ret = new int[n];
+        for(int i=0; i<n; i++) { ret[i] = 1 + (i%max); }
+        for(int i=n-1; i>0; i--){
+            int j = r.nextInt(i+1), t = ret[i];
+            ret[i] = ret[j];
+            ret[j] = t;
+        }
+        return ret;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException{
+        int posts    = (args.length>0) ? Integer.parseInt(args[0]) : 2000;
+        int threads  = (args.length>1) ? Integer.parseInt(args[1]) : 16;
+        long latMin  = (args.length>2) ? Long.parseLong(args[2]) : 5;
+        long latMax  = (args.length>3) ? Long.parseLong(args[3]) : 20;
+        double err   = (args.length>4) ? Double.parseDouble(args[4]) : 0;
+        double limit = (args.length>5) ? Double.parseDouble(args[5]) : 0;
+
+        try( StubBooruServer server = new StubBooruServer(posts, Math.max(1000, posts*2)) ){
+            server.setLatency(latMin, latMax);
+            server.setErrorRate(err);
+            server.setThrottle(limit, 1);
+            int[] ids = shuffledIds(posts, server.getPostCount());
+            System.out.println("Servidor em "+server.getBaseURL()+", "+threads+" threads, "
+                    +latMin+"-"+latMax+" ms, erro "+err+", 429 "+limit);
+
+            AbstractPostParser[] parsers = {
+                new KonachanPostParserImpl(server.getBaseURL()),
+                new EshuushuuPostParserImpl(server.getBaseURL())
+            };
+            String[] names = { "konachan", "e-shuushuu" };
+            for(int p=0; p<parsers.length; p++){
+                if( (err>0)||(limit>0) ) { parsers[p].setRetryDelay(50); }
+                LoadTestHarness h = new LoadTestHarness(parsers[p], threads);
+                System.out.println( h.run(names[p]+" (frio)", ids) );
+                System.out.println( h.run(names[p]+" (quente)", ids) );
+            }
+            System.out.println("Requisições: "+server.getServedCount()+", erros: "+server.getErrorCount()
+                    +", 429: "+server.getThrottledCount());
+        }
+    }
+}
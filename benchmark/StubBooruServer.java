@@ -0,0 +1,299 @@
+package imagebooru.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import imagebooru.ImgTag;
+import imagebooru.ImgTag.TagType;
+import imagebooru.ImgTags;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servidor HTTP local que imita as paginas de konachan.com e e-shuushuu.net
+ * lidas pelos PostParsers, para medir o caminho completo (rede, Jsoup,
+ * cache de tags) sem acessar os sites reais.<br/><br/>
+ *
+ * Serve:
+ * <pre>
+ * /post/show/{id}   post konachan (#tag-sidebar li, data-name/data-type, span com count)
+ * /image/{id}       post e-shuushuu (#quicktag{tipo}_{id} a, href /tags/{idDaTag})
+ * /tags/{id}        tag e-shuushuu (div.title h2, #content div.display dd a "N images")
+ * </pre>
+ * Os posts e tags são gerados por TagFixtures a partir de uma semente fixa,
+ * então o mesmo id sempre tem as mesmas tags. Ids fora de 1..posts dão 404.
+ * <br/><br/>
+ *
+ * Latencia, erros (500) e limitação (429 com Retry-After) são
+ * configuraveis, e podem ser alterados com o servidor rodando. Cada
+ * requisição é atendida em sua propria thread, então a latencia simulada não
+ * limita a vazão do servidor.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class StubBooruServer implements Closeable {
+    static {
+        //Sem isto o HttpServer do JDK sofre com Nagle + ACK atrasado, e toda
+        //resposta leva ~40 ms a mais. Só tem efeito antes do primeiro servidor.
+        if( System.getProperty("sun.net.httpserver.nodelay")==null ) { System.setProperty("sun.net.httpserver.nodelay", "true"); }
+    }
+    
+    private static final String[] konachanTypes = { "general", "artist", "copyright", "character", "circle", "style" };
+
+    private final ImgTags dict;
+    private final ImgTags[] posts;
+    private final HttpServer server;
+    private final ExecutorService pool;
+
+    private volatile long minLatencyMillis = 0, maxLatencyMillis = 0;
+    private volatile double errorRate = 0, throttleRate = 0;
+    private volatile int retryAfterSeconds = 1;
+    private final LongAdder served = new LongAdder(), errors = new LongAdder(), throttled = new LongAdder();
+
+    /**
+     * Gera os dados e inicia o servidor numa porta livre de 127.0.0.1.
+     *
+     * @param posts quantidade de posts, com ids de 1 a posts.
+     * @param tags quantidade de tags distintas.
+     * @throws IOException se não conseguir abrir a porta.
+     */
+    public StubBooruServer(int posts, int tags) throws IOException{
+        if( (posts<=0)||(tags<=0) ) { throw new IllegalArgumentException("posts e tags devem ser maiores que 0."); }
+        this.dict = TagFixtures.dictionary(tags);
+        this.posts = TagFixtures.posts(dict, posts);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+        this.pool = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-booru");
+            t.setDaemon(true);
+            return t;
+        });
+        server.createContext("/post/show/", this::konachanPost);
+        server.createContext("/image/", this::eshuushuuPost);
+        server.createContext("/tags/", this::eshuushuuTag);
+        server.setExecutor(pool);
+        server.start();
+    }
+
+    /**
+     * @return URL de base para os construtores dos PostParsers, sem a barra
+     * final.
+     */
+    public String getBaseURL(){
+        InetSocketAddress a = server.getAddress();
+        return "http://"+a.getAddress().getHostAddress()+":"+a.getPort();
+    }
+
+    /**
+     * @return quantidade de posts servidos. Ids válidos vão de 1 a este valor.
+     */
+    public int getPostCount(){
+        return posts.length;
+    }
+
+    /**
+     * @param id id do post.
+     * @return tags que o servidor devolve para o post.
+     */
+    public ImgTags getPostTags(int id){
+        return posts[id-1];
+    }
+
+    /**
+     * Seta a latencia de cada resposta, sorteada uniformemente no intervalo.
+     *
+     * @param minMillis latencia minima, em ms.
+     * @param maxMillis latencia maxima, em ms. Não menor que minMillis.
+     */
+    public void setLatency(long minMillis, long maxMillis){
+        if( (minMillis<0)||(maxMillis<minMillis) ) { throw new IllegalArgumentException("Intervalo de latencia inválido."); }
+        this.minLatencyMillis = minMillis;
+        this.maxLatencyMillis = maxMillis;
+    }
+
+    /**
+     * @param rate fração das requisições respondidas com 500, entre 0 e 1.
+     */
+    public void setErrorRate(double rate){
+        if( (rate<0)||(rate>1) ) { throw new IllegalArgumentException("rate deve estar entre 0 e 1."); }
+        this.errorRate = rate;
+    }
+
+    /**
+     * @param rate fração das requisições respondidas com 429, entre 0 e 1.
+     * @param retryAfterSeconds valor do cabeçalho Retry-After.
+     */
+    public void setThrottle(double rate, int retryAfterSeconds){
+        if( (rate<0)||(rate>1)||(retryAfterSeconds<0) ) { throw new IllegalArgumentException("Limitação inválida."); }
+        this.throttleRate = rate;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getServedCount(){ return served.sum(); }
+
+    public long getErrorCount(){ return errors.sum(); }
+
+    public long getThrottledCount(){ return throttled.sum(); }
+
+    //Atendimento:
+
+    /**
+     * Aplica latencia e falhas simuladas.
+     *
+     * @return true se já respondeu (com falha).
+     */
+    private boolean simulate(HttpExchange ex) throws IOException{
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        long lat = (maxLatencyMillis>minLatencyMillis) ? r.nextLong(minLatencyMillis, maxLatencyMillis+1) : minLatencyMillis;
+        if(lat>0){
+            try { TimeUnit.MILLISECONDS.sleep(lat); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+        }
+        double p = r.nextDouble();
+        if(p<throttleRate){
+            throttled.increment();
+            ex.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+            respond(ex, 429, "<html><body>Too Many Requests</body></html>");
+            return true;
+        }
+        if(p<throttleRate+errorRate){
+            errors.increment();
+            respond(ex, 500, "<html><body>Internal Server Error</body></html>");
+            return true;
+        }
+        return false;
+    }
+
+    private static void respond(HttpExchange ex, int status, String html) throws IOException{
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        ex.sendResponseHeaders(status, body.length);
+        try( OutputStream out = ex.getResponseBody() ){ out.write(body); }
+    }
+
+    /**
+     * @return o numero no fim do caminho, ou -1.
+     */
+    private static int idFromPath(HttpExchange ex){
+        String path = ex.getRequestURI().getPath();
+        try{
+            return Integer.parseInt( path.substring(path.lastIndexOf('/')+1) );
+        } catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String escape(String s){
+        StringBuilder sb = new StringBuilder(s.length()+8);
+        for(int i=0; i<s.length(); i++){
+            char c = s.charAt(i);
+            switch(c){
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '&': sb.append("&amp;"); break;
+                case '"': sb.append("&quot;"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return html_id do e-shuushuu para o tipo: 1 general, 2 copyright,
+     * 3 artist, 4 character. Tipos que o e-shuushuu não tem viram general.
+     */
+    private static int eshuushuuHtmlId(TagType t){
+        switch(t){
+            case ttCopyright: return 2;
+            case ttArtist: return 3;
+            case ttCaracter: return 4;
+            default: return 1;
+        }
+    }
+
+    private static String konachanType(TagType t){
+        switch(t){
+            case ttArtist: return konachanTypes[1];
+            case ttCopyright: return konachanTypes[2];
+            case ttCaracter: return konachanTypes[3];
+            case ttCircle: return konachanTypes[4];
+            case ttFaults: return konachanTypes[5];
+            default: return konachanTypes[0];
+        }
+    }
+
+    private void konachanPost(HttpExchange ex) throws IOException{
+        served.increment();
+        if(simulate(ex)) { return; }
+        int id = idFromPath(ex);
+        if( (id<1)||(id>posts.length) ) { respond(ex, 404, "<html><body>Not Found</body></html>"); return; }
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("<html><head><title>Konachan.com</title></head><body><div id=\"post-view\">")
+          .append("<ul id=\"tag-sidebar\">");
+        for(ImgTag t : posts[id-1]){
+            String name = escape( t.getNome().replace(' ', '_') );
+            String type = konachanType(t.getType());
+            sb.append("<li class=\"tag-link tag-type-").append(type)
+              .append("\" data-name=\"").append(name).append("\" data-type=\"").append(type).append("\">")
+              .append("<a href=\"/post?tags=").append(name).append("\">").append(name).append("</a> ")
+              .append("<span class=\"post-count\">").append(t.getCount()).append("</span></li>");
+        }
+        sb.append("</ul><img id=\"image\" src=\"/jpeg/").append(id).append(".jpg\"></div></body></html>");
+        respond(ex, 200, sb.toString());
+    }
+
+    private void eshuushuuPost(HttpExchange ex) throws IOException{
+        served.increment();
+        if(simulate(ex)) { return; }
+        int id = idFromPath(ex);
+        if( (id<1)||(id>posts.length) ) { respond(ex, 404, "<html><body>Not Found</body></html>"); return; }
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("<html><head><title>E-Shuushuu</title></head><body><div id=\"content\">")
+          .append("<div class=\"image_thread display\" id=\"i").append(id).append("\"><div class=\"meta\"><dl>");
+        String[] labels = { null, "Tags:", "Source:", "Artist:", "Characters:" };
+        for(int html=1; html<=4; html++){
+            sb.append("<dt>").append(labels[html]).append("</dt><dd class=\"quicktag\" id=\"quicktag")
+              .append(html).append('_').append(id).append("\">");
+            for(ImgTag t : posts[id-1]){
+                if(eshuushuuHtmlId(t.getType())!=html) { continue; }
+                sb.append("<span class=\"tag\">\"<a href=\"/tags/").append(t.getId()).append("\">")
+                  .append(escape(t.getNome())).append("</a>\"</span> ");
+            }
+            sb.append("</dd>");
+        }
+        sb.append("</dl></div></div></div></body></html>");
+        respond(ex, 200, sb.toString());
+    }
+
+    private void eshuushuuTag(HttpExchange ex) throws IOException{
+        served.increment();
+        if(simulate(ex)) { return; }
+        int id = idFromPath(ex);
+        if( (id<1)||(id>dict.size()) ) { respond(ex, 404, "<html><body>Not Found</body></html>"); return; }
+        ImgTag t = dict.get(id-1);
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("<html><head><title>E-Shuushuu</title></head><body><div id=\"content\">")
+          .append("<div class=\"title\"><h2>\"").append(escape(t.getNome())).append("\"</h2></div>")
+          .append("<div class=\"display\"><dl><dt>Images:</dt><dd><a href=\"/search/results/?tags=")
+          .append(id).append("\">").append(t.getCount()).append(" images</a></dd></dl></div>")
+          .append("</div></body></html>");
+        respond(ex, 200, sb.toString());
+    }
+
+    /**
+     * Para o servidor, sem esperar requisições em andamento.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        pool.shutdownNow();
+    }
+}
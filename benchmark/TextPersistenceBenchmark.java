@@ -0,0 +1,61 @@
+package imagebooru.benchmark;
+
+import imagebooru.ImgTags;
+import imagebooru.persistence.TextFileTagsPersistenceImpl;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Save e load de dicionarios com TextFileTagsPersistenceImpl.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TextPersistenceBenchmark {
+    @Param({"10000", "100000"})
+    public int tags;
+    
+    private ImgTags dict;
+    private File loadFile, saveFile;
+    private TextFileTagsPersistenceImpl loader, saver;
+    
+    @Setup
+    public void setup() throws IOException{
+        dict = TagFixtures.dictionary(tags);
+        loadFile = File.createTempFile("imagebooru-bench-load", ".txt");
+        saveFile = File.createTempFile("imagebooru-bench-save", ".txt");
+        loader = new TextFileTagsPersistenceImpl(loadFile.getAbsolutePath());
+        saver = new TextFileTagsPersistenceImpl(saveFile.getAbsolutePath());
+        loader.save(dict);
+    }
+    
+    @TearDown
+    public void tearDown(){
+        loadFile.delete();
+        saveFile.delete();
+    }
+    
+    @Benchmark
+    public ImgTags load(){
+        return loader.load();
+    }
+    
+    @Benchmark
+    public void save(){
+        saver.save(dict);
+    }
+}
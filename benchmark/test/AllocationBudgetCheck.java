@@ -0,0 +1,171 @@
+package imagebooru.benchmark;
+
+import imagebooru.ImgFile;
+import imagebooru.ImgTag;
+import imagebooru.ImgTags;
+import imagebooru.directory.KonachanIdExtractorImpl;
+import imagebooru.directory.KonachanImageDirectoryImpl;
+import imagebooru.filenamemaker.DefaultFileNameGeneratorImpl;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.function.IntUnaryOperator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Verifica quantos bytes as operações mais frequentes alocam por execução,
+ * e falha o teste da operação que passar do seu orçamento. Serve para que
+ * reduções de alocação não se percam em mudanças futuras. Executado pelo
+ * <tt>gradle test</tt> do projeto benchmark.<br/><br/>
+ *
+ * A medida usa <tt>com.sun.management.ThreadMXBean.getThreadAllocatedBytes()</tt>
+ * da thread atual, então só vale para operações que não delegam trabalho
+ * a outras threads. Cada operação é aquecida antes (para que o JIT e os
+ * caches de classe não entrem na conta) e medida como a media de muitas
+ * execuções sobre os dados de TagFixtures. Numa JVM que não mede alocação
+ * por thread, os testes são pulados.<br/><br/>
+ *
+ * Os orçamentos têm folga de uns 30% sobre o medido com o JDK 17; ao
+ * reduzir alocações de uma operação, reduza também o orçamento dela.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class AllocationBudgetCheck {
+    private static final int measured = 50000;
+
+    private static final com.sun.management.ThreadMXBean mx =
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    /**
+     * Resultado da medida de uma operação.
+     */
+    public static final class Result {
+        public final String name;
+        public final long budget;
+        public final double bytesPerOp;
+
+        Result(String name, long budget, double bytesPerOp){
+            this.name = name;
+            this.budget = budget;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        public boolean isWithinBudget(){
+            return bytesPerOp<=budget;
+        }
+
+        @Override
+        public String toString(){
+            return String.format("%-34s %10.1f B/op  orçamento %6d  %s",
+                    name, bytesPerOp, budget, isWithinBudget() ? "ok" : "ESTOUROU");
+        }
+    }
+
+    private long sink = 0;//Impede que o JIT descarte o trabalho medido.
+
+    private ImgTags dict;
+    private ImgTags[] posts;
+    private String[] lines, names;
+    private File dir;
+
+    @BeforeAll
+    public void setup() throws IOException{
+        assumeTrue(mx.isThreadAllocatedMemorySupported(), "JVM não mede alocação por thread.");
+        mx.setThreadAllocatedMemoryEnabled(true);
+        dict = TagFixtures.dictionary(4096);
+        posts = TagFixtures.posts(dict, 1024);
+        lines = new String[dict.size()];
+        for(int i=0; i<lines.length; i++) { lines[i] = dict.get(i).toString(); }
+        names = TagFixtures.konachanFileNames(4096);
+        dir = Files.createTempDirectory("imagebooru-alloc").toFile();
+        for(int i=0; i<1000; i++) { new File(dir, names[i].replace('/', '_')).createNewFile(); }
+    }
+
+    @AfterAll
+    public void cleanup(){
+        if(dir==null) { return; }
+        for(File f : dir.listFiles()) { f.delete(); }
+        dir.delete();
+    }
+
+    /**
+     * Mede op, chamada com i = 0, 1, 2..., e falha se passar do orçamento.
+     *
+     * @param name nome da operação.
+     * @param budget maximo de bytes por operação.
+     * @param opsPerCall quantas operações cada chamada de op representa.
+     * @param calls quantidade de chamadas de aquecimento, e depois medidas.
+     * @param op operação; o retorno é só acumulado.
+     */
+    private void check(String name, long budget, int opsPerCall, int calls, IntUnaryOperator op){
+        long tid = Thread.currentThread().getId();
+        for(int i=0; i<calls; i++) { sink += op.applyAsInt(i); }//Aquecimento.
+        long before = mx.getThreadAllocatedBytes(tid);
+        for(int i=0; i<calls; i++) { sink += op.applyAsInt(i); }
+        long bytes = mx.getThreadAllocatedBytes(tid)-before;
+        Result r = new Result(name, budget, (double)bytes/((long)calls*opsPerCall));
+        System.out.println(r);
+        assertTrue(r.isWithinBudget(), r.toString());
+    }
+
+    @Test
+    public void tagParse(){
+        check("ImgTag(String) por linha", 860, 1, measured,
+                i -> new ImgTag(lines[i%lines.length]).getCount());
+    }
+
+    @Test
+    public void tagToString(){
+        check("ImgTag.toString()", 350, 1, measured,
+                i -> dict.get(i%lines.length).toString().length());
+    }
+
+    @Test
+    public void tagsToString(){
+        check("ImgTags.toString() por post", 850, 1, measured,
+                i -> posts[i%posts.length].toString().length());
+    }
+
+    @Test
+    public void generateAsString(){
+        DefaultFileNameGeneratorImpl gen = new DefaultFileNameGeneratorImpl("Konachan.com");
+        check("generateAsString() por nome", 1550, 1, measured,
+                i -> gen.generateAsString(i+1, posts[i%posts.length]).length());
+    }
+
+    @Test
+    public void generateAsStringTruncated(){
+        DefaultFileNameGeneratorImpl shortGen = new DefaultFileNameGeneratorImpl("Konachan.com");
+        shortGen.setMaxFilenameLength(120);
+        check("generateAsString() com cortes", 1000, 1, measured,
+                i -> shortGen.generateAsString(i+1, posts[i%posts.length]).length());
+    }
+
+    @Test
+    public void konachanIdFromFileName(){
+        KonachanIdExtractorImpl extractor = new KonachanIdExtractorImpl();
+        check("getIdFromFileName() konachan", 530, 1, measured,
+                i -> extractor.getIdFromFileName(names[i%names.length]));
+    }
+
+    @Test
+    public void directoryScan(){
+        int files = dir.listFiles().length;
+        KonachanImageDirectoryImpl imgDir = new KonachanImageDirectoryImpl(dir);
+        check("getAllImgFiles() por arquivo", 1400, files, 40, i -> {
+            Collection<ImgFile> c = imgDir.getAllImgFiles();
+            return c.size();
+        });
+    }
+}
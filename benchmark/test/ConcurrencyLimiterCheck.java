@@ -0,0 +1,115 @@
+package imagebooru.benchmark;
+
+import imagebooru.postparser.AdaptiveConcurrencyLimiter;
+import imagebooru.postparser.KonachanPostParserImpl;
+import imagebooru.utils.ProgressListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica, de ponta a ponta, o AdaptiveConcurrencyLimiter de um
+ * KonachanPostParserImpl buscando posts num StubBooruServer local: o limite
+ * cresce enquanto a latencia fica estavel, cai pela metade a cada 429, e as
+ * requisições seguintes esperam o prazo do Retry-After. Executado pelo
+ * <tt>gradle test</tt> do projeto benchmark.<br/><br/>
+ *
+ * As falhas são observadas pelas notificações "Falha: ..." que o parser
+ * envia ao seu ProgressListener antes de cada nova tentativa, com o
+ * intervalo entre tentativas zerado para que só o limiter espere.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class ConcurrencyLimiterCheck {
+    private StubBooruServer server;
+    private KonachanPostParserImpl parser;
+
+    /**
+     * Chama onFailure a cada tentativa que falhou, antes da seguinte.
+     */
+    private static final class FailureListener implements ProgressListener {
+        private final Runnable onFailure;
+
+        FailureListener(Runnable onFailure){
+            this.onFailure = onFailure;
+        }
+
+        @Override
+        public void doNotifyProgress(String progress_decription) {
+            if(progress_decription.startsWith("Falha")) { onFailure.run(); }
+        }
+
+        @Override
+        public void doNotifyProgress(double percentDone) { }
+
+        @Override
+        public void doNotifyProgress(int itensDone, int itensLeft) { }
+    }
+
+    @BeforeEach
+    public void setup() throws IOException{
+        server = new StubBooruServer(200, 400);
+        server.setLatency(5, 5);
+        parser = new KonachanPostParserImpl(server.getBaseURL());
+        parser.setRetryDelay(0);
+    }
+
+    @AfterEach
+    public void cleanup(){
+        server.close();
+    }
+
+    @Test
+    public void limitGrowsWhileLatencyIsFlat(){
+        AdaptiveConcurrencyLimiter l = new AdaptiveConcurrencyLimiter(2, 1, 64, 2.0);
+        parser.setConcurrencyLimiter(l);
+        for(int id=1; id<=100; id++) { assertFalse(parser.fetchAllTagsById(id).isEmpty(), "post "+id); }
+        assertEquals(0, server.getThrottledCount());
+        assertTrue(l.getLimit()>=6, "limite não cresceu: "+l.getLimit());
+    }
+
+    @Test
+    public void limitHalvesOnEach429(){
+        AdaptiveConcurrencyLimiter l = new AdaptiveConcurrencyLimiter(64, 1, 64, 2.0);
+        parser.setConcurrencyLimiter(l);
+        server.setThrottle(1.0, 0);//Sempre 429, sem prazo: só o limite muda.
+        List<Integer> limits = new ArrayList<>();
+        parser.setProgressListener(new FailureListener(() -> limits.add(l.getLimit())));
+        assertTrue(parser.fetchAllTagsById(1).isEmpty());
+        assertFalse(limits.isEmpty());
+        int expected = 64;
+        for(int limit : limits){
+            expected = Math.max(1, expected/2);
+            assertEquals(expected, limit, "limites após cada 429: "+limits);
+        }
+        assertEquals(0, l.getInFlight());
+    }
+
+    @Test
+    public void requestsWaitForRetryAfter(){
+        AdaptiveConcurrencyLimiter l = new AdaptiveConcurrencyLimiter(8, 1, 64, 2.0);
+        parser.setConcurrencyLimiter(l);
+        server.setThrottle(1.0, 1);
+        long[] failedAt = { 0 };
+        parser.setProgressListener(new FailureListener(() -> {
+            if(failedAt[0]==0) {
+                failedAt[0] = System.nanoTime();
+                server.setThrottle(0, 0);//Só a primeira tentativa recebe 429.
+            }
+        }));
+        assertFalse(parser.fetchAllTagsById(1).isEmpty());
+        long waited = (System.nanoTime()-failedAt[0])/1000000;
+        assertEquals(1, server.getThrottledCount());
+        assertTrue(waited>=900, "nova tentativa não esperou o Retry-After de 1s: "+waited+" ms");
+        assertEquals(4, l.getLimit());
+    }
+}
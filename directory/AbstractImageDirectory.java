@@ -1,10 +1,14 @@
 package imagebooru.directory;
 
 import imagebooru.ImgFile;
+import imagebooru.ImgFile.ImgFormat;
+import imagebooru.utils.ImgHeaderSniffer;
+import imagebooru.utils.Metrics;
+import imagebooru.utils.NoopMetrics;
 import java.io.File;
 import java.io.FileFilter;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
 
 /**
  * Modela o medium de acesso a um diretório com imagens.
@@ -15,6 +19,12 @@ import java.util.LinkedList;
  * Um ImageDirectory deve fornecer uma lista de ImgFiles com os arquivos do
  * diretório que ele conseguiu interpretar, e métodos para renomear as imagens,
  * ou copia-las para outro diretório de saida.
+ * 
+ * Cada leitura do diretório é reportada ao Metrics configurado: arquivos
+ * lidos em <tt>directory.scanned</tt>, imagens aceitas em 
+ * <tt>directory.accepted</tt> e a duração em <tt>directory.scan</tt>. Cada
+ * leitura e cada {@link #rename(imagebooru.ImgFile, java.lang.String) rename()}
+ * tambem geram um evento JFR.
  *
  * @author Guilherme
  * @created 03/03/2013
@@ -22,13 +32,18 @@ import java.util.LinkedList;
  */
 public abstract class AbstractImageDirectory {
     protected File dir;
+    protected boolean sniffFormat = false;
+    protected Metrics metrics = NoopMetrics.instance;
         
-    protected FileFilter filter =  new FileFilter() {
+    /**
+     * Aceita os arquivos que {@link #toImgFile(java.io.File)} converte.
+     * A leitura do diretório usa toImgFile() diretamente; para mudar o que é
+     * aceito, sobrescreva toImgFile().
+     */
+    protected final FileFilter filter =  new FileFilter() {
         @Override
         public boolean accept(File pathname) {
-            if((pathname==null)||!pathname.isFile()) { return false; }
-                return (getIdFromFileName(pathname.getName())>0)
-                    && isImgExt(ImgFile.getExtension(pathname.getName()));
+            return (pathname!=null) && (toImgFile(pathname)!=null);
        }
     };
     
@@ -59,15 +74,136 @@ public abstract class AbstractImageDirectory {
         return dir.getAbsolutePath().length();
     }
     
+    /**
+     * Liga ou desliga a detecção de formato pelo conteudo dos arquivos.
+     * Ligada, a extensão é ignorada e somente os primeiros bytes de cada 
+     * arquivo candidato são lidos para decidir se ele é uma imagem. Assim
+     * arquivos com extensão errada ou incomum são tratados pelo que realmente
+     * são. Desligada (padrão), somente a extensão é considerada.
+     * 
+     * @param sniff true para detectar o formato pelos "magic bytes".
+     */
+    public void setSniffFormat(boolean sniff){
+        this.sniffFormat = sniff;
+    }
+    
+    public boolean isSniffFormat(){
+        return sniffFormat;
+    }
+    
+    /**
+     * @param m novo Metrics. Se null, usado NoopMetrics.
+     * @since 2.5
+     */
+    public void setMetrics(Metrics m){
+        this.metrics = (m==null) ? NoopMetrics.instance : m;
+    }
+    
+    /**
+     * Converte um arquivo do diretório em ImgFile, se ele for aceito.
+     * Usado pela leitura do diretório e por <tt>filter</tt>; aproveita o 
+     * formato detectado para que o cabeçalho não seja lido duas vezes.
+     * 
+     * @param f arquivo candidato.
+     * @return ImgFile de f, ou null se f não for uma imagem deste diretório.
+     */
+    protected ImgFile toImgFile(File f){
+        if(!f.isFile()) { return null; }
+        int id = getIdFromFileName(f.getName());
+        return (id>0) ? toImgFile(f, id, getBooru()) : null;
+    }
+    
+    /**
+     * Converte um arquivo cujo id já foi extraido em ImgFile, se o seu
+     * conteudo (ou extensão, se <tt>sniffFormat</tt> estiver desligado) for
+     * de uma imagem.
+     * 
+     * @param f arquivo candidato.
+     * @param id id já extraido do nome de f.
+     * @param booru URL do ImageBooru de origem de f. Pode ser null.
+     * @return ImgFile de f, ou null se f não for uma imagem.
+     */
+    protected ImgFile toImgFile(File f, int id, String booru){
+        if(!sniffFormat) {
+            return isImgExt(ImgFile.getExtension(f.getName())) 
+                    ? new ImgFile(id, f, null, booru) : null;
+        }
+        ImgFormat fmt = ImgHeaderSniffer.sniff(f);
+        return (fmt!=ImgFormat.fmtUnknown) ? new ImgFile(id, f, fmt, booru) : null;
+    }
+    
+    /**
+     * @return URL do ImageBooru das imagens deste diretório, ou null se 
+     * desconhecido ou variado.
+     */
+    protected String getBooru(){
+        return null;
+    }
+    
     public Collection<ImgFile> getAllImgFiles(){
-        LinkedList<ImgFile> ret = new LinkedList<>();
-        for(File f : dir.listFiles(filter)){
-            ret.add( new ImgFile(
-                    getIdFromFileName(f.getName()),
-                    f));
+        long start = System.nanoTime();
+        DirectoryScanEvent ev = new DirectoryScanEvent();
+        ev.begin();
+        File[] files = dir.listFiles();
+        ArrayList<ImgFile> ret = new ArrayList<>(files.length);
+        ImgFile i;
+        for(File f : files){
+            if( (i = toImgFile(f))!=null ) { ret.add(i); }
+        }
+        metrics.counter("directory.scanned").add(files.length);
+        metrics.counter("directory.accepted").add(ret.size());
+        metrics.timer("directory.scan").record(System.nanoTime()-start);
+        ev.end();
+        if(ev.shouldCommit()){
+            ev.directory = dir.getAbsolutePath();
+            ev.booru = getBooru();
+            ev.files = files.length;
+            ev.accepted = ret.size();
+            ev.sniffFormat = sniffFormat;
+            ev.commit();
         }
         return ret;
     };
+    
+    /**
+     * Renomeia uma imagem deste diretório, com as mesmas regras de
+     * {@link ImgFile#rename(java.lang.String)}, registrando a operação em 
+     * <tt>directory.renamed</tt> (ou <tt>directory.rename.failed</tt>) e num
+     * RenameEvent.
+     * 
+     * @param img imagem a ser renomeada.
+     * @param novoNome novo nome, sem caminho.
+     * @return true se renomear.
+     * @since 2.5
+     */
+    public boolean rename(ImgFile img, String novoNome){
+        throwIfNull(img);
+        RenameEvent ev = new RenameEvent();
+        ev.begin();
+        long bytes = ev.isEnabled() ? new File(img.getFilename()).length() : 0;//Antes de renomear.
+        String outcome = "ok";
+        boolean ok = false;
+        try{
+            ok = img.rename(novoNome);
+            if(!ok) { outcome = "refused"; }
+            return ok;
+        } catch(RuntimeException ex) {
+            outcome = String.valueOf(ex.getMessage());
+            throw ex;
+        } finally {
+            metrics.counter(ok ? "directory.renamed" : "directory.rename.failed").inc();
+            ev.end();
+            if(ev.shouldCommit()){
+                ev.booru = img.getBooru();
+                ev.postId = img.getId();
+                ev.from = img.getFilename();
+                ev.to = novoNome;
+                ev.bytes = bytes;
+                ev.outcome = outcome;
+                ev.commit();
+            }
+        }
+    }
 
     protected abstract int getIdFromFileName(String filename);
 }
@@ -0,0 +1,202 @@
+package imagebooru.directory;
+
+import imagebooru.ImgFile;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Diretório com imagens de varios ImageBooru(s) misturadas.
+ * Cada nome de arquivo é despachado, numa unica passada, para o IdExtractor
+ * do ImageBooru ao qual pertence. O despacho é feito por uma arvore de 
+ * prefixos (trie) montada no registro dos extratores, de modo que cada 
+ * arquivo é testado somente pelo extrator que o reconhece, e não por todos.
+ * <br/><br/>
+ * 
+ * Os prefixos são comparados sem diferenciar maiusculas, e o caracter 
+ * <tt>'#'</tt> num prefixo casa com qualquer digito, o que permite registrar
+ * formatos como o do e-shuushuu ("####-##-##-"). Quando mais de um prefixo
+ * casa, vence o mais longo.<br/><br/>
+ * 
+ * Formatos que não ficam no inicio do nome (como o do konachan.com, que pode
+ * ter lixo antes do header) são registrados sem prefixo, veja
+ * {@link #registerUnanchored(java.lang.String, imagebooru.directory.IdExtractor)}.
+ * Estes são tentados, na ordem de registro, somente quando a trie não 
+ * reconhece o arquivo.<br/><br/>
+ * 
+ * Cada ImgFile retornado é marcado com a URL do ImageBooru de origem, veja
+ * {@link ImgFile#getBooru()}.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class CompositeImageDirectoryImpl extends AbstractImageDirectory {
+    
+    /** Registro de um extrator, guardado no nó final do seu prefixo. */
+    private static final class Registration {
+        final String booru;
+        final IdExtractor extractor;
+        Registration(String booru, IdExtractor extractor){
+            this.booru = booru;
+            this.extractor = extractor;
+        }
+    }
+    
+    /** Nó da trie. Poucos filhos por nó, então arrays e busca linear bastam. */
+    private static final class Node {
+        char[] keys = new char[0];
+        Node[] kids = new Node[0];
+        Node digit = null;//Filho para o coringa '#'.
+        Registration reg = null;
+        
+        Node child(char c){
+            for(int i=0; i<keys.length; i++){ if(keys[i]==c) { return kids[i]; } }
+            return null;
+        }
+        
+        Node childOrNew(char c){
+            if(c=='#') { return (digit!=null) ? digit : (digit = new Node()); }
+            Node n = child(c);
+            if(n!=null) { return n; }
+            keys = Arrays.copyOf(keys, keys.length+1);
+            kids = Arrays.copyOf(kids, kids.length+1);
+            keys[keys.length-1] = c;
+            return (kids[kids.length-1] = new Node());
+        }
+    }
+    
+    private final Node root = new Node();
+    private final ArrayList<Registration> unanchored = new ArrayList<>();
+    
+    private static char fold(char c){
+        return Character.toLowerCase(c);
+    }
+    
+    /**
+     * Registra um extrator de id para os arquivos que começam com prefix.
+     * Registrar novamente o mesmo prefixo substitui o registro anterior.
+     * 
+     * @param prefix prefixo dos nomes de arquivo. '#' casa com qualquer digito.
+     * @param booru URL do ImageBooru de origem dos arquivos com este prefixo.
+     * @param extractor extrator de id para estes arquivos.
+     * @return este objeto, para encadear registros.
+     */
+    public CompositeImageDirectoryImpl register(String prefix, String booru, IdExtractor extractor){
+        if( (prefix==null)||(extractor==null) ) { throw new NullPointerException("nada de nulls"); }
+        if( prefix.isEmpty() ) { throw new IllegalArgumentException("prefix não deve ser vazio"); }
+        Node n = root;
+        for(int i=0; i<prefix.length(); i++) { n = n.childOrNew(fold(prefix.charAt(i))); }
+        n.reg = new Registration(booru, extractor);
+        return this;
+    }
+    
+    /**
+     * Registra um extrator de id para arquivos cujo formato pode aparecer em
+     * qualquer posição do nome. Estes extratores são tentados, na ordem de 
+     * registro, quando nenhum prefixo registrado casa com o nome, ou quando
+     * o extrator do prefixo não reconhece o id.
+     * 
+     * @param booru URL do ImageBooru de origem dos arquivos reconhecidos.
+     * @param extractor extrator de id, que procura o formato no nome todo.
+     * @return este objeto, para encadear registros.
+     */
+    public CompositeImageDirectoryImpl registerUnanchored(String booru, IdExtractor extractor){
+        if(extractor==null) { throw new NullPointerException("nada de nulls"); }
+        unanchored.add(new Registration(booru, extractor));
+        return this;
+    }
+    
+    /**
+     * Registra os ImageBooru(s) conhecidos: konachan.com (e suas variações
+     * de nome), e-shuushuu e yande.re. O konachan.com é registrado também 
+     * sem prefixo, pois seus arquivos podem ter lixo antes do header, como 
+     * aceito por {@link KonachanImageDirectoryImpl}.
+     * 
+     * @return este objeto, para encadear registros.
+     */
+    public final CompositeImageDirectoryImpl registerDefaults(){
+        IdExtractor konachan = new KonachanIdExtractorImpl();
+        for(String lixo : new String[]{ "", "_" }){
+            for(String sep : new String[]{ ".", "_", "-", "" }){
+                register(lixo+"konachan"+sep+"com", "http://konachan.com", konachan);
+            }
+        }
+        register("####-##-##-", "http://e-shuushuu.net", new EShuuShuuIdExtractorImpl());
+        register("yande.re", "https://yande.re", new MoebooruIdExtractorImpl("yande.re"));
+        registerUnanchored("http://konachan.com", konachan);
+        return this;
+    }
+    
+    /**
+     * Busca o registro do prefixo mais longo que casa com o inicio de s.
+     * Segue primeiro o caracter literal e depois o coringa de digitos.
+     */
+    private Registration match(Node n, String s, int pos){
+        Registration r;
+        if(pos<s.length()){
+            char c = s.charAt(pos);
+            Node next = n.child(fold(c));
+            if( (next!=null) && ((r = match(next, s, pos+1))!=null) ) { return r; }
+            if( (n.digit!=null) && (c>='0') && (c<='9') 
+                    && ((r = match(n.digit, s, pos+1))!=null) ) { return r; }
+        }
+        return n.reg;
+    }
+    
+    private Registration match(String filename){
+        return match(root, filename, 0);
+    }
+    
+    /**
+     * Encontra o registro que reconhece o id de filename: primeiro o do 
+     * prefixo, depois os sem prefixo.
+     * 
+     * @param id recebe o id extraido, em id[0].
+     * @return registro que reconheceu o arquivo, ou null.
+     */
+    private Registration recognize(String filename, int[] id){
+        Registration r = match(filename);
+        if( (r!=null) && ((id[0] = r.extractor.getIdFromFileName(filename))>0) ) { return r; }
+        for(Registration u : unanchored){
+            if( (r!=null) && (u.extractor==r.extractor) ) { continue; }//Já tentado.
+            if( (id[0] = u.extractor.getIdFromFileName(filename))>0 ) { return u; }
+        }
+        return null;
+    }
+
+    @Override
+    protected int getIdFromFileName(String filename) {
+        int[] id = new int[1];
+        return (recognize(filename, id)!=null) ? id[0] : -1;
+    }
+
+    @Override
+    protected ImgFile toImgFile(File f) {
+        if(!f.isFile()) { return null; }
+        int[] id = new int[1];
+        Registration r = recognize(f.getName(), id);
+        return (r!=null) ? toImgFile(f, id[0], r.booru) : null;
+    }
+    
+    /**
+     * Constroi um diretório composto, já com os ImageBooru(s) conhecidos 
+     * registrados. veja {@link #registerDefaults()}.
+     * 
+     * @param dir diretório com as imagens.
+     */
+    public CompositeImageDirectoryImpl(File dir) {
+        this(dir, true);
+    }
+    
+    /**
+     * Constroi um diretório composto.
+     * 
+     * @param dir diretório com as imagens.
+     * @param defaults se true, registra os ImageBooru(s) conhecidos.
+     */
+    public CompositeImageDirectoryImpl(File dir, boolean defaults) {
+        super(dir);
+        if(defaults) { registerDefaults(); }
+    }
+}
@@ -0,0 +1,34 @@
+package imagebooru.directory;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de uma leitura completa de um diretório de imagens.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+@Name("imagebooru.DirectoryScan")
+@Label("Directory Scan")
+@Category({"ImageBooru", "Directory"})
+@Description("Leitura de um diretório de imagens.")
+final class DirectoryScanEvent extends jdk.jfr.Event {
+    @Label("Directory")
+    String directory;
+    
+    @Label("Booru")
+    String booru;
+    
+    @Label("Files")
+    int files;
+    
+    @Label("Accepted")
+    int accepted;
+    
+    @Label("Sniff Format")
+    boolean sniffFormat;
+}
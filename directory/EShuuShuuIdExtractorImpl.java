@@ -0,0 +1,31 @@
+package imagebooru.directory;
+
+/**
+ * Extrai o id de imagens baixadas do e-shuushuu, cujo nome tem o formato
+ * "nnnn-nn-nn-[i]*.ext".
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class EShuuShuuIdExtractorImpl implements IdExtractor {
+    
+    /**
+     * Retorna o id de uma imagem com o nome no formato esperado.
+     * Dada uma Imagem com o nome no formato "nnnn-nn-nn-[i]*.ext",
+     * retorna o id dessa imagem ([i]*).
+     * 
+     * @param filename nome do arquivo.
+     * @return id extraido
+     */
+    @Override
+    public int getIdFromFileName(String filename) {
+        if( (filename.length()<13) || !filename.contains(".") ) { return -1; }
+        filename = filename.substring(11, filename.lastIndexOf("."));
+        try{
+            return Integer.parseInt(filename);
+        } catch(NumberFormatException ex){
+            return -1;
+        }
+    }
+}
@@ -5,6 +5,8 @@ import java.io.File;
 
 public class EShuuShuuImageDirectoryImpl extends AbstractImageDirectory {
     
+    private static final IdExtractor extractor = new EShuuShuuIdExtractorImpl();
+    
     /**
      * Retorna o id de uma imagem com o nome no formato esperado.
      * Dada uma Imagem com o nome no formato "nnnn-nn-nn-[i]*.ext",
@@ -12,16 +14,16 @@ public class EShuuShuuImageDirectoryImpl extends AbstractImageDirectory {
      * 
      * @param filename nome do arquivo.
      * @return id extraido
+     * @see EShuuShuuIdExtractorImpl
      */
     @Override
     protected int getIdFromFileName(String filename) {
-        if( (filename.length()<13) || !filename.contains(".") ) { return -1; }
-        filename = filename.substring(11, filename.lastIndexOf("."));
-        try{
-            return Integer.parseInt(filename);
-        } catch(NumberFormatException ex){
-            return -1;
-        }
+        return extractor.getIdFromFileName(filename);
+    }
+
+    @Override
+    protected String getBooru() {
+        return "http://e-shuushuu.net";
     }
 
     public EShuuShuuImageDirectoryImpl(File dir) {
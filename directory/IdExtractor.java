@@ -0,0 +1,21 @@
+package imagebooru.directory;
+
+/**
+ * Extrai o id de uma imagem de um ImageBooru a partir do seu nome de 
+ * arquivo.
+ * Separado de AbstractImageDirectory para que a mesma lógica possa ser usada
+ * tanto por um diretório de um unico ImageBooru quanto por diretórios que 
+ * misturam imagens de varios, veja {@link CompositeImageDirectoryImpl}.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public interface IdExtractor {
+    
+    /**
+     * @param filename nome do arquivo, sem o diretório.
+     * @return id extraido, ou um valor menor/igual a 0 se não reconhecido.
+     */
+    public int getIdFromFileName(String filename);
+}
@@ -0,0 +1,43 @@
+package imagebooru.directory;
+
+/**
+ * Extrai o id de imagens nomeadas no formato MoeBooru, "pref id tag1 tag2",
+ * como as baixadas do yande.re ou geradas por 
+ * {@link imagebooru.filenamemaker.DefaultFileNameGeneratorImpl}.
+ * O prefixo é comparado sem diferenciar maiusculas, e pode estar separado do
+ * id por qualquer quantidade de " ", "_" ou "-".
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class MoebooruIdExtractorImpl implements IdExtractor {
+    private final String prefix;
+    
+    /**
+     * @param prefix prefixo que precede o id nos nomes de arquivo, ex. "yande.re".
+     */
+    public MoebooruIdExtractorImpl(String prefix){
+        if(prefix==null) { throw new NullPointerException("prefix não deve ser null"); }
+        this.prefix = prefix;
+    }
+
+    private static boolean isDigit(char c){
+        return (c>='0') && (c<='9');
+    }
+
+    @Override
+    public int getIdFromFileName(String filename) {
+        if( !filename.regionMatches(true, 0, prefix, 0, prefix.length()) ) { return -1; }
+        int i = prefix.length(), len = filename.length();
+        //pula separadores.
+        while( (i<len) && (" _-".indexOf(filename.charAt(i))>-1) ) { i++; }
+        //acumula os digitos do id.
+        long id = 0;
+        int start = i;
+        while( (i<len) && isDigit(filename.charAt(i)) && (id<=Integer.MAX_VALUE) ) {
+            id = id*10 + (filename.charAt(i++)-'0');
+        }
+        return ( (i>start)&&(id<=Integer.MAX_VALUE) ) ? (int)id : -1;
+    }
+}
@@ -0,0 +1,39 @@
+package imagebooru.directory;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR da renomeação de uma imagem.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+@Name("imagebooru.Rename")
+@Label("Rename")
+@Category({"ImageBooru", "Directory"})
+@Description("Renomeação de uma imagem.")
+final class RenameEvent extends jdk.jfr.Event {
+    @Label("Booru")
+    String booru;
+    
+    @Label("Post Id")
+    int postId;
+    
+    @Label("From")
+    String from;
+    
+    @Label("To")
+    String to;
+    
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+    
+    @Label("Outcome")
+    String outcome;
+}
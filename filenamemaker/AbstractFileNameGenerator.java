@@ -3,6 +3,8 @@ package imagebooru.filenamemaker;
 import imagebooru.ImgFile;
 import imagebooru.ImgTag;
 import imagebooru.ImgTags;
+import imagebooru.utils.Metrics;
+import imagebooru.utils.NoopMetrics;
 
 /**
  * Modela um Gerador de Nomes de Arquivo no formato MoeBooru.
@@ -24,6 +26,10 @@ import imagebooru.ImgTags;
  * 
  * Os critérios para estas decisões são dependentes da implementação usada.<br/><br/>
  * 
+ * Implementações devem reportar cada nome gerado ao Metrics configurado, no
+ * timer <tt>filenamemaker.generate</tt> (a taxa dele é a de nomes por 
+ * segundo).<br/><br/>
+ * 
  * @author Guilherme
  * @created 23/02/2013
  */
@@ -33,6 +39,8 @@ public abstract class AbstractFileNameGenerator {
     private String pref;
     
     protected int maxFilenameLength = maxFilenameLength_base;
+    protected Metrics metrics = NoopMetrics.instance;
+    protected Metrics.Timer generateTimer = metrics.timer("filenamemaker.generate");
     
     protected static final ImgTag tagme = new ImgTag(
             Integer.MAX_VALUE,//Com sorte, nenhum ImageBooru usara este id.
@@ -60,15 +68,14 @@ public abstract class AbstractFileNameGenerator {
     /**
      * Retorna uma String sem nenhum caracter "Ilegal" em nomes de
      * Arquivos Windows.
-     * É realizado um <tt>replaceAll()</tt> na String fornecida para remover
-     * todas as ocorrencias de caracteres considerados Illegais em nomes de
-     * arquivo.
+     * Remove todas as ocorrencias de caracteres considerados Illegais em 
+     * nomes de arquivo, com {@link ImgFile#removeIllegalChs(java.lang.String) ImgFile.removeIllegalChs()}.
      *
      * @param s String a ser "limpa"
      * @return s sem caracteres considerados especiais em nomes de arquivo.
      */
     protected final String semChsIlegais(String s){
-        return s.replaceAll(ImgFile.IllegalCaractersRegex, "");
+        return ImgFile.removeIllegalChs(s);
     }
     
     /**
@@ -82,7 +89,7 @@ public abstract class AbstractFileNameGenerator {
      * @return o nome fornecido pronto para ser adicionado a um FileName.
      */
     protected final String cleanTagName(String tagName){
-        return semChsIlegais( tagName.trim().replaceAll(" ", "_") );
+        return semChsIlegais( tagName.trim().replace(' ', '_') );
     }
     
     /**
@@ -117,6 +124,17 @@ public abstract class AbstractFileNameGenerator {
         return (maxFilenameLength=value);
     }
     
+    /**
+     * Seta o Metrics deste FileNameGenerator.
+     * 
+     * @param m novo Metrics. Se null, usado NoopMetrics.
+     * @since 2.5
+     */
+    public void setMetrics(Metrics m){
+        this.metrics = (m==null) ? NoopMetrics.instance : m;
+        this.generateTimer = metrics.timer("filenamemaker.generate");
+    }
+    
     /**
      * Retorna o prefixo usado por este objeto. 
      *
@@ -1,11 +1,10 @@
 package imagebooru.filenamemaker;
 
+import imagebooru.AliasIndex;
 import imagebooru.ImgFile;
 import imagebooru.ImgTag;
 import imagebooru.ImgTags;
 import java.util.Comparator;
-import java.util.regex.Pattern;
-import sun.misc.Regexp;
 
 
 /**
@@ -34,6 +33,7 @@ public class DefaultFileNameGeneratorImpl extends AbstractFileNameGenerator {
     protected int curId;
     
     private boolean has_SeeSource;
+    private AliasIndex aliasIndex = null;
     
     protected static final Comparator CompareTags = new Comparator() {
         @Override
@@ -58,14 +58,28 @@ public class DefaultFileNameGeneratorImpl extends AbstractFileNameGenerator {
     
     /**
      * Resolve uma ImgTag até seu ultimo alias.
-     * Basicamente, substitui a tag por seu alias até achar uma tag sem alias. 
+     * Com um AliasIndex (veja <tt>setAliasIndex()</tt>), é uma consulta ao
+     * indice, que segue a versão mais nova de cada alias. Sem ele, segue as
+     * cópias guardadas dentro da tag.
      * 
      * @param tag tag a ser resolvida.
      * @return ultimo alias de tag, ou a própia tag se não houver alias.
      */
     private ImgTag dereferenceAlias(ImgTag tag){
-        while( tag.getAlias()!=null ) { tag=tag.getAlias(); }
-        return tag;
+        if(aliasIndex!=null) { return aliasIndex.canonical(tag); }
+        return tag.getFinalAlias();
+    }
+    
+    /**
+     * Seta o indice de aliases usado para trocar as tags por seus alias.
+     * Pode ser compartilhado entre geradores e PostParsers.
+     * 
+     * @param idx indice. Se null (padrão), os alias guardados em cada tag
+     * são seguidos diretamente.
+     * @since 2.5
+     */
+    public void setAliasIndex(AliasIndex idx){
+        this.aliasIndex = idx;
     }
     
     /**
@@ -120,7 +134,9 @@ public class DefaultFileNameGeneratorImpl extends AbstractFileNameGenerator {
      * @return numero de caracteres do nome de arquivo sem tags e com ext.
      */
     private int calcBaseFilename(){
-        return (getPrefix()+prefIdSep+curId+" ").length() +5;//.jpeg
+        int digits = 1;
+        for(int v=curId; v>=10; v/=10) { digits++; }
+        return getPrefix().length()+prefIdSep.length()+digits+1 +5;//" ", .jpeg
     }
     
     /**
@@ -132,7 +148,7 @@ public class DefaultFileNameGeneratorImpl extends AbstractFileNameGenerator {
      * @return numero de caracteres do nome de arquivo resultante.
      */
     private int calcFileNameFor(ImgTags tags){
-        return calcBaseFilename() + tags.toString().length();
+        return calcBaseFilename() + tags.toStringLength();
     }
     
     /**
@@ -234,10 +250,27 @@ public class DefaultFileNameGeneratorImpl extends AbstractFileNameGenerator {
      */
     @Override
     public String generateAsString(int id, ImgTags tags) {
+        long start = System.nanoTime();
+        FileNameGenerationEvent ev = new FileNameGenerationEvent();
+        ev.begin();
         curId = throwIfZeroOrNeg(id);
         throwIfNull(tags);
+        int received = tags.size();
         tags = (tags.size()>0) ? filterTags(tags) : noTags();
-        return String.format("%s%s%d %s", getPrefix(), prefIdSep, curId, tags);
+        String ret = new StringBuilder(maxFilenameLength).append(getPrefix()).append(prefIdSep)
+                .append(curId).append(' ').append(tags).toString();
+        generateTimer.record(System.nanoTime()-start);
+        ev.end();
+        if(ev.shouldCommit()){
+            ev.prefix = getPrefix();
+            ev.postId = id;
+            ev.tagCount = received;
+            ev.keptTags = tags.size();
+            ev.nameLength = ret.length();
+            ev.outcome = (tags.contains(see_source)) ? "truncated" : "ok";
+            ev.commit();
+        }
+        return ret;
     }
 
     /**
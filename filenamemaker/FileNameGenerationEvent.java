@@ -0,0 +1,39 @@
+package imagebooru.filenamemaker;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR da geração de um nome de arquivo.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+@Name("imagebooru.FileNameGeneration")
+@Label("File Name Generation")
+@Category({"ImageBooru", "FileNameMaker"})
+@Description("Geração de um nome de arquivo a partir das tags de um post.")
+final class FileNameGenerationEvent extends jdk.jfr.Event {
+    @Label("Prefix")
+    String prefix;
+    
+    @Label("Post Id")
+    int postId;
+    
+    @Label("Tag Count")
+    @Description("Tags recebidas.")
+    int tagCount;
+    
+    @Label("Kept Tags")
+    @Description("Tags que couberam no nome.")
+    int keptTags;
+    
+    @Label("Name Length")
+    int nameLength;
+    
+    @Label("Outcome")
+    String outcome;
+}
@@ -0,0 +1,98 @@
+package imagebooru.persistence;
+
+import imagebooru.ImgTag;
+import imagebooru.ImgTags;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Modela um armazenamento local das tags de cada post.
+ * Enquanto AbstractTagsPersistence guarda o dicionario de tags, este guarda
+ * o resultado caro de um <tt>fetchAllTagsById()</tt>: quais tags pertencem a 
+ * qual post, identificado por (ImageBooru, id do post), e quando isso foi 
+ * buscado. Assim um PostParser pode responder sem ir à rede de novo.<br/><br/>
+ * 
+ * Não guarda as tags inteiras, somente referencias (id e nome) que devem 
+ * ser resolvidas no cache de tags do PostParser.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @see imagebooru.postparser.AbstractPostParser
+ * @since 2.5
+ */
+public abstract class AbstractPostTagsStore {
+    
+    /**
+     * Referencia para uma tag do dicionario: id e nome bastam para 
+     * encontra-la no cache de qualquer PostParser.
+     */
+    public static final class TagRef {
+        private final int id;
+        private final String nome;
+        
+        public TagRef(int id, String nome){
+            if(nome==null) { throw new NullPointerException("nome não deve ser null"); }
+            this.id = id;
+            this.nome = nome;
+        }
+        
+        public int getId() { return id; }
+        public String getNome() { return nome; }
+    }
+    
+    /**
+     * Tags de um post, como foram armazenadas.
+     */
+    public static final class StoredPost {
+        private final String booru;
+        private final int postId;
+        private final long fetchedAt;
+        private final List<TagRef> tags;
+        
+        public StoredPost(String booru, int postId, long fetchedAt, List<TagRef> tags){
+            this.booru = booru;
+            this.postId = postId;
+            this.fetchedAt = fetchedAt;
+            this.tags = Collections.unmodifiableList(tags);
+        }
+        
+        public String getBooru() { return booru; }
+        public int getPostId() { return postId; }
+        
+        /** @return momento da busca na rede, em ms desde a epoch. */
+        public long getFetchedAt() { return fetchedAt; }
+        
+        /** @return referencias das tags do post, na ordem em que foram obtidas. */
+        public List<TagRef> getTags() { return tags; }
+    }
+    
+    /**
+     * Converte uma lista de tags em referencias.
+     * 
+     * @param tags tags de um post.
+     * @return lista de referencias, na mesma ordem.
+     */
+    public static List<TagRef> toRefs(ImgTags tags){
+        ArrayList<TagRef> ret = new ArrayList<>(tags.size());
+        for(ImgTag t : tags) { ret.add( new TagRef(t.getId(), t.getNome()) ); }
+        return ret;
+    }
+    
+    /**
+     * @param booru URL do ImageBooru do post.
+     * @param postId id do post.
+     * @return tags armazenadas do post, ou null se ele nunca foi armazenado.
+     */
+    public abstract StoredPost get(String booru, int postId);
+    
+    /**
+     * Armazena (ou substitui) as tags de um post.
+     * 
+     * @param booru URL do ImageBooru do post.
+     * @param postId id do post.
+     * @param tags tags do post.
+     * @param fetchedAt momento em que as tags foram buscadas, em ms desde a epoch.
+     */
+    public abstract void put(String booru, int postId, ImgTags tags, long fetchedAt);
+}
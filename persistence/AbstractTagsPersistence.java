@@ -1,6 +1,11 @@
 package imagebooru.persistence;
 
+import imagebooru.ImgTag;
 import imagebooru.ImgTags;
+import imagebooru.utils.Metrics;
+import imagebooru.utils.NoopMetrics;
+import java.util.LinkedHashMap;
+import java.util.stream.Stream;
 
 /**
  * Modela um médium de persistencia de tags.
@@ -8,12 +13,188 @@ import imagebooru.ImgTags;
  * persistencia capaz de armazenar uma lista de tags. Necessidade de 
  * versionamento e/ou compatibilidade com versões anteriores ficam a gosto da
  * implementação usada.
+ * 
+ * Alem de <tt>load()</tt>, que materializa todas as tags numa lista, oferece
+ * duas formas de leitura em fluxo: {@link #load(TagVisitor)}, que entrega 
+ * cada tag (ou registro inválido) a um visitante, e {@link #stream()}. As
+ * implementações padrão destas apenas percorrem <tt>load()</tt>; 
+ * implementações que podem fazer melhor devem sobrescreve-las.
+ * 
+ * Implementações devem medir cada save e load com <tt>beginSave()</tt>/
+ * <tt>beginLoad()</tt> e <tt>recordSave()</tt>/<tt>recordLoad()</tt> (ou
+ * <tt>recordFailure()</tt>), que geram um TagsPersistenceEvent no JFR e 
+ * alimentam os timers <tt>persistence.save</tt>/<tt>persistence.load</tt> e
+ * os contadores <tt>persistence.saved</tt>/<tt>persistence.loaded</tt> (tags)
+ * e <tt>persistence.failures</tt>.
  *
  * @author Guilherme
  * @created 03/03/2013
  * @since 2.2
  */
 public abstract class AbstractTagsPersistence {
+    protected Metrics metrics = NoopMetrics.instance;
+    
+    /**
+     * Visitante para leitura de tags em fluxo.
+     * As chamadas são sempre feitas pela thread que chamou 
+     * <tt>load(TagVisitor)</tt>, na ordem em que os registros estão 
+     * persistidos, então o visitante não precisa ser thread-safe.
+     * 
+     * @since 2.5
+     */
+    public interface TagVisitor {
+        
+        /**
+         * @param tag tag lida.
+         */
+        public void visit(ImgTag tag);
+        
+        /**
+         * Chamado para cada registro que não pode ser convertido em ImgTag.
+         * A leitura continua no registro seguinte.
+         * 
+         * @param recordNo numero do registro (linha, para arquivos texto), a partir de 1.
+         * @param raw conteudo do registro, se disponivel.
+         * @param cause motivo da falha.
+         */
+        public void malformed(long recordNo, String raw, RuntimeException cause);
+    }
+    
+    /**
+     * @param m novo Metrics. Se null, usado NoopMetrics.
+     * @since 2.5
+     */
+    public void setMetrics(Metrics m){
+        this.metrics = (m==null) ? NoopMetrics.instance : m;
+    }
+    
+    private TagsPersistenceEvent begin(String operation){
+        TagsPersistenceEvent ev = new TagsPersistenceEvent();
+        ev.operation = operation;
+        ev.startNanos = System.nanoTime();
+        ev.begin();
+        return ev;
+    }
+    
+    /**
+     * Inicia a medição de um save. Deve ser terminada com 
+     * <tt>recordSave()</tt> ou <tt>recordFailure()</tt>.
+     * 
+     * @return evento JFR do save.
+     * @since 2.5
+     */
+    protected TagsPersistenceEvent beginSave(){
+        return begin("save");
+    }
+    
+    /**
+     * Inicia a medição de um load. Deve ser terminada com 
+     * <tt>recordLoad()</tt> ou <tt>recordFailure()</tt>.
+     * 
+     * @return evento JFR do load.
+     * @since 2.5
+     */
+    protected TagsPersistenceEvent beginLoad(){
+        return begin("load");
+    }
+    
+    private void end(TagsPersistenceEvent ev, long tags, long bytes, String outcome){
+        ev.end();
+        if(ev.shouldCommit()){
+            ev.backend = getClass().getSimpleName();
+            ev.tagCount = tags;
+            ev.bytes = bytes;
+            ev.outcome = outcome;
+            ev.commit();
+        }
+    }
+    
+    /**
+     * @param ev evento de <tt>beginSave()</tt>.
+     * @param tags quantidade de tags salvas.
+     * @param bytes tamanho do que foi gravado, ou -1 se desconhecido.
+     * @since 2.5
+     */
+    protected void recordSave(TagsPersistenceEvent ev, long tags, long bytes){
+        end(ev, tags, bytes, "ok");
+        metrics.timer("persistence.save").record(System.nanoTime()-ev.startNanos);
+        metrics.counter("persistence.saved").add(tags);
+    }
+    
+    /**
+     * @param ev evento de <tt>beginLoad()</tt>.
+     * @param tags quantidade de tags lidas.
+     * @param bytes tamanho do que foi lido, ou -1 se desconhecido.
+     * @since 2.5
+     */
+    protected void recordLoad(TagsPersistenceEvent ev, long tags, long bytes){
+        end(ev, tags, bytes, "ok");
+        metrics.timer("persistence.load").record(System.nanoTime()-ev.startNanos);
+        metrics.counter("persistence.loaded").add(tags);
+    }
+    
+    /**
+     * @param ev evento de <tt>beginSave()</tt> ou <tt>beginLoad()</tt>.
+     * @param cause motivo da falha.
+     * @since 2.5
+     */
+    protected void recordFailure(TagsPersistenceEvent ev, Throwable cause){
+        end(ev, 0, -1, String.valueOf(cause.getMessage()));
+        metrics.counter("persistence.failures").inc();
+    }
+    
     public abstract void save(ImgTags tags);
     public abstract ImgTags load();
+    
+    /**
+     * @return true se já existe algo persistido para ser carregado.
+     * @since 2.5
+     */
+    public boolean exists(){
+        return true;
+    }
+    
+    /**
+     * Adiciona tags às já persistidas, substituindo as de mesma chave
+     * (veja {@link ImgTag#getKey()}).
+     * A implementação padrão carrega tudo, mescla e salva tudo novamente;
+     * implementações que gravam incrementalmente devem sobrescreve-la.
+     * 
+     * @param tags tags novas ou atualizadas.
+     * @since 2.5
+     */
+    public void append(ImgTags tags){
+        LinkedHashMap<String,ImgTag> all = new LinkedHashMap<>();
+        if(exists()) {
+            for(ImgTag t : load()) { all.put(t.getKey(), t); }
+        }
+        for(ImgTag t : tags) { all.put(t.getKey(), t); }
+        save( new ImgTags(all.values()) );
+    }
+    
+    /**
+     * Lê todas as tags persistidas, entregando-as uma a uma a v, sem montar
+     * uma lista intermediaria.
+     * Falhas de acesso ao médium levam TagsPersistenceException; registros
+     * inválidos são reportados individualmente em 
+     * {@link TagVisitor#malformed(long, java.lang.String, java.lang.RuntimeException) malformed()}.
+     * 
+     * @param v visitante que recebe as tags.
+     * @since 2.5
+     */
+    public void load(TagVisitor v){
+        for(ImgTag t : load()) { v.visit(t); }
+    }
+    
+    /**
+     * Retorna as tags persistidas como um Stream.
+     * O Stream pode manter o médium aberto, então deve ser fechado, de 
+     * preferencia com try-with-resources. Registros inválidos são ignorados.
+     * 
+     * @return Stream com as tags persistidas.
+     * @since 2.5
+     */
+    public Stream<ImgTag> stream(){
+        return load().stream();
+    }
 }
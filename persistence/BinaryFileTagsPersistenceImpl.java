@@ -0,0 +1,360 @@
+package imagebooru.persistence;
+
+import imagebooru.ImgTag;
+import imagebooru.ImgTag.TagType;
+import imagebooru.ImgTags;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Persistencia de Tags em Arquivo binario compacto, lido via memory-map.
+ * Diferente de TextFileTagsPersistenceImpl, não repete a URL do ImageBooru
+ * nem o alias inteiro em cada tag: URLs e nomes ficam em tabelas de strings,
+ * ids e counts são gravados como varints, e aliases são referencias para
+ * outros registros do mesmo arquivo.<br/><br/>
+ *
+ * Formato (inteiros de tamanho fixo em big-endian):
+ * <pre>
+ * header:  magic, versão, nURLs, nNomes, nRegistros, nRaizes,
+ *          offURLs, offNomes, offIndice       (9 x int)
+ * tabela de strings (URLs e depois nomes):
+ *          n x int com o offset de cada string, e em seguida cada string
+ *          como varint(tamanho) + bytes UTF-8
+ * indice:  nRegistros x int com o offset de cada registro
+ * registro: varint(id) varint(url) varint(nome) varint(count) byte(tipo)
+ *          varint(alias), onde alias é 0 para nenhum, ou indice+1
+ * </pre>
+ * Os primeiros <tt>nRaizes</tt> registros são as tags salvas, na ordem em que
+ * foram salvas. Os demais existem somente como alias de outros.<br/><br/>
+ *
+ * {@link #open()} mapeia o arquivo e decodifica cada registro somente quando
+ * ele é pedido, então abrir um dicionario, mesmo com milhões de tags, é
+ * praticamente instantaneo. {@link #load()} continua disponivel e decodifica
+ * tudo.<br/><br/>
+ *
+ * <tt>save()</tt> grava num temporario e o troca pelo arquivo. Em sistemas
+ * POSIX, uma visão aberta continua lendo o arquivo antigo. No Windows, um
+ * arquivo mapeado não pode ser substituido: enquanto houver uma visão de 
+ * open() (ou um stream() ainda em uso) alcançavel, save() falha. Não há como
+ * fechar um mapeamento em Java; ele só é liberado quando a visão é coletada, 
+ * então descarte as visões antes de salvar.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @see VarInts
+ * @since 2.5
+ */
+public class BinaryFileTagsPersistenceImpl extends AbstractTagsPersistence {
+    private static final int magic = 0x49425447;//"IBTG"
+    private static final int version = 1;
+    private static final int headerLength = 9*4;
+    private static final TagType[] tagTypes = TagType.values();
+
+    private File persist;
+
+    /**
+     * Visão somente-leitura de um dicionario de tags mapeado em memória.
+     * Cada chamada a <tt>get()</tt> decodifica o registro pedido direto do
+     * arquivo mapeado, sem cache de ImgTag. Somente leituras absolutas são
+     * feitas no buffer, então pode ser usada por varias threads.
+     */
+    public static final class MappedTags {
+        private final ByteBuffer buf;
+        private final int urlCount, nameCount, recordCount, rootCount;
+        private final int urlOff, nameOff, indexOff;
+        private final String[] urls;//Poucas, decodificadas uma vez só.
+
+        private MappedTags(ByteBuffer buf){
+            this.buf = buf;
+            if( (buf.capacity()<headerLength) || (buf.getInt(0)!=magic) ) {
+                throw new IllegalArgumentException("Arquivo não é um dicionario de tags binario.");
+            }
+            if( buf.getInt(4)!=version ) {
+                throw new IllegalArgumentException("Versão de dicionario não suportada: "+buf.getInt(4));
+            }
+            urlCount    = buf.getInt(8);
+            nameCount   = buf.getInt(12);
+            recordCount = buf.getInt(16);
+            rootCount   = buf.getInt(20);
+            urlOff      = buf.getInt(24);
+            nameOff     = buf.getInt(28);
+            indexOff    = buf.getInt(32);
+            urls = new String[urlCount];
+        }
+
+        private String readString(int tableOff, int i){
+            int[] pos = { buf.getInt(tableOff + 4*i) };
+            int len = VarInts.read(buf, pos);
+            byte[] b = new byte[len];
+            for(int k=0; k<len; k++) { b[k] = buf.get(pos[0]+k); }
+            return new String(b, StandardCharsets.UTF_8);
+        }
+
+        private String url(int i){
+            String u = urls[i];
+            if(u==null) { urls[i] = u = readString(urlOff, i); }
+            return u;
+        }
+
+        private ImgTag decode(int i, int depth){
+            if( (i<0)||(i>=recordCount) ) { throw new IndexOutOfBoundsException("registro "+i); }
+            if( depth>recordCount ) { throw new IllegalStateException("Ciclo de alias no registro "+i); }
+            int[] pos = { buf.getInt(indexOff + 4*i) };
+            int id    = VarInts.read(buf, pos);
+            int url   = VarInts.read(buf, pos);
+            int nome  = VarInts.read(buf, pos);
+            int count = VarInts.read(buf, pos);
+            TagType type = tagTypes[ buf.get(pos[0]++) ];
+            int alias = VarInts.read(buf, pos);
+            return new ImgTag(id, url(url), readString(nameOff, nome), count, type,
+                    (alias==0) ? null : decode(alias-1, depth+1));
+        }
+
+        /**
+         * @return quantidade de tags salvas (sem contar as que só existem como alias).
+         */
+        public int size(){
+            return rootCount;
+        }
+
+        /**
+         * Decodifica a i-esima tag salva.
+         *
+         * @param i indice da tag, na ordem em que foram salvas.
+         * @return nova ImgTag com o conteudo do registro.
+         */
+        public ImgTag get(int i){
+            if( (i<0)||(i>=rootCount) ) { throw new IndexOutOfBoundsException("tag "+i); }
+            return decode(i, 0);
+        }
+
+        /**
+         * @return quantidade de nomes distintos no dicionario.
+         */
+        public int nameCount(){
+            return nameCount;
+        }
+
+        /**
+         * Decodifica todas as tags salvas.
+         *
+         * @return lista com todas as tags, na ordem em que foram salvas.
+         */
+        public ImgTags toImgTags(){
+            ImgTags ret = new ImgTags();
+            ret.ensureCapacity(rootCount);
+            for(int i=0; i<rootCount; i++) { ret.add( decode(i, 0) ); }
+            return ret;
+        }
+    }
+
+    private Object throwIfNull(Object o){
+        if(o==null) { throw new NullPointerException("Nada de nulls!"); }
+        return o;
+    }
+
+    public BinaryFileTagsPersistenceImpl(String filename){
+        throwIfNull(filename);
+        persist = new File(filename);
+    }
+
+    //Escrita:
+
+    private static int intern(Map<String,Integer> table, String s){
+        Integer i = table.get(s);
+        if(i==null) { table.put(s, i = table.size()); }
+        return i;
+    }
+
+    /**
+     * Escreve uma tabela de strings: offsets absolutos e em seguida os dados.
+     */
+    private static byte[] stringTable(Map<String,Integer> table, int baseOff){
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int[] offs = new int[table.size()];
+        int dataBase = baseOff + 4*offs.length, i = 0;
+        for(String s : table.keySet()){
+            offs[i++] = dataBase + data.size();
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            VarInts.write(data, b.length);
+            data.write(b, 0, b.length);
+        }
+        ByteBuffer ret = ByteBuffer.allocate(4*offs.length + data.size());
+        for(int o : offs) { ret.putInt(o); }
+        ret.put(data.toByteArray());
+        return ret.array();
+    }
+
+    @Override
+    public boolean exists() {
+        return persist.exists();
+    }
+
+    @Override
+    public void save(ImgTags tags) {
+        TagsPersistenceEvent ev = beginSave();
+        //Registros: primeiro as raizes, na ordem recebida, depois os alias.
+        ArrayList<ImgTag> records = new ArrayList<>(tags);
+        HashMap<ImgTag,Integer> indexes = new HashMap<>();
+        for(int i=records.size()-1; i>=0; i--) { indexes.put(records.get(i), i); }
+        ArrayList<Integer> aliasRefs = new ArrayList<>(records.size());
+        for(int i=0; i<records.size(); i++){
+            ImgTag alias = records.get(i).getAlias();
+            Integer ref = null;
+            if(alias!=null){
+                ref = indexes.get(alias);
+                if(ref==null){
+                    indexes.put(alias, ref = records.size());
+                    records.add(alias);//Seu alias será resolvido nesta mesma iteração.
+                }
+            }
+            aliasRefs.add( (ref==null) ? 0 : ref+1 );
+        }
+        //Tabelas de strings.
+        LinkedHashMap<String,Integer> urls = new LinkedHashMap<>(), names = new LinkedHashMap<>();
+        ByteArrayOutputStream data = new ByteArrayOutputStream(records.size()*8);
+        int[] recOffs = new int[records.size()];
+        for(int i=0; i<records.size(); i++){
+            ImgTag t = records.get(i);
+            recOffs[i] = data.size();
+            VarInts.write(data, t.getId());
+            VarInts.write(data, intern(urls, t.getBooruURL()));
+            VarInts.write(data, intern(names, t.getNome()));
+            VarInts.write(data, t.getCount());
+            data.write(t.getType().ordinal());
+            VarInts.write(data, aliasRefs.get(i));
+        }
+        byte[] urlTable = stringTable(urls, headerLength);
+        byte[] nameTable = stringTable(names, headerLength + urlTable.length);
+        int indexOff = headerLength + urlTable.length + nameTable.length;
+        int dataOff = indexOff + 4*recOffs.length;
+        //Grava num temporario e troca, para não corromper um arquivo mapeado
+        //(POSIX; no Windows a troca falha se o arquivo estiver mapeado).
+        File tmp = new File(persist.getAbsolutePath()+".tmp");
+        try {
+            try( DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream( new FileOutputStream(tmp) ) ) ){
+                out.writeInt(magic);
+                out.writeInt(version);
+                out.writeInt(urls.size());
+                out.writeInt(names.size());
+                out.writeInt(records.size());
+                out.writeInt(tags.size());
+                out.writeInt(headerLength);
+                out.writeInt(headerLength + urlTable.length);
+                out.writeInt(indexOff);
+                out.write(urlTable);
+                out.write(nameTable);
+                for(int o : recOffs) { out.writeInt(dataOff + o); }
+                data.writeTo(out);
+            }
+            try{
+                Files.move(tmp.toPath(), persist.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (AccessDeniedException ex) {
+                tmp.delete();
+                throw new AccessDeniedException(persist.getPath(), null,
+                        "o arquivo pode estar mapeado por uma visão de open() ainda em uso");
+            }
+        } catch (IOException ex) {
+            recordFailure(ev, ex);
+            throw new TagsPersistenceException("Não Foi possivel salvar!\n"
+                    +ex.getMessage(), ex);
+        }
+        recordSave(ev, tags.size(), persist.length());
+    }
+
+    //Leitura:
+
+    /**
+     * Mapeia o arquivo em memória sem decodificar nenhuma tag.
+     * Em sistemas POSIX, o mapeamento continua valido mesmo após o arquivo
+     * ser substituido por um novo <tt>save()</tt>; para ver o novo conteudo,
+     * chame open() novamente. No Windows, save() falha enquanto a visão 
+     * retornada for alcançavel; veja a descrição da classe.
+     *
+     * @return visão somente-leitura do dicionario salvo.
+     */
+    public MappedTags open() {
+        try( FileChannel ch = FileChannel.open(persist.toPath(), StandardOpenOption.READ) ){
+            if( ch.size()>Integer.MAX_VALUE ) {
+                throw new IOException("Arquivo grande demais para ser mapeado.");
+            }
+            MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return new MappedTags(mb);
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel localizar o arquivo!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public ImgTags load() {
+        TagsPersistenceEvent ev = beginLoad();
+        try{
+            ImgTags ret = open().toImgTags();
+            recordLoad(ev, ret.size(), persist.length());
+            return ret;
+        } catch(RuntimeException ex) {
+            recordFailure(ev, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void load(TagVisitor v) {
+        throwIfNull(v);
+        TagsPersistenceEvent ev = beginLoad();
+        long visited = 0;
+        MappedTags m;
+        try{
+            m = open();
+        } catch(RuntimeException ex) {
+            recordFailure(ev, ex);
+            throw ex;
+        }
+        for(int i=0; i<m.size(); i++){
+            ImgTag t;
+            try{
+                t = m.get(i);
+            } catch(RuntimeException ex) {
+                v.malformed(i+1, null, ex);
+                continue;
+            }
+            v.visit(t);
+            visited++;
+        }
+        recordLoad(ev, visited, persist.length());
+    }
+
+    /**
+     * Retorna as tags do dicionario como um Stream, decodificando cada uma
+     * somente quando consumida. Divide bem em paralelo, pois cada registro é
+     * acessado diretamente pelo indice.
+     *
+     * @return Stream com as tags salvas.
+     */
+    @Override
+    public Stream<ImgTag> stream() {
+        MappedTags m = open();
+        return IntStream.range(0, m.size()).mapToObj(m::get);
+    }
+
+}
@@ -0,0 +1,327 @@
+package imagebooru.persistence;
+
+import imagebooru.ImgTag;
+import imagebooru.ImgTags;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Persistencia de Tags em blocos comprimidos independentemente.
+ * As tags são gravadas no mesmo formato texto de TextFileTagsPersistenceImpl
+ * (uma <tt>ImgTag.toString()</tt> por linha), mas agrupadas em blocos de
+ * <tt>recordsPerBlock</tt> registros, cada um comprimido com deflate. Como a
+ * URL do ImageBooru e os nomes de TagType se repetem em toda linha, o
+ * arquivo fica muitas vezes menor.<br/><br/>
+ *
+ * Formato:
+ * <pre>
+ * bloco*   : deflate(linhas em UTF-8)
+ * indice   : int nBlocos, e para cada bloco
+ *            long offset, int tamanhoComprimido, int tamanhoOriginal, int nRegistros
+ * rodapé   : long offsetDoIndice, int magic
+ * </pre>
+ * Os blocos são comprimidos em paralelo no save() e descomprimidos em
+ * paralelo no load(), mas sempre gravados e entregues na ordem original.
+ * Qualquer bloco pode ser lido sozinho com {@link #readBlock(int)}.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class BlockCompressedTagsPersistenceImpl extends AbstractTagsPersistence {
+    private static final int magic = 0x49424243;//"IBBC"
+    private static final int footerLength = 12;
+    private static final int indexEntryLength = 20;
+
+    private final File persist;
+    private final int recordsPerBlock;
+
+    /**
+     * Entrada do indice de blocos.
+     */
+    private static final class Block {
+        long offset;
+        int compressed, raw, records;
+        byte[] data;//Somente durante o save().
+    }
+
+    private Object throwIfNull(Object o){
+        if(o==null) { throw new NullPointerException("Nada de nulls!"); }
+        return o;
+    }
+
+    /**
+     * Constroi a persistencia com blocos de 4096 tags.
+     *
+     * @param filename nome do arquivo.
+     */
+    public BlockCompressedTagsPersistenceImpl(String filename){
+        this(filename, 4096);
+    }
+
+    /**
+     * @param filename nome do arquivo.
+     * @param recordsPerBlock quantidade de tags por bloco. Maior que 0.
+     */
+    public BlockCompressedTagsPersistenceImpl(String filename, int recordsPerBlock){
+        throwIfNull(filename);
+        if(recordsPerBlock<=0) { throw new IllegalArgumentException("recordsPerBlock deve ser maior que 0."); }
+        this.persist = new File(filename);
+        this.recordsPerBlock = recordsPerBlock;
+    }
+
+    //Compressão:
+
+    private static Block compress(List<ImgTag> tags){
+        StringBuilder sb = new StringBuilder(tags.size()*64);
+        for(ImgTag t : tags) { sb.append(t).append('\n'); }
+        byte[] raw = sb.toString().getBytes(StandardCharsets.UTF_8);
+        Deflater d = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try{
+            d.setInput(raw);
+            d.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length/4+64);
+            byte[] buf = new byte[8192];
+            while(!d.finished()) { out.write(buf, 0, d.deflate(buf)); }
+            Block b = new Block();
+            b.data = out.toByteArray();
+            b.compressed = b.data.length;
+            b.raw = raw.length;
+            b.records = tags.size();
+            return b;
+        } finally {
+            d.end();
+        }
+    }
+
+    private static String[] inflate(byte[] data, int rawLength) throws DataFormatException{
+        Inflater inf = new Inflater();
+        try{
+            inf.setInput(data);
+            byte[] raw = new byte[rawLength];
+            int n = 0;
+            while( (n<rawLength) && !inf.finished() ){
+                int r = inf.inflate(raw, n, rawLength-n);
+                if( (r==0) && (inf.needsInput()||inf.needsDictionary()) ) { break; }
+                n += r;
+            }
+            if(n!=rawLength) { throw new DataFormatException("Bloco truncado."); }
+            return new String(raw, StandardCharsets.UTF_8).split("\n");
+        } finally {
+            inf.end();
+        }
+    }
+
+    @Override
+    public boolean exists() {
+        return persist.exists();
+    }
+
+    @Override
+    public void save(ImgTags tags) {
+        TagsPersistenceEvent ev = beginSave();
+        //Comprime em paralelo.
+        ArrayList<CompletableFuture<Block>> jobs = new ArrayList<>();
+        for(int i=0; i<tags.size(); i+=recordsPerBlock){
+            final List<ImgTag> slice = tags.subList(i, Math.min(i+recordsPerBlock, tags.size()));
+            jobs.add( CompletableFuture.supplyAsync(() -> compress(slice)) );
+        }
+        File tmp = new File(persist.getAbsolutePath()+".tmp");
+        try{
+            try( DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream( new FileOutputStream(tmp), 1<<16 ) ) ){
+                //Grava em ordem, conforme cada bloco fica pronto.
+                ArrayList<Block> index = new ArrayList<>(jobs.size());
+                long pos = 0;
+                for(CompletableFuture<Block> j : jobs){
+                    Block b = j.join();
+                    b.offset = pos;
+                    out.write(b.data);
+                    pos += b.compressed;
+                    b.data = null;
+                    index.add(b);
+                }
+                out.writeInt(index.size());
+                for(Block b : index){
+                    out.writeLong(b.offset);
+                    out.writeInt(b.compressed);
+                    out.writeInt(b.raw);
+                    out.writeInt(b.records);
+                }
+                out.writeLong(pos);
+                out.writeInt(magic);
+            }
+            Files.move(tmp.toPath(), persist.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | CompletionException ex) {
+            tmp.delete();
+            recordFailure(ev, ex);
+            throw new TagsPersistenceException("Não Foi possivel salvar!\n"
+                    +ex.getMessage(), ex);
+        }
+        recordSave(ev, tags.size(), persist.length());
+    }
+
+    //Leitura:
+
+    private static void readFully(FileChannel ch, ByteBuffer b, long pos) throws IOException{
+        while( b.hasRemaining() ){
+            if( ch.read(b, pos+b.position())<0 ) { throw new IOException("Fim de arquivo inesperado."); }
+        }
+    }
+
+    private static Block[] readIndex(FileChannel ch) throws IOException{
+        long size = ch.size();
+        if(size<footerLength+4) { throw new IOException("Arquivo pequeno demais."); }
+        ByteBuffer footer = ByteBuffer.allocate(footerLength);
+        readFully(ch, footer, size-footerLength);
+        if( footer.getInt(8)!=magic ) { throw new IOException("Arquivo não é de blocos comprimidos."); }
+        long indexOff = footer.getLong(0);
+        ByteBuffer head = ByteBuffer.allocate(4);
+        readFully(ch, head, indexOff);
+        int n = head.getInt(0);
+        if( (n<0)||(indexOff+4+(long)n*indexEntryLength+footerLength!=size) ) { throw new IOException("Indice corrompido."); }
+        ByteBuffer idx = ByteBuffer.allocate(n*indexEntryLength);
+        readFully(ch, idx, indexOff+4);
+        idx.flip();
+        Block[] ret = new Block[n];
+        for(int i=0; i<n; i++){
+            Block b = new Block();
+            b.offset = idx.getLong();
+            b.compressed = idx.getInt();
+            b.raw = idx.getInt();
+            b.records = idx.getInt();
+            ret[i] = b;
+        }
+        return ret;
+    }
+
+    private static String[] readLines(FileChannel ch, Block b) throws IOException{
+        ByteBuffer data = ByteBuffer.allocate(b.compressed);
+        readFully(ch, data, b.offset);
+        try{
+            return inflate(data.array(), b.raw);
+        } catch (DataFormatException ex) {
+            throw new IOException("Bloco corrompido em "+b.offset+": "+ex.getMessage(), ex);
+        }
+    }
+
+    private FileChannel openChannel() throws IOException{
+        return FileChannel.open(persist.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * @return quantidade de blocos do arquivo.
+     */
+    public int blockCount(){
+        try( FileChannel ch = openChannel() ){
+            return readIndex(ch).length;
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel localizar o arquivo!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Lê e descomprime um unico bloco, sem tocar nos outros.
+     *
+     * @param i indice do bloco.
+     * @return tags do bloco. Registros inválidos são ignorados.
+     */
+    public ImgTags readBlock(int i){
+        try( FileChannel ch = openChannel() ){
+            Block[] index = readIndex(ch);
+            if( (i<0)||(i>=index.length) ) { throw new IndexOutOfBoundsException("bloco "+i); }
+            ImgTags ret = new ImgTags();
+            for(String l : readLines(ch, index[i])){
+                try{
+                    ret.add( new ImgTag(l) );
+                } catch(RuntimeException ex) {
+                    //ignora registro inválido.
+                }
+            }
+            return ret;
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel localizar o arquivo!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Carrega todas as tags. Registros inválidos são ignorados.
+     *
+     * @return lista com as tags válidas do arquivo.
+     */
+    @Override
+    public ImgTags load() {
+        final ImgTags ret = new ImgTags();
+        load(new TagVisitor() {
+            @Override
+            public void visit(ImgTag tag) { ret.add(tag); }
+
+            @Override
+            public void malformed(long recordNo, String raw, RuntimeException cause) { }
+        });
+        return ret;
+    }
+
+    /**
+     * Descomprime e converte os blocos em paralelo, com poucos blocos em voo
+     * por vez, e entrega as tags na ordem do arquivo.
+     */
+    @Override
+    public void load(TagVisitor v) {
+        throwIfNull(v);
+        int maxInFlight = 2*ForkJoinPool.getCommonPoolParallelism()+1;
+        TagsPersistenceEvent ev = beginLoad();
+        long visited = 0;
+        try( final FileChannel ch = openChannel() ){
+            Block[] index = readIndex(ch);
+            ArrayDeque<CompletableFuture<TagLines>> inFlight = new ArrayDeque<>();
+            long recordNo = 1;
+            int next = 0;
+            while( (next<index.length) || !inFlight.isEmpty() ){
+                while( (next<index.length) && (inFlight.size()<maxInFlight) ){
+                    final Block b = index[next++];
+                    final long first = recordNo;
+                    recordNo += b.records;
+                    inFlight.add( CompletableFuture.supplyAsync(() -> parseBlock(ch, b, first)) );
+                }
+                visited += inFlight.poll().join().deliver(v);
+            }
+        } catch (IOException | CompletionException ex) {
+            Throwable cause = (ex instanceof CompletionException) ? ex.getCause() : ex;
+            recordFailure(ev, cause);
+            throw new TagsPersistenceException("Não Foi possivel localizar o arquivo!\n"
+                    +cause.getMessage(), cause);
+        }
+        recordLoad(ev, visited, persist.length());
+    }
+
+    private static TagLines parseBlock(FileChannel ch, Block b, long firstRecord){
+        try{
+            return new TagLines(firstRecord, readLines(ch, b)).parse();
+        } catch (IOException ex) {
+            throw new CompletionException(ex);
+        }
+    }
+
+}
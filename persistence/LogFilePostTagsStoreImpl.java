@@ -0,0 +1,259 @@
+package imagebooru.persistence;
+
+import imagebooru.ImgTags;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Armazenamento de tags por post em um unico arquivo local, no estilo
+ * log-structured: cada <tt>put()</tt> é gravado no fim do arquivo, e um
+ * indice em memória aponta, para cada (ImageBooru, id do post), o offset do
+ * registro mais recente. Um <tt>get()</tt> custa uma busca no indice e uma
+ * leitura posicional.<br/><br/>
+ *
+ * Cada registro é <tt>int tamanho, int crc32, dados</tt>, onde dados são a
+ * URL do ImageBooru, o id do post, o momento da busca e as referencias das
+ * tags. O indice é reconstruido lendo o arquivo na abertura; um registro
+ * incompleto no fim (queda no meio de uma gravação) é descartado.
+ * Registros substituidos só são removidos do arquivo por {@link #compact()}.
+ * <br/><br/>
+ *
+ * Nenhum serviço externo é necessario. Seguro para uso por varias threads:
+ * <tt>get()</tt> só segura o monitor durante a busca no indice; a leitura em
+ * disco ocorre fora dele, protegida de {@link #compact()} e {@link #close()}
+ * por um lock de leitura/escrita, de modo que leituras simultaneas não se
+ * serializam nem esperam os <tt>put()</tt>.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class LogFilePostTagsStoreImpl extends AbstractPostTagsStore implements Closeable {
+    private static final int maxRecordLength = 1<<24;
+
+    private final File persist;
+    private FileChannel ch;
+    private final HashMap<String,Long> index = new HashMap<>();
+    private long logLength = 0;
+    private final CRC32 crc = new CRC32();
+    private final ReentrantReadWriteLock swap = new ReentrantReadWriteLock();//Leitura: usa o canal; escrita: troca ou fecha o canal.
+
+    private Object throwIfNull(Object o){
+        if(o==null) { throw new NullPointerException("Nada de nulls!"); }
+        return o;
+    }
+
+    private static String key(String booru, int postId){
+        return booru+"\t"+postId;
+    }
+
+    /**
+     * Abre (ou cria) o arquivo e reconstroi o indice.
+     *
+     * @param filename nome do arquivo.
+     */
+    public LogFilePostTagsStoreImpl(String filename){
+        throwIfNull(filename);
+        persist = new File(filename);
+        try{
+            open();
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel abrir o arquivo!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+
+    private void open() throws IOException{
+        ch = FileChannel.open(persist.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index.clear();
+        logLength = 0;
+        long size = ch.size();
+        ByteBuffer head = ByteBuffer.allocate(8);
+        while( logLength+8<=size ){
+            head.clear();
+            readFully(head, logLength);
+            int len = head.getInt(0);
+            if( (len<0)||(len>maxRecordLength)||(logLength+8+len>size) ) { break; }
+            ByteBuffer payload = ByteBuffer.allocate(len);
+            readFully(payload, logLength+8);
+            if( checksum(payload.array())!=head.getInt(4) ) { break; }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array()));
+            index.put(key(in.readUTF(), in.readInt()), logLength);
+            logLength += 8+len;
+        }
+        if(size>logLength) { ch.truncate(logLength); }
+    }
+
+    private void readFully(ByteBuffer b, long pos) throws IOException{
+        while( b.hasRemaining() ){
+            if( ch.read(b, pos+b.position())<0 ) { throw new IOException("Fim de arquivo inesperado."); }
+        }
+    }
+
+    private int checksum(byte[] b){
+        crc.reset();
+        crc.update(b, 0, b.length);
+        return (int)crc.getValue();
+    }
+
+    private static byte[] encode(String booru, int postId, long fetchedAt, ImgTags tags) throws IOException{
+        ByteArrayOutputStream bo = new ByteArrayOutputStream(64+16*tags.size());
+        DataOutputStream out = new DataOutputStream(bo);
+        out.writeUTF(booru);
+        out.writeInt(postId);
+        out.writeLong(fetchedAt);
+        out.writeInt(tags.size());
+        for(TagRef r : toRefs(tags)){
+            out.writeInt(r.getId());
+            out.writeUTF(r.getNome());
+        }
+        return bo.toByteArray();
+    }
+
+    private static StoredPost decode(byte[] payload) throws IOException{
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String booru = in.readUTF();
+        int postId = in.readInt();
+        long fetchedAt = in.readLong();
+        int n = in.readInt();
+        ArrayList<TagRef> refs = new ArrayList<>(n);
+        for(int i=0; i<n; i++) { refs.add( new TagRef(in.readInt(), in.readUTF()) ); }
+        return new StoredPost(booru, postId, fetchedAt, refs);
+    }
+
+    private StoredPost readAt(long pos) throws IOException{
+        ByteBuffer head = ByteBuffer.allocate(8);
+        readFully(head, pos);
+        ByteBuffer payload = ByteBuffer.allocate(head.getInt(0));
+        readFully(payload, pos+8);
+        return decode(payload.array());
+    }
+
+    @Override
+    public StoredPost get(String booru, int postId) {
+        swap.readLock().lock();//Sempre antes do monitor, como em compact() e close().
+        try{
+            Long pos;
+            synchronized(this){
+                pos = index.get(key(booru, postId));
+            }
+            if(pos==null) { return null; }
+            return readAt(pos);//Leitura posicional: pode ocorrer junto com outras leituras e com put().
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel ler o post "+postId+"!\n"
+                    +ex.getMessage(), ex);
+        } finally {
+            swap.readLock().unlock();
+        }
+    }
+
+    @Override
+    public synchronized void put(String booru, int postId, ImgTags tags, long fetchedAt) {
+        throwIfNull(booru);
+        throwIfNull(tags);
+        try{
+            byte[] payload = encode(booru, postId, fetchedAt, tags);
+            ByteBuffer r = ByteBuffer.allocate(8+payload.length);
+            r.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+            long pos = logLength;
+            while( r.hasRemaining() ) { ch.write(r, pos+r.position()); }
+            logLength += r.limit();
+            index.put(key(booru, postId), pos);
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel salvar!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @return quantidade de posts armazenados.
+     */
+    public synchronized int size(){
+        return index.size();
+    }
+
+    /**
+     * Força as gravações pendentes para o disco (fsync).
+     */
+    public void sync(){
+        swap.readLock().lock();//Não bloqueia put(); só impede a troca do canal.
+        try{
+            ch.force(false);
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel salvar!\n"
+                    +ex.getMessage(), ex);
+        } finally {
+            swap.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reescreve o arquivo somente com o registro mais recente de cada post.
+     * Bloqueia get() e put() enquanto executa.
+     */
+    public void compact(){
+        swap.writeLock().lock();
+        try{
+            synchronized(this){
+                compactLocked();
+            }
+        } finally {
+            swap.writeLock().unlock();
+        }
+    }
+
+    private void compactLocked(){
+        File tmp = new File(persist.getAbsolutePath()+".compact");
+        try{
+            try( FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE) ){
+                ByteBuffer head = ByteBuffer.allocate(8);
+                for(Map.Entry<String,Long> e : index.entrySet()){
+                    head.clear();
+                    readFully(head, e.getValue());
+                    long len = 8+head.getInt(0), pos = e.getValue(), done = 0;
+                    while(done<len) { done += ch.transferTo(pos+done, len-done, out); }
+                }
+                out.force(false);
+            }
+            ch.close();
+            Files.move(tmp.toPath(), persist.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            open();
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel compactar!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        swap.writeLock().lock();
+        try{
+            synchronized(this){
+                ch.force(false);
+                ch.close();
+            }
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel salvar!\n"
+                    +ex.getMessage(), ex);
+        } finally {
+            swap.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package imagebooru.persistence;
+
+import imagebooru.ImgTag;
+import imagebooru.ImgTags;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Persistencia de Tags em um Arquivo de log, somente com adições.
+ * Cada <tt>save()</tt> grava no fim do arquivo apenas as tags novas ou
+ * alteradas desde a ultima gravação, em vez de reescrever o arquivo inteiro.
+ * Isso torna barato salvar a cada post processado.<br/><br/>
+ *
+ * Cada registro é <tt>int tamanho, int crc32, ImgTag.toString() em UTF-8</tt>.
+ * No <tt>load()</tt> o log é relido do inicio, e para cada chave (veja
+ * {@link ImgTag#getKey()}) vale o ultimo registro gravado. Um registro
+ * incompleto no fim do arquivo (queda no meio de uma gravação) é descartado.
+ * <br/><br/>
+ *
+ * Gravações são agrupadas: o buffer vai para o sistema a cada save(), mas o
+ * fsync só é feito periodicamente por uma thread de fundo (group commit), ou
+ * em {@link #sync()} e {@link #close()}. O fsync é feito fora do lock de 
+ * save(), que só é segurado para esvaziar o buffer. Quando a proporção de registros
+ * obsoletos passa de <tt>garbageRatio</tt>, o log é compactado em fundo, sem
+ * bloquear novos save().<br/><br/>
+ *
+ * Diferente de TextFileTagsPersistenceImpl, save() não remove tags ausentes
+ * da lista recebida: tags já gravadas continuam no log.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class LogFileTagsPersistenceImpl extends AbstractTagsPersistence implements Closeable {
+    private static final int minCompactRecords = 1024;
+    private static final int maxRecordLength = 1<<20;
+
+    private final File persist;
+    private final double garbageRatio;
+
+    private LinkedHashMap<String,ImgTag> live = null;//null até o log ser relido.
+    private long records = 0, logLength = 0;
+    private FileOutputStream fos;
+    private DataOutputStream out;
+    private boolean dirty = false, compacting = false, closed = false;
+    private RuntimeException lastError = null;//Falha de uma tarefa de fundo.
+    private final CRC32 crc = new CRC32();//Usado somente sob o lock.
+    private final Object io = new Object();//Serializa o fsync com a troca e o fechamento do arquivo.
+
+    private final ScheduledExecutorService background =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "tags-log-"+r.hashCode());
+                t.setDaemon(true);
+                return t;
+            });
+
+    private Object throwIfNull(Object o){
+        if(o==null) { throw new NullPointerException("Nada de nulls!"); }
+        return o;
+    }
+
+    /**
+     * Constroi a persistencia com fsync a cada segundo e compactação quando
+     * metade do log for de registros obsoletos.
+     *
+     * @param filename nome do arquivo de log.
+     */
+    public LogFileTagsPersistenceImpl(String filename){
+        this(filename, 1000, 0.5);
+    }
+
+    /**
+     * @param filename nome do arquivo de log.
+     * @param syncIntervalMillis intervalo entre fsyncs, em ms. Maior que 0.
+     * @param garbageRatio proporção de registros obsoletos (entre 0 e 1) a
+     * partir da qual o log é compactado.
+     */
+    public LogFileTagsPersistenceImpl(String filename, long syncIntervalMillis, double garbageRatio){
+        throwIfNull(filename);
+        if(syncIntervalMillis<=0) { throw new IllegalArgumentException("syncIntervalMillis deve ser maior que 0."); }
+        if( (garbageRatio<=0)||(garbageRatio>=1) ) { throw new IllegalArgumentException("garbageRatio deve estar entre 0 e 1."); }
+        this.persist = new File(filename);
+        this.garbageRatio = garbageRatio;
+        background.scheduleWithFixedDelay(this::syncQuietly,
+                syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //Registros:
+
+    private static byte[] frame(ImgTag t, CRC32 crc){
+        byte[] payload = t.toString().getBytes(StandardCharsets.UTF_8);
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        byte[] ret = new byte[8+payload.length];
+        ByteBuffer.wrap(ret).putInt(payload.length).putInt((int)crc.getValue()).put(payload);
+        return ret;
+    }
+
+    /**
+     * Relê o log, ultima gravação de cada chave vence.
+     * Trunca o arquivo no ultimo registro integro, se o fim estiver corrompido.
+     */
+    private void replay() throws IOException{
+        live = new LinkedHashMap<>();
+        records = 0;
+        logLength = 0;
+        if(!persist.exists()) { return; }
+        CRC32 check = new CRC32();
+        try( DataInputStream in = new DataInputStream(
+                new BufferedInputStream( new FileInputStream(persist), 1<<16 ) ) ){
+            while(true){
+                int len, sum;
+                byte[] payload;
+                try{
+                    len = in.readInt();
+                    sum = in.readInt();
+                    if( (len<0)||(len>maxRecordLength) ) { break; }
+                    payload = new byte[len];
+                    in.readFully(payload);
+                } catch(EOFException ex) {
+                    break;
+                }
+                check.reset();
+                check.update(payload, 0, len);
+                if( (int)check.getValue()!=sum ) { break; }
+                logLength += 8+len;
+                records++;
+                try{
+                    ImgTag t = new ImgTag(new String(payload, StandardCharsets.UTF_8));
+                    live.put(t.getKey(), t);
+                } catch(RuntimeException ex) {
+                    //Registro integro mas inválido: conta como lixo.
+                }
+            }
+        }
+        if( persist.length()>logLength ) {
+            try( RandomAccessFile raf = new RandomAccessFile(persist, "rw") ){
+                raf.setLength(logLength);
+            }
+        }
+    }
+
+    private void openForAppend() throws IOException{
+        fos = new FileOutputStream(persist, true);
+        out = new DataOutputStream( new BufferedOutputStream(fos, 1<<16) );
+    }
+
+    private void ensureOpen() throws IOException{
+        if(closed) { throw new IllegalStateException("Persistencia já fechada."); }
+        if(lastError!=null) {
+            RuntimeException ex = lastError;
+            lastError = null;
+            throw ex;
+        }
+        if(live==null) { replay(); }
+        if(out==null) { openForAppend(); }
+    }
+
+    //Group commit:
+
+    /**
+     * Força as gravações pendentes para o disco (fsync).
+     */
+    public void sync(){
+        FileChannel ch;
+        try{
+            synchronized(this){//Só esvazia o buffer; save() não espera o fsync.
+                if( (out==null)||!dirty ) { return; }
+                out.flush();
+                ch = fos.getChannel();
+                dirty = false;
+            }
+            synchronized(io){
+                if(ch.isOpen()) { ch.force(false); }//Fechado: a compactação ou o close() já fizeram o fsync.
+            }
+        } catch (IOException ex) {
+            synchronized(this){ dirty = true; }
+            throw new TagsPersistenceException("Não Foi possivel salvar!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+
+    private void syncQuietly(){
+        try{
+            sync();
+        } catch(RuntimeException ex) {
+            synchronized(this){ lastError = ex; }
+        }
+    }
+
+    //Compactação:
+
+    private void maybeCompact(){
+        if( compacting || (records<minCompactRecords) ) { return; }
+        if( (double)(records-live.size())/records < garbageRatio ) { return; }
+        compacting = true;
+        background.execute(this::compact);
+    }
+
+    /**
+     * Reescreve o log somente com os registros vivos.
+     * O grosso do trabalho é feito sem o lock, sobre uma cópia; só a cópia
+     * dos registros gravados durante a compactação e a troca de arquivos
+     * bloqueiam save().
+     */
+    private void compact(){
+        ArrayList<ImgTag> snapshot;
+        long snapLength, snapRecords;
+        synchronized(this){
+            if(closed) { compacting = false; return; }
+            snapshot = new ArrayList<>(live.values());
+            snapLength = logLength;
+            snapRecords = records;
+        }
+        File tmp = new File(persist.getAbsolutePath()+".compact");
+        try{
+            FileOutputStream tfos = new FileOutputStream(tmp);
+            try( DataOutputStream tout = new DataOutputStream( new BufferedOutputStream(tfos, 1<<16) ) ){
+                long newLength = 0;
+                CRC32 tcrc = new CRC32();
+                for(ImgTag t : snapshot){
+                    byte[] r = frame(t, tcrc);
+                    tout.write(r);
+                    newLength += r.length;
+                }
+                synchronized(this){
+                    if(closed) { compacting = false; tmp.delete(); return; }
+                    //Registros gravados enquanto compactava.
+                    out.flush();
+                    try( FileChannel src = new FileInputStream(persist).getChannel() ){
+                        long pos = snapLength, end = logLength;
+                        tout.flush();
+                        while(pos<end) { pos += src.transferTo(pos, end-pos, tfos.getChannel()); }
+                        newLength += end-snapLength;
+                    }
+                    tout.flush();
+                    tfos.getChannel().force(false);
+                    synchronized(io){
+                        out.close();
+                        out = null;
+                        try{
+                            Files.move(tmp.toPath(), persist.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                            records = snapshot.size() + (records-snapRecords);
+                            logLength = newLength;
+                            dirty = false;
+                        } finally {
+                            //Reabre o log novo, ou o antigo se a troca falhou. Se
+                            //falhar aqui, o proximo save() tenta de novo.
+                            openForAppend();
+                        }
+                    }
+                    compacting = false;
+                }
+            }
+        } catch(IOException ex) {
+            synchronized(this){
+                compacting = false;
+                lastError = new TagsPersistenceException("Não Foi possivel compactar!\n"+ex.getMessage(), ex);
+            }
+            tmp.delete();
+        }
+    }
+
+    //AbstractTagsPersistence:
+
+    /**
+     * Grava no fim do log as tags novas ou diferentes da ultima versão
+     * gravada. Tags iguais às já gravadas não custam nada.
+     *
+     * @param tags tags a serem salvas.
+     */
+    @Override
+    public synchronized void save(ImgTags tags) {
+        TagsPersistenceEvent ev = beginSave();
+        long before = 0;
+        try{
+            ensureOpen();
+            before = logLength;
+            for(ImgTag t : tags){
+                String key = t.getKey();
+                if( t.equals(live.get(key)) ) { continue; }
+                byte[] r = frame(t, crc);
+                out.write(r);
+                logLength += r.length;
+                records++;
+                live.remove(key);//Mantem a ordem da ultima gravação.
+                live.put(key, new ImgTag(t));
+                dirty = true;
+            }
+            out.flush();
+        } catch (IOException ex) {
+            recordFailure(ev, ex);
+            throw new TagsPersistenceException("Não Foi possivel salvar!\n"
+                    +ex.getMessage(), ex);
+        }
+        recordSave(ev, tags.size(), logLength-before);
+        maybeCompact();
+    }
+
+    /**
+     * O mesmo que save(): só as tags novas ou alteradas são gravadas.
+     *
+     * @param tags tags novas ou atualizadas.
+     */
+    @Override
+    public void append(ImgTags tags) {
+        save(tags);
+    }
+
+    @Override
+    public synchronized ImgTags load() {
+        TagsPersistenceEvent ev = beginLoad();
+        try{
+            ensureOpen();
+        } catch (IOException ex) {
+            recordFailure(ev, ex);
+            throw new TagsPersistenceException("Não Foi possivel localizar o arquivo!\n"
+                    +ex.getMessage(), ex);
+        }
+        ImgTags ret = new ImgTags();
+        for(ImgTag t : live.values()) { ret.add( new ImgTag(t) ); }
+        recordLoad(ev, ret.size(), -1);
+        return ret;
+    }
+
+    /**
+     * Faz o fsync final e encerra a thread de fundo.
+     */
+    @Override
+    public void close() {
+        synchronized(this){
+            if(closed) { return; }
+            sync();
+            closed = true;
+            try{
+                synchronized(io){
+                    if(out!=null) { out.close(); }
+                }
+            } catch (IOException ex) {
+                throw new TagsPersistenceException("Não Foi possivel salvar!\n"
+                        +ex.getMessage(), ex);
+            } finally {
+                background.shutdown();
+            }
+        }
+    }
+
+}
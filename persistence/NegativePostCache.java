@@ -0,0 +1,213 @@
+package imagebooru.persistence;
+
+import imagebooru.utils.BloomFilter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache negativo: lembra quais posts não existem (apagados ou nunca
+ * criados) em cada ImageBooru, para que não sejam buscados de novo a cada
+ * execução. Cada marcação vale por um TTL, já que um post pode voltar.
+ * <br/><br/>
+ *
+ * Um BloomFilter fica na frente do mapa: para a grande maioria dos posts,
+ * que existem, <tt>contains()</tt> responde sem lock, sem montar a chave nem
+ * consultar o mapa.<br/><br/>
+ *
+ * Opcionalmente persistido num arquivo, onde cada <tt>markMissing()</tt> é
+ * gravado no fim (<tt>UTF booru, int id, long momento</tt>). Na abertura
+ * o arquivo é lido e reescrito somente com as marcações ainda validas; um
+ * registro incompleto no fim é descartado.<br/><br/>
+ *
+ * Seguro para uso por varias threads.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @see imagebooru.postparser.AbstractPostParser#setNegativePostCache(imagebooru.persistence.NegativePostCache)
+ * @since 2.5
+ */
+public class NegativePostCache implements Closeable {
+    private static final int initialExpected = 1024;
+    private static final double fpp = 0.01;
+
+    private final File persist;
+    private final long ttlMillis;
+    private final HashMap<String,Long> marked = new HashMap<>();
+    private volatile BloomFilter filter;//Trocado só depois de preenchido.
+    private int filterExpected = initialExpected;
+    private DataOutputStream out = null;
+
+    private Object throwIfNull(Object o){
+        if(o==null) { throw new NullPointerException("Nada de nulls!"); }
+        return o;
+    }
+
+    private static String key(String booru, int postId){
+        return booru+"\t"+postId;
+    }
+
+    private static long filterKey(String booru, int postId){
+        return ((long)booru.hashCode()<<32)|(postId&0xffffffffL);
+    }
+
+    /**
+     * Cria um cache negativo somente em memória.
+     *
+     * @param ttlMillis por quanto tempo, em ms, um post marcado é
+     * considerado inexistente. Maior que 0.
+     */
+    public NegativePostCache(long ttlMillis){
+        this(null, ttlMillis);
+    }
+
+    /**
+     * Abre (ou cria) o arquivo do cache negativo.
+     *
+     * @param filename nome do arquivo. Se null, somente em memória.
+     * @param ttlMillis por quanto tempo, em ms, um post marcado é
+     * considerado inexistente. Maior que 0.
+     */
+    public NegativePostCache(String filename, long ttlMillis){
+        if(ttlMillis<=0) { throw new IllegalArgumentException("ttlMillis deve ser maior que 0."); }
+        this.ttlMillis = ttlMillis;
+        this.persist = (filename==null) ? null : new File(filename);
+        filter = new BloomFilter(filterExpected, fpp);
+        if(persist==null) { return; }
+        try{
+            open();
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel abrir o arquivo!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+
+    private void open() throws IOException{
+        long now = System.currentTimeMillis();
+        if(persist.exists()){
+            try( DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(persist))) ){
+                while(true){
+                    String booru = in.readUTF();
+                    int id = in.readInt();
+                    long at = in.readLong();
+                    if(now-at<=ttlMillis) { remember(booru, id, at); }
+                    else { marked.remove(key(booru, id)); }//Uma marcação mais antiga pode ter sido renovada depois.
+                }
+            } catch (EOFException ex) {
+                //Fim do arquivo, ou registro incompleto: descartado ao reescrever.
+            }
+        }
+        rewrite();
+    }
+
+    /**
+     * Reescreve o arquivo somente com as marcações em memória.
+     */
+    private void rewrite() throws IOException{
+        if(out!=null) { out.close(); }
+        File tmp = new File(persist.getAbsolutePath()+".compact");
+        try( DataOutputStream o = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))) ){
+            for(Map.Entry<String,Long> e : marked.entrySet()){
+                String k = e.getKey();
+                int tab = k.lastIndexOf('\t');
+                o.writeUTF(k.substring(0, tab));
+                o.writeInt(Integer.parseInt(k.substring(tab+1)));
+                o.writeLong(e.getValue());
+            }
+        }
+        Files.move(tmp.toPath(), persist.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(persist, true)));
+    }
+
+    private void remember(String booru, int postId, long at){
+        marked.put(key(booru, postId), at);
+        if(filter.getCount()>=filterExpected){
+            //Cheio: um filtro maior, com todas as chaves.
+            filterExpected *= 2;
+            BloomFilter bigger = new BloomFilter(filterExpected, fpp);
+            for(String k : marked.keySet()){
+                int tab = k.lastIndexOf('\t');
+                bigger.add( filterKey(k.substring(0, tab), Integer.parseInt(k.substring(tab+1))) );
+            }
+            filter = bigger;
+        } else {
+            filter.add( filterKey(booru, postId) );
+        }
+    }
+
+    /**
+     * @param booru URL do ImageBooru do post.
+     * @param postId id do post.
+     * @return true se o post foi marcado como inexistente a menos de TTL ms.
+     */
+    public boolean contains(String booru, int postId){
+        throwIfNull(booru);
+        if( !filter.mightContain(filterKey(booru, postId)) ) { return false; }
+        synchronized(this){
+            Long at = marked.get(key(booru, postId));
+            if(at==null) { return false; }
+            if(System.currentTimeMillis()-at>ttlMillis){
+                marked.remove(key(booru, postId));//Continua no filtro até a proxima abertura.
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Marca um post como inexistente, a partir de agora.
+     *
+     * @param booru URL do ImageBooru do post.
+     * @param postId id do post.
+     */
+    public synchronized void markMissing(String booru, int postId){
+        throwIfNull(booru);
+        long now = System.currentTimeMillis();
+        remember(booru, postId, now);
+        if(out==null) { return; }
+        try{
+            out.writeUTF(booru);
+            out.writeInt(postId);
+            out.writeLong(now);
+            out.flush();
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel salvar!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @return quantidade de posts marcados, incluindo os já expirados que
+     * ainda não foram consultados.
+     */
+    public synchronized int size(){
+        return marked.size();
+    }
+
+    public long getTTL(){
+        return ttlMillis;
+    }
+
+    @Override
+    public synchronized void close() {
+        if(out==null) { return; }
+        try{
+            out.close();
+            out = null;
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel salvar!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package imagebooru.persistence;
+
+import imagebooru.ImgTag;
+import imagebooru.persistence.AbstractTagsPersistence.TagVisitor;
+
+/**
+ * Bloco de linhas no formato <tt>ImgTag.toString()</tt>, convertido de uma
+ * só vez. Guarda, para cada linha, a ImgTag obtida ou a falha ao converte-la,
+ * para que blocos possam ser convertidos em paralelo e entregues em ordem.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+final class TagLines {
+    final long firstRecord;
+    final String[] lines;
+    final ImgTag[] tags;
+    final RuntimeException[] errors;
+
+    /**
+     * @param firstRecord numero do registro da primeira linha, a partir de 1.
+     * @param lines linhas do bloco.
+     */
+    TagLines(long firstRecord, String[] lines){
+        this.firstRecord = firstRecord;
+        this.lines = lines;
+        this.tags = new ImgTag[lines.length];
+        this.errors = new RuntimeException[lines.length];
+    }
+
+    /**
+     * Converte todas as linhas. Linhas em branco são ignoradas.
+     *
+     * @return este objeto.
+     */
+    TagLines parse(){
+        for(int i=0; i<lines.length; i++){
+            if(lines[i].isEmpty()) { continue; }
+            try{
+                tags[i] = new ImgTag(lines[i]);
+            } catch(RuntimeException ex) {
+                errors[i] = ex;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Entrega as tags, e as falhas, a v na ordem das linhas.
+     *
+     * @param v visitante.
+     */
+    int deliver(TagVisitor v){
+        int n = 0;
+        for(int i=0; i<lines.length; i++){
+            if(tags[i]!=null) { v.visit(tags[i]); n++; }
+            else if(errors[i]!=null) { v.malformed(firstRecord+i, lines[i], errors[i]); }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,43 @@
+package imagebooru.persistence;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de um save ou load de tags.
+ * Criado por {@link AbstractTagsPersistence#beginSave()} ou 
+ * {@link AbstractTagsPersistence#beginLoad()} e terminado por 
+ * <tt>recordSave()</tt>, <tt>recordLoad()</tt> ou <tt>recordFailure()</tt>.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+@Name("imagebooru.TagsPersistence")
+@Label("Tags Persistence")
+@Category({"ImageBooru", "Persistence"})
+@Description("Save ou load de um dicionario de tags.")
+public final class TagsPersistenceEvent extends jdk.jfr.Event {
+    @Label("Backend")
+    String backend;
+    
+    @Label("Operation")
+    String operation;
+    
+    @Label("Tag Count")
+    long tagCount;
+    
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+    
+    @Label("Outcome")
+    String outcome;
+    
+    transient long startNanos;//Para Metrics; campos transient não vão para o JFR.
+    
+    TagsPersistenceEvent(){ }
+}
@@ -0,0 +1,23 @@
+package imagebooru.persistence;
+
+/**
+ * Falha de um médium de persistencia de tags ao salvar ou carregar.
+ * Não checada, como as falhas que os métodos de AbstractTagsPersistence
+ * sempre lançaram, mas especifica o bastante para ser tratada sem capturar
+ * qualquer RuntimeException.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class TagsPersistenceException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public TagsPersistenceException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public TagsPersistenceException(String message) {
+        super(message);
+    }
+}
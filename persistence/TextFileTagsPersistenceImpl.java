@@ -4,62 +4,220 @@ import imagebooru.ImgTag;
 import imagebooru.ImgTags;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 /**
  * Persistencia de Tags em Arquivos de Texto.
  * Modelo classico e eficiente de armazenar info. em geral. Facil edição externa,
  * facil leitura e poucas restrições de versionamento.<br/><br/>
- * 
+ *
  * Recebe o nome do arquivo no construtor, e implementa os métodos básicos de
- * AbstractTagsPersistence.
- * 
+ * AbstractTagsPersistence.<br/><br/>
+ *
+ * Na leitura em fluxo, as linhas são lidas em blocos e convertidas em ImgTag
+ * em paralelo, mas entregues ao visitante na ordem do arquivo. Uma linha
+ * inválida é reportada e pulada, sem abortar a leitura. Bytes que não são
+ * validos no charset padrão são trocados pelo caracter de substituição, como
+ * fazia o FileReader, e não abortam a leitura.<br/><br/>
+ *
+ * <tt>append()</tt> só acrescenta linhas no fim do arquivo, sem reler nem
+ * regravar as existentes; uma chave atualizada fica com mais de uma linha até
+ * o próximo <tt>save()</tt>, e a mais recente é sempre a última.
+ *
  * @author Guilherme
  * @created 03/03/2013
  * @since 2.2
  */
 public class TextFileTagsPersistenceImpl extends AbstractTagsPersistence {
-    private File persist;   
-    
+    private static final int chunkSize = 4096;//linhas por bloco.
+
+    private File persist;
+
     private Object throwIfNull(Object o){
         if(o==null) { throw new NullPointerException("Nada de nulls!"); }
         return o;
     }
-    
+
     public TextFileTagsPersistenceImpl(String filename){
         throwIfNull(filename);
         persist = new File(filename);
     }
 
+    /**
+     * Abre o arquivo para leitura no charset padrão, trocando bytes inválidos
+     * pelo caracter de substituição em vez de lançar 
+     * {@link CharacterCodingException}.
+     */
+    private BufferedReader openReader() throws IOException{
+        return new BufferedReader(new InputStreamReader(new FileInputStream(persist),
+                Charset.defaultCharset().newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE)));
+    }
+
+    @Override
+    public boolean exists() {
+        return persist.exists();
+    }
+
     @Override
     public void save(ImgTags tags) {
+        TagsPersistenceEvent ev = beginSave();
         try {
             FileWriter fw = new FileWriter(persist);
             for(ImgTag i : tags){ fw.write(i.toString()+"\n"); }
             fw.flush();
             fw.close();
         } catch (IOException ex) {
-            throw new RuntimeException("Não Foi possivel salvar!\n"
-                    +ex.getMessage());
-        }     
+            recordFailure(ev, ex);
+            throw new TagsPersistenceException("Não Foi possivel salvar!\n"
+                    +ex.getMessage(), ex);
+        }
+        recordSave(ev, tags.size(), persist.length());
     }
 
+    /**
+     * Acrescenta as tags no fim do arquivo, sem ler as já gravadas. Linhas
+     * existentes, inclusive as inválidas, não são alteradas. As linhas
+     * antigas de uma mesma chave continuam no arquivo até o próximo
+     * <tt>save()</tt>; <tt>load()</tt> fica só com a última.
+     *
+     * @param tags tags novas ou atualizadas.
+     * @since 2.5
+     */
     @Override
-    public ImgTags load() {
-        ImgTags ret = new ImgTags();
+    public void append(ImgTags tags) {
+        throwIfNull(tags);
+        TagsPersistenceEvent ev = beginSave();
         try {
-            BufferedReader bf = new BufferedReader( new FileReader(persist) );
+            boolean newline = endsWithoutNewline();//Editado externamente: não emenda na ultima linha.
+            FileWriter fw = new FileWriter(persist, true);
+            if(newline) { fw.write("\n"); }
+            for(ImgTag i : tags){ fw.write(i.toString()+"\n"); }
+            fw.flush();
+            fw.close();
+        } catch (IOException ex) {
+            recordFailure(ev, ex);
+            throw new TagsPersistenceException("Não Foi possivel salvar!\n"
+                    +ex.getMessage(), ex);
+        }
+        recordSave(ev, tags.size(), persist.length());
+    }
+
+    private boolean endsWithoutNewline() throws IOException{
+        if( !persist.exists()||(persist.length()==0) ) { return false; }
+        try( RandomAccessFile raf = new RandomAccessFile(persist, "r") ){
+            raf.seek(raf.length()-1);
+            return raf.read()!='\n';
+        }
+    }
+
+    /**
+     * Carrega todas as tags do arquivo.
+     * Linhas inválidas são ignoradas; para ser notificado delas, use
+     * {@link #load(AbstractTagsPersistence.TagVisitor) load(TagVisitor)}.
+     * Se uma chave aparece em mais de uma linha (veja <tt>append()</tt>),
+     * fica a última.
+     *
+     * @return lista com as tags válidas do arquivo.
+     */
+    @Override
+    public ImgTags load() {
+        final LinkedHashMap<String,ImgTag> all = new LinkedHashMap<>();
+        load(new TagVisitor() {
+            @Override
+            public void visit(ImgTag tag) { all.put(tag.getKey(), tag); }
+
+            @Override
+            public void malformed(long recordNo, String raw, RuntimeException cause) { }
+        });
+        return new ImgTags(all.values());
+    }
+
+    /**
+     * Entrega as linhas válidas na ordem do arquivo. Uma chave gravada mais
+     * de uma vez por <tt>append()</tt> é entregue uma vez por linha, a versão
+     * mais recente por último.
+     */
+    @Override
+    public void load(TagVisitor v) {
+        throwIfNull(v);
+        TagsPersistenceEvent ev = beginLoad();
+        long visited = 0;
+        //Limita os blocos em voo para não ler o arquivo todo para a memória.
+        int maxInFlight = 2*ForkJoinPool.getCommonPoolParallelism()+1;
+        ArrayDeque<CompletableFuture<TagLines>> inFlight = new ArrayDeque<>();
+        try( BufferedReader bf = openReader() ){
+            ArrayList<String> lines = new ArrayList<>(chunkSize);
+            long lineNo = 0, first = 1;
             String line;
-            while( (line = bf.readLine())!=null){
-                ret.add( new ImgTag(line) );
+            while( (line = bf.readLine())!=null ){
+                lineNo++;
+                lines.add(line);
+                if(lines.size()<chunkSize) { continue; }
+                final TagLines c = new TagLines(first, lines.toArray(new String[lines.size()]));
+                inFlight.add( CompletableFuture.supplyAsync(c::parse) );
+                if(inFlight.size()>=maxInFlight) { visited += inFlight.poll().join().deliver(v); }
+                lines.clear();
+                first = lineNo+1;
             }
-            return ret;
-        } catch (Exception ex) {
-            throw new RuntimeException("Não Foi possivel localizar o arquivo!\n"
-                    +ex.getMessage());
+            if(!lines.isEmpty()) { inFlight.add( CompletableFuture.completedFuture(
+                    new TagLines(first, lines.toArray(new String[lines.size()])).parse()) ); }
+            while(!inFlight.isEmpty()) { visited += inFlight.poll().join().deliver(v); }
+        } catch (IOException ex) {
+            recordFailure(ev, ex);
+            throw new TagsPersistenceException("Não Foi possivel localizar o arquivo!\n"
+                    +ex.getMessage(), ex);
         }
+        recordLoad(ev, visited, persist.length());
     }
-    
+
+    /**
+     * Retorna as tags do arquivo como um Stream preguiçoso.
+     * O arquivo fica aberto até o Stream ser fechado. Pode ser usado em
+     * paralelo. Linhas inválidas são ignoradas; como em
+     * {@link #load(AbstractTagsPersistence.TagVisitor) load(TagVisitor)},
+     * chaves repetidas aparecem uma vez por linha.
+     *
+     * @return Stream com as tags válidas do arquivo.
+     */
+    @Override
+    public Stream<ImgTag> stream() {
+        try {
+            final BufferedReader bf = openReader();
+            return bf.lines()
+                    .onClose(() -> {
+                        try { bf.close(); } catch(IOException ex) { throw new UncheckedIOException(ex); }
+                    })
+                    .filter(l -> !l.isEmpty())
+                    .map(TextFileTagsPersistenceImpl::parseOrNull)
+                    .filter(t -> t!=null);
+        } catch (IOException | UncheckedIOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel localizar o arquivo!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+
+    private static ImgTag parseOrNull(String line){
+        try{
+            return new ImgTag(line);
+        } catch(RuntimeException ex) {
+            return null;
+        }
+    }
+
 }
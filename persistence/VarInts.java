@@ -0,0 +1,53 @@
+package imagebooru.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Codificação de inteiros não-negativos em tamanho variavel (LEB128).
+ * 7 bits por byte, bit mais alto indicando continuação. Valores pequenos,
+ * como a maioria dos ids e counts de tags, ocupam 1 ou 2 bytes.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+final class VarInts {
+    
+    private VarInts(){ }
+    
+    /**
+     * Escreve v em out.
+     * 
+     * @param out destino.
+     * @param v valor, não-negativo.
+     */
+    static void write(ByteArrayOutputStream out, int v){
+        if(v<0) { throw new IllegalArgumentException("v deve ser não-negativo."); }
+        while( (v & ~0x7F) != 0 ){
+            out.write( (v & 0x7F) | 0x80 );
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+    
+    /**
+     * Lê um valor de b na posição pos[0], sem alterar a posição de b.
+     * pos[0] é avançado para depois do valor lido.
+     * 
+     * @param b buffer de origem. Somente leituras absolutas são feitas.
+     * @param pos cursor de leitura, atualizado pela chamada.
+     * @return valor lido.
+     */
+    static int read(ByteBuffer b, int[] pos){
+        int v = 0, shift = 0, i = pos[0], c;
+        do {
+            if(shift>28) { throw new IllegalStateException("VarInt malformado na posição "+pos[0]); }
+            c = b.get(i++);
+            v |= (c & 0x7F) << shift;
+            shift += 7;
+        } while( (c & 0x80) != 0 );
+        pos[0] = i;
+        return v;
+    }
+}
@@ -0,0 +1,234 @@
+package imagebooru.pipeline;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Registro dos ids já concluidos de um trabalho longo, para que ele possa
+ * ser retomado de onde parou.<br/><br/>
+ * 
+ * Em memória, os ids ficam num BitSet: {@link #isDone(int)} custa O(1) e 
+ * 100 mil ids de até 1 milhão ocupam 128 KB. Em disco, o arquivo é um log
+ * de ids (int, big-endian) depois de um cabeçalho, onde cada id aparece uma
+ * unica vez. {@link #markDone(int)} só marca o bit e guarda o id num buffer;
+ * uma thread de fundo grava o buffer e faz fsync a cada 
+ * <tt>flushIntervalMillis</tt>. Uma queda perde no maximo os ids desse
+ * intervalo, que serão refeitos. Um id incompleto no fim do arquivo (queda
+ * no meio de uma gravação) é descartado na abertura.<br/><br/>
+ * 
+ * A gravação só segura o lock de {@link #markDone(int)} e 
+ * {@link #isDone(int)} para trocar o buffer por um vazio; a escrita e o fsync
+ * são feitos fora dele, serializados por um lock proprio de I/O. Se a 
+ * gravação falhar, os ids voltam para o buffer.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class CheckpointFile implements Closeable {
+    private static final int magic = 0x4942434B;//"IBCK"
+    
+    private final File persist;
+    private final FileChannel ch;
+    private final Object io = new Object();//Serializa gravações, truncamentos e o fechamento do arquivo.
+    private final BitSet done = new BitSet();
+    private int doneCount = 0;
+    private int[] pending = new int[256];
+    private int pendingCount = 0;
+    private final Thread flusher;
+    private volatile boolean closed = false;
+    private IOException lastError = null;
+    
+    /**
+     * Abre o checkpoint com gravação a cada segundo.
+     * 
+     * @param filename nome do arquivo. Criado se não existir.
+     */
+    public CheckpointFile(String filename){
+        this(filename, 1000);
+    }
+    
+    /**
+     * @param filename nome do arquivo. Criado se não existir.
+     * @param flushIntervalMillis intervalo entre gravações. Maior que 0.
+     */
+    public CheckpointFile(String filename, long flushIntervalMillis){
+        if(filename==null) { throw new NullPointerException("Nada de nulls!"); }
+        if(flushIntervalMillis<=0) { throw new IllegalArgumentException("flushIntervalMillis deve ser maior que 0."); }
+        persist = new File(filename);
+        try{
+            ch = FileChannel.open(persist.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            replay();
+        } catch (IOException ex) {
+            throw new RuntimeException("Não Foi possivel abrir o checkpoint!\n"+ex.getMessage(), ex);
+        }
+        flusher = new Thread(() -> {
+            while(!closed){
+                synchronized(this){
+                    try { 
+                        if(!closed) { wait(flushIntervalMillis); }
+                    } catch (InterruptedException ex) { return; }
+                }
+                flushQuietly();//Fora do lock: markDone() e isDone() não esperam o fsync.
+            }
+        }, "checkpoint-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    
+    private void replay() throws IOException{
+        long size = ch.size();
+        if(size==0){
+            ByteBuffer h = ByteBuffer.allocate(4).putInt(magic);
+            h.flip();
+            while(h.hasRemaining()) { ch.write(h, h.position()); }
+            return;
+        }
+        ByteBuffer b = ByteBuffer.allocate( (int)Math.min(size, 1<<16) );
+        long pos = 0, valid = size - (size%4);//Descarta id incompleto.
+        boolean header = true;
+        while(pos<valid){
+            b.clear();
+            b.limit( (int)Math.min(b.capacity(), valid-pos) );
+            while(b.hasRemaining()) {
+                if( ch.read(b, pos+b.position())<0 ) { throw new IOException("Fim de arquivo inesperado."); }
+            }
+            b.flip();
+            while(b.hasRemaining()){
+                int v = b.getInt();
+                if(header) {
+                    if(v!=magic) { throw new IOException("Arquivo não é um checkpoint."); }
+                    header = false;
+                } else if( (v>=0)&&!done.get(v) ) {
+                    done.set(v);
+                    doneCount++;
+                }
+            }
+            pos += b.limit();
+        }
+        if(valid<size) { ch.truncate(valid); }
+    }
+    
+    /**
+     * @param id id de um item.
+     * @return true se id já foi marcado como concluido.
+     */
+    public synchronized boolean isDone(int id){
+        return (id>=0) && done.get(id);
+    }
+    
+    /**
+     * Marca id como concluido. Não faz I/O; a gravação é feita em fundo.
+     * 
+     * @param id id do item concluido. Maior ou igual a 0.
+     */
+    public synchronized void markDone(int id){
+        if(id<0) { throw new IllegalArgumentException("id deve ser maior ou igual a 0."); }
+        if(closed) { throw new IllegalStateException("Checkpoint já fechado."); }
+        if(done.get(id)) { return; }
+        done.set(id);
+        doneCount++;
+        if(pendingCount==pending.length) { pending = Arrays.copyOf(pending, 2*pending.length); }
+        pending[pendingCount++] = id;
+    }
+    
+    /**
+     * @return quantidade de ids concluidos.
+     */
+    public synchronized int getDoneCount(){
+        return doneCount;
+    }
+    
+    /**
+     * Grava os ids pendentes e faz fsync.
+     */
+    public void flush(){
+        flushQuietly();
+        IOException err;
+        synchronized(this){
+            err = lastError;
+            lastError = null;
+        }
+        if(err!=null) { throw new RuntimeException("Não Foi possivel salvar!\n"+err.getMessage(), err); }
+    }
+    
+    private void flushQuietly(){
+        synchronized(io){
+            int[] batch;
+            int n;
+            synchronized(this){//Só troca o buffer.
+                if(pendingCount==0) { return; }
+                batch = pending;
+                n = pendingCount;
+                pending = new int[batch.length];
+                pendingCount = 0;
+            }
+            ByteBuffer b = ByteBuffer.allocate(4*n);
+            for(int i=0; i<n; i++) { b.putInt(batch[i]); }
+            b.flip();
+            try{
+                long pos = ch.size();
+                while(b.hasRemaining()) { ch.write(b, pos+b.position()); }
+                ch.force(false);
+            } catch (IOException ex) {
+                synchronized(this){//Devolve os ids para a proxima tentativa.
+                    int[] merged = Arrays.copyOf(batch, Math.max(n+pendingCount, 256));
+                    System.arraycopy(pending, 0, merged, n, pendingCount);
+                    pending = merged;
+                    pendingCount += n;
+                    lastError = ex;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Apaga todo o progresso registrado.
+     */
+    public void reset(){
+        synchronized(io){
+            synchronized(this){
+                try{
+                    ch.truncate(4);
+                    ch.force(false);
+                } catch (IOException ex) {
+                    throw new RuntimeException("Não Foi possivel salvar!\n"+ex.getMessage(), ex);
+                }
+                done.clear();
+                doneCount = 0;
+                pendingCount = 0;
+            }
+        }
+    }
+
+    /**
+     * Grava os pendentes e fecha o arquivo.
+     */
+    @Override
+    public void close() {
+        synchronized(this){
+            if(closed) { return; }
+            closed = true;
+            notifyAll();//Sem interrupt, que fecharia o FileChannel no meio de uma gravação.
+        }
+        try{
+            flusher.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try{
+            flush();
+        } finally {
+            synchronized(io){
+                try { ch.close(); } catch (IOException ex) { }
+            }
+        }
+    }
+}
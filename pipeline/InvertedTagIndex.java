@@ -0,0 +1,446 @@
+package imagebooru.pipeline;
+
+import imagebooru.ImgTag;
+import imagebooru.ImgTag.TagType;
+import imagebooru.ImgTags;
+import imagebooru.persistence.TagsPersistenceException;
+import imagebooru.utils.RoaringBitmap;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Indice invertido da biblioteca local: para cada tag (pelo nome), o
+ * conjunto dos ids de ImgFile que a possuem, num RoaringBitmap. Permite
+ * consultar a biblioteca sem acessar a rede. É alimentado conforme as tags
+ * de cada post chegam (veja <tt>TaggingPipeline.setTagIndex()</tt>), ou
+ * diretamente por {@link #add(int, imagebooru.ImgTags)}.<br/><br/>
+ *
+ * Consultas usam termos, AND, OR, NOT e parenteses, com NOT antes de AND,
+ * e AND antes de OR. Termos lado a lado são ligados por AND, então
+ * <tt>"ttArtist:X AND ttCopyright:Y NOT ttFaults:jpeg_artifacts"</tt> são as
+ * imagens de X e de Y, sem jpeg_artifacts. Um termo é um nome de tag,
+ * opcionalmente precedido do TagType e ':' para exigir o tipo. Nomes com
+ * espaços ou parenteses vão entre aspas duplas. Tags desconhecidas não tem
+ * imagens.<br/><br/>
+ *
+ * {@link #save(java.lang.String)} grava o indice num arquivo, e
+ * {@link #load(java.lang.String)} o mapeia em memória: somente os nomes são
+ * lidos na abertura, e o conjunto de cada tag é lido do arquivo mapeado na
+ * primeira vez em que é usado.<br/><br/>
+ *
+ * Seguro para uso por varias threads.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class InvertedTagIndex {
+    private static final int magic = 0x49544958;//"ITIX"
+    private static final int version = 1;
+    private static final TagType[] types = TagType.values();
+
+    /**
+     * Imagens de uma tag. Depois de load(), ids fica null até o primeiro uso.
+     */
+    private static final class Posting {
+        TagType type;
+        RoaringBitmap ids;
+        int offset = -1;
+
+        Posting(TagType type, RoaringBitmap ids){
+            this.type = type;
+            this.ids = ids;
+        }
+    }
+
+    private final HashMap<String,Posting> postings = new HashMap<>();
+    private RoaringBitmap all = new RoaringBitmap();
+    private MappedByteBuffer mapped = null;
+
+    private Object throwIfNull(Object o){
+        if(o==null) { throw new NullPointerException("Nada de nulls!"); }
+        return o;
+    }
+
+    private RoaringBitmap ids(Posting p){
+        if(p.ids==null){
+            ByteBuffer b = mapped.duplicate();
+            b.position(p.offset);
+            p.ids = RoaringBitmap.deserialize(b);
+        }
+        return p.ids;
+    }
+
+    //Alimentação:
+
+    /**
+     * Registra as tags de uma imagem. As tags já registradas para id são
+     * mantidas; para substitui-las, chame {@link #remove(int)} antes.
+     *
+     * @param id id do ImgFile.
+     * @param tags tags da imagem.
+     */
+    public synchronized void add(int id, ImgTags tags){
+        throwIfNull(tags);
+        for(ImgTag t : tags){
+            Posting p = postings.get(t.getNome());
+            if(p==null){
+                p = new Posting(t.getType(), new RoaringBitmap());
+                postings.put(t.getNome(), p);
+            }
+            p.type = t.getType();//O tipo mais recente vale.
+            ids(p).add(id);
+        }
+        all.add(id);
+    }
+
+    /**
+     * Remove uma imagem de todas as tags. Percorre todas as tags, então
+     * serve para correções, não para uso em massa.
+     *
+     * @param id id do ImgFile.
+     */
+    public synchronized void remove(int id){
+        if(!all.contains(id)) { return; }
+        for(Posting p : postings.values()) { ids(p).remove(id); }
+        all.remove(id);
+    }
+
+    //Consulta:
+
+    /**
+     * @param nome nome da tag.
+     * @return quantidade de imagens com a tag.
+     */
+    public synchronized int countTag(String nome){
+        Posting p = postings.get(nome);
+        return (p==null) ? 0 : ids(p).getCardinality();
+    }
+
+    /**
+     * Executa uma consulta.
+     *
+     * @param query consulta, no formato descrito na classe.
+     * @return ids das imagens que a satisfazem. Uma copia: pode ser alterada.
+     * @throws IllegalArgumentException se a consulta for inválida.
+     */
+    public synchronized RoaringBitmap query(String query){
+        Operand r = new Parser((String)throwIfNull(query)).parse();
+        RoaringBitmap bm = r.resolve();
+        return (r.owned||r.negated) ? bm : bm.clone();
+    }
+
+    /**
+     * Conta as imagens de uma consulta. Quando ela é um AND (com ou sem 
+     * NOTs), o ultimo conjunto não é montado, somente contado.
+     *
+     * @param query consulta, no formato descrito na classe.
+     * @return quantidade de imagens que a satisfazem.
+     * @throws IllegalArgumentException se a consulta for inválida.
+     */
+    public synchronized int count(String query){
+        return new Parser((String)throwIfNull(query)).count();
+    }
+
+    /**
+     * @return quantidade de imagens indexadas.
+     */
+    public synchronized int getImageCount(){
+        return all.getCardinality();
+    }
+
+    /**
+     * @return quantidade de tags indexadas.
+     */
+    public synchronized int getTagCount(){
+        return postings.size();
+    }
+
+    /**
+     * Resultado parcial de uma consulta: um conjunto, possivelmente negado.
+     * owned diz se bm é uma copia (pode ser alterado e retornado) ou o
+     * conjunto interno de uma tag.
+     */
+    private final class Operand {
+        final RoaringBitmap bm;
+        final boolean negated, owned;
+
+        Operand(RoaringBitmap bm, boolean negated, boolean owned){
+            this.bm = bm;
+            this.negated = negated;
+            this.owned = owned;
+        }
+
+        RoaringBitmap resolve(){
+            return negated ? RoaringBitmap.andNot(all, bm) : bm;
+        }
+    }
+
+    /**
+     * Analisador descendente recursivo das consultas.
+     */
+    private final class Parser {
+        private final String q;
+        private int pos = 0;
+        private String token = null;
+        private boolean quoted = false;
+
+        Parser(String q){
+            this.q = q;
+            next();
+        }
+
+        private IllegalArgumentException error(String msg){
+            return new IllegalArgumentException(msg+" na posição "+pos+" de \""+q+"\"");
+        }
+
+        private void next(){
+            while( (pos<q.length())&&Character.isWhitespace(q.charAt(pos)) ) { pos++; }
+            quoted = false;
+            if(pos>=q.length()) { token = null; return; }
+            char c = q.charAt(pos);
+            if( (c=='(')||(c==')') ) { token = String.valueOf(c); pos++; return; }
+            int start = pos;
+            StringBuilder sb = new StringBuilder();
+            while(pos<q.length()){
+                c = q.charAt(pos);
+                if(c=='"'){
+                    int end = q.indexOf('"', pos+1);
+                    if(end<0) { pos = start; throw error("Aspas não fechadas"); }
+                    if(pos==start) { quoted = true; }//"AND" é termo; ttArtist:"a b" tem tipo.
+                    sb.append(q, pos+1, end);
+                    pos = end+1;
+                    continue;
+                }
+                if( Character.isWhitespace(c)||(c=='(')||(c==')') ) { break; }
+                sb.append(c);
+                pos++;
+            }
+            token = sb.toString();
+        }
+
+        private boolean isOp(String op){
+            return !quoted && op.equals(token);
+        }
+
+        Operand parse(){
+            Operand r = or();
+            if(token!=null) { throw error("Esperado fim da consulta"); }
+            return r;
+        }
+
+        /**
+         * Conta o resultado. Num AND no nivel mais alto, a ultima operação
+         * só conta, sem montar o conjunto.
+         */
+        int count(){
+            ArrayList<Operand> ops = andOperands();
+            if(isOp("OR")) { 
+                Operand r = orFrom(combine(ops));
+                if(token!=null) { throw error("Esperado fim da consulta"); }
+                return r.resolve().getCardinality();
+            }
+            if(token!=null) { throw error("Esperado fim da consulta"); }
+            ArrayList<RoaringBitmap> pos = new ArrayList<>();
+            RoaringBitmap neg = null;
+            for(Operand o : sorted(ops)){
+                if(o.negated) { neg = (neg==null) ? o.bm : RoaringBitmap.or(neg, o.bm); }
+                else { pos.add(o.bm); }
+            }
+            if(pos.isEmpty()) { return all.getCardinality()-neg.getCardinality(); }
+            RoaringBitmap base = pos.get(0);
+            for(int i=1; i<pos.size()-1; i++) { base = RoaringBitmap.and(base, pos.get(i)); }
+            if(neg==null) {
+                return (pos.size()==1) ? base.getCardinality() 
+                        : RoaringBitmap.andCardinality(base, pos.get(pos.size()-1));
+            }
+            if(pos.size()>1) { base = RoaringBitmap.and(base, pos.get(pos.size()-1)); }
+            return base.getCardinality()-RoaringBitmap.andCardinality(base, neg);
+        }
+
+        private Operand or(){
+            return orFrom(and());
+        }
+
+        private Operand orFrom(Operand r){
+            while(isOp("OR")){
+                next();
+                Operand b = and();
+                r = new Operand(RoaringBitmap.or(r.resolve(), b.resolve()), false, true);
+            }
+            return r;
+        }
+
+        private Operand and(){
+            return combine(andOperands());
+        }
+
+        private ArrayList<Operand> andOperands(){
+            ArrayList<Operand> ops = new ArrayList<>();
+            ops.add(unary());
+            while( (token!=null)&&!isOp("OR")&&!isOp(")") ){
+                if(isOp("AND")) { next(); }
+                ops.add(unary());
+            }
+            return ops;
+        }
+
+        private ArrayList<Operand> sorted(ArrayList<Operand> ops){
+            ops.sort( (x,y) -> Integer.compare(x.bm.getCardinality(), y.bm.getCardinality()) );
+            return ops;
+        }
+
+        /**
+         * Intersecção dos positivos, menor primeiro; depois retira a união
+         * dos negados. Se não há positivos, NOT a NOT b = NOT(a OR b).
+         */
+        private Operand combine(ArrayList<Operand> ops){
+            if(ops.size()==1) { return ops.get(0); }
+            RoaringBitmap pos = null, neg = null;
+            for(Operand o : sorted(ops)){
+                if(o.negated) { neg = (neg==null) ? o.bm : RoaringBitmap.or(neg, o.bm); }
+                else { pos = (pos==null) ? o.bm : RoaringBitmap.and(pos, o.bm); }
+            }
+            if(pos==null) { return new Operand(neg, true, true); }
+            if(neg!=null) { return new Operand(RoaringBitmap.andNot(pos, neg), false, true); }
+            return new Operand(pos, false, true);
+        }
+
+        private Operand unary(){
+            if(token==null) { throw error("Esperado um termo"); }
+            if(isOp("NOT")){
+                next();
+                Operand o = unary();
+                return new Operand(o.bm, !o.negated, o.owned);
+            }
+            if(isOp("(")){
+                next();
+                Operand o = or();
+                if(!isOp(")")) { throw error("Esperado ')'"); }
+                next();
+                return o;
+            }
+            if( isOp(")")||isOp("AND")||isOp("OR") ) { throw error("Esperado um termo, encontrado "+token); }
+            RoaringBitmap bm = term(token, quoted);
+            next();
+            return new Operand(bm, false, false);
+        }
+
+        /**
+         * @return conjunto interno da tag, ou um vazio.
+         */
+        private RoaringBitmap term(String t, boolean wasQuoted){
+            TagType type = null;
+            int colon = t.indexOf(':');
+            if( !wasQuoted && (colon>0) ){
+                for(TagType tt : types){
+                    if( tt.name().equals(t.substring(0, colon)) ) { type = tt; break; }
+                }
+                if(type!=null) { t = t.substring(colon+1); }
+            }
+            Posting p = postings.get(t);
+            if( (p==null)||((type!=null)&&(p.type!=type)) ) { return new RoaringBitmap(); }
+            return ids(p);
+        }
+    }
+
+    //Persistencia:
+
+    /**
+     * Grava o indice: <tt>int magic, int versão, int tags</tt>, o conjunto
+     * de todas as imagens, e para cada tag <tt>int tamanho do nome, nome em
+     * UTF-8, byte tipo</tt> e seu conjunto (veja RoaringBitmap.serialize()).
+     * Grava num arquivo temporario e o move sobre o destino.
+     *
+     * @param filename nome do arquivo.
+     */
+    public synchronized void save(String filename){
+        throwIfNull(filename);
+        File dest = new File(filename);
+        File tmp = new File(dest.getAbsolutePath()+".tmp");
+        try{
+            try( DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1<<16)) ){
+                out.writeInt(magic);
+                out.writeInt(version);
+                out.writeInt(postings.size());
+                writeBitmap(out, all);
+                for(Map.Entry<String,Posting> e : postings.entrySet()){
+                    byte[] nome = e.getKey().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(nome.length);
+                    out.write(nome);
+                    out.writeByte(e.getValue().type.ordinal());
+                    writeBitmap(out, ids(e.getValue()));
+                }
+            }
+            Files.move(tmp.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel salvar!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+
+    private static void writeBitmap(DataOutputStream out, RoaringBitmap bm) throws IOException{
+        ByteBuffer b = ByteBuffer.allocate(bm.serializedSize());
+        bm.serialize(b);
+        out.write(b.array());
+    }
+
+    private static int skipBitmap(ByteBuffer b){
+        int start = b.position();
+        int n = b.getInt();
+        int data = 0;
+        for(int i=0; i<n; i++){
+            b.getChar();
+            int card = b.getChar()+1;
+            data += (b.get()==1) ? 8*1024 : 2*card;
+        }
+        b.position(b.position()+data);
+        return start;
+    }
+
+    /**
+     * Abre um indice gravado por save(), mapeando o arquivo em memória. O
+     * indice aberto pode continuar recebendo imagens.
+     *
+     * @param filename nome do arquivo.
+     * @return indice aberto.
+     */
+    public static InvertedTagIndex load(String filename){
+        InvertedTagIndex idx = new InvertedTagIndex();
+        try( FileChannel ch = FileChannel.open(new File(filename).toPath(), StandardOpenOption.READ) ){
+            //O mapeamento continua valido depois de fechar o canal.
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if( (b.getInt()!=magic)||(b.getInt()!=version) ) {
+                throw new TagsPersistenceException("Arquivo não é um indice de tags: "+filename);
+            }
+            int n = b.getInt();
+            idx.all = RoaringBitmap.deserialize(b);
+            idx.mapped = b;
+            for(int i=0; i<n; i++){
+                byte[] nome = new byte[b.getInt()];
+                b.get(nome);
+                Posting p = new Posting(types[b.get()], null);
+                p.offset = skipBitmap(b);
+                idx.postings.put(new String(nome, StandardCharsets.UTF_8), p);
+            }
+        } catch (IOException | RuntimeException ex) {
+            if(ex instanceof TagsPersistenceException) { throw (TagsPersistenceException)ex; }
+            throw new TagsPersistenceException("Não Foi possivel carregar!\n"
+                    +ex.getMessage(), ex);
+        }
+        return idx;
+    }
+}
@@ -0,0 +1,98 @@
+package imagebooru.pipeline;
+
+import imagebooru.directory.AbstractImageDirectory;
+import imagebooru.filenamemaker.AbstractFileNameGenerator;
+import imagebooru.postparser.AbstractPostParser;
+import java.io.Closeable;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Trabalho de renomeação de um diretório que pode ser interrompido e 
+ * retomado.<br/><br/>
+ * 
+ * Executa um TaggingPipeline com um CheckpointFile: cada imagem renomeada
+ * tem seu id registrado, e numa nova execução com o mesmo checkpoint as 
+ * imagens já registradas são puladas ainda no scan, sem nenhuma busca na 
+ * rede. Posts que falharam ou vieram sem tags não são registrados, então 
+ * serão tentados de novo.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class ResumableJob implements Closeable {
+    private final AbstractImageDirectory dir;
+    private final AbstractPostParser parser;
+    private final Supplier<? extends AbstractFileNameGenerator> generators;
+    private final CheckpointFile checkpoint;
+    private TaggingPipeline last = null;
+    
+    /**
+     * @param dir diretório cujas imagens serão renomeadas.
+     * @param parser parser seguro para varias threads.
+     * @param generators fornece um gerador de nomes por thread.
+     * @param checkpointFilename arquivo de checkpoint. Criado se não 
+     * existir; se existir, o trabalho continua de onde parou.
+     */
+    public ResumableJob(AbstractImageDirectory dir, AbstractPostParser parser,
+            Supplier<? extends AbstractFileNameGenerator> generators, String checkpointFilename){
+        if( (dir==null)||(parser==null)||(generators==null) ) { throw new NullPointerException("Nada de nulls!"); }
+        this.dir = dir;
+        this.parser = parser;
+        this.generators = generators;
+        this.checkpoint = new CheckpointFile(checkpointFilename);
+    }
+    
+    /**
+     * Cria o pipeline da proxima execução, já ligado ao checkpoint, para que
+     * possa ser configurado (threads, metricas...) antes de <tt>run()</tt>.
+     * 
+     * @return novo pipeline.
+     */
+    public synchronized TaggingPipeline newPipeline(){
+        last = new TaggingPipeline(dir, parser, generators);
+        last.setCheckpoint(checkpoint);
+        return last;
+    }
+    
+    /**
+     * Executa o trabalho, pulando as imagens já concluidas. Usa o pipeline
+     * de <tt>newPipeline()</tt>, se ele ainda não foi executado.
+     * 
+     * @return estatisticas de cada estagio.
+     * @throws InterruptedException se interrompido. O progresso até ali é
+     * mantido.
+     */
+    public List<TaggingPipeline.StageStats> run() throws InterruptedException{
+        TaggingPipeline p;
+        synchronized(this){
+            p = ( (last==null)||last.isStarted() ) ? newPipeline() : last;
+        }
+        try{
+            return p.run();
+        } finally {
+            checkpoint.flush();
+        }
+    }
+    
+    /**
+     * @return quantidade de imagens concluidas, nesta e nas execuções 
+     * anteriores.
+     */
+    public int getDoneCount(){
+        return checkpoint.getDoneCount();
+    }
+    
+    /**
+     * Esquece o progresso: a proxima execução refaz tudo.
+     */
+    public void reset(){
+        checkpoint.reset();
+    }
+
+    @Override
+    public void close() {
+        checkpoint.close();
+    }
+}
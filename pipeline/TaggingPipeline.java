@@ -0,0 +1,505 @@
+package imagebooru.pipeline;
+
+import imagebooru.ImgFile;
+import imagebooru.ImgTags;
+import imagebooru.directory.AbstractImageDirectory;
+import imagebooru.filenamemaker.AbstractFileNameGenerator;
+import imagebooru.postparser.AbstractPostParser;
+import imagebooru.postparser.PostNotFoundException;
+import imagebooru.utils.Metrics;
+import imagebooru.utils.NoopMetrics;
+import imagebooru.utils.ProgressListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Renomeia todas as imagens de um diretório pelas suas tags, em quatro
+ * estagios concorrentes: leitura do diretório (scan), busca das tags (fetch),
+ * geração do nome (name) e renomeação (rename).<br/><br/>
+ * 
+ * Cada estagio tem seu proprio pool de threads e entrega seu trabalho ao
+ * seguinte por uma fila limitada. Se um estagio é mais lento, a fila antes
+ * dele enche e quem o alimenta espera (backpressure), então a memória usada
+ * é limitada mesmo para diretórios enormes. Com varias threads no fetch,
+ * limitado pela rede, os estagios de CPU e disco não ficam parados esperando
+ * uma busca por vez.<br/><br/>
+ * 
+ * O mesmo PostParser é usado por todas as threads do fetch. Geradores de nome
+ * não são seguros para varias threads, então cada thread do name obtem o seu
+ * do <tt>Supplier</tt> recebido, que tambem deve configurar o limite de
+ * caracteres adequado ao diretório.<br/><br/>
+ * 
+ * Posts sem tags (busca falhou) não são renomeados. Falhas de qualquer 
+ * estagio são guardadas em {@link #getFailures()} sem parar os outros itens,
+ * inclusive buscas que esgotaram as tentativas e renomeações recusadas pelo
+ * diretório; só posts apagados do ImageBooru são apenas pulados.
+ * Com um CheckpointFile (veja {@link ResumableJob}), imagens já concluidas
+ * são puladas no scan, e cada imagem renomeada é registrada nele.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class TaggingPipeline {
+    private static final Job poison = new Job(null);//Marca o fim de uma fila.
+    
+    private final AbstractImageDirectory dir;
+    private final AbstractPostParser parser;
+    private final ThreadLocal<AbstractFileNameGenerator> generators;
+    private int fetchThreads = 8, nameThreads = 2, renameThreads = 1, queueCapacity = 256;
+    private boolean dryRun = false;
+    private CheckpointFile checkpoint = null;
+    private InvertedTagIndex tagIndex = null;
+    private Metrics metrics = NoopMetrics.instance;
+    private ProgressListener log_progress = NoopMetrics.instance;
+    
+    private final ConcurrentLinkedQueue<Failure> failures = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger found = new AtomicInteger(), renamed = new AtomicInteger(), alreadyDone = new AtomicInteger();
+    private final ArrayList<ExecutorService> pools = new ArrayList<>();
+    private volatile boolean running = false;
+    
+    /**
+     * Uma imagem passando pelos estagios.
+     */
+    public static final class Job {
+        private final ImgFile file;
+        private volatile ImgTags tags;
+        private volatile String newName;
+        
+        private Job(ImgFile file){
+            this.file = file;
+        }
+        
+        public ImgFile getFile() { return file; }
+        public ImgTags getTags() { return tags; }
+        public String getNewName() { return newName; }
+    }
+    
+    /**
+     * Falha de um estagio ao processar uma imagem.
+     */
+    public static final class Failure {
+        private final String stage;
+        private final ImgFile file;
+        private final Exception cause;
+        
+        private Failure(String stage, ImgFile file, Exception cause){
+            this.stage = stage;
+            this.file = file;
+            this.cause = cause;
+        }
+        
+        public String getStage() { return stage; }
+        public ImgFile getFile() { return file; }
+        public Exception getCause() { return cause; }
+
+        @Override
+        public String toString() {
+            return stage+": "+((file==null) ? "-" : file.getFilename())+": "+cause.getMessage();
+        }
+    }
+    
+    /**
+     * Estatisticas de um estagio.
+     */
+    public static final class StageStats {
+        private final String name;
+        private final int workers;
+        private final LongAdder processed = new LongAdder(), skipped = new LongAdder(), failed = new LongAdder();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private volatile long startNanos = 0, endNanos = 0;
+        
+        private StageStats(String name, int workers){
+            this.name = name;
+            this.workers = workers;
+        }
+        
+        public String getName() { return name; }
+        public int getWorkers() { return workers; }
+        public long getProcessed() { return processed.sum(); }
+        public long getSkipped() { return skipped.sum(); }
+        public long getFailed() { return failed.sum(); }
+        
+        /**
+         * @return tempo, em ns, do inicio do estagio até seu fim (ou até agora).
+         */
+        public long getElapsedNanos(){
+            if(startNanos==0) { return 0; }
+            return ((endNanos==0) ? System.nanoTime() : endNanos) - startNanos;
+        }
+        
+        /**
+         * @return itens processados por segundo.
+         */
+        public double getThroughput(){
+            long e = getElapsedNanos();
+            return (e==0) ? 0 : (processed.sum()+skipped.sum()+failed.sum())*1e9/e;
+        }
+        
+        /**
+         * @return fração do tempo em que as threads do estagio estiveram 
+         * trabalhando, e não esperando nas filas. Entre 0 e 1.
+         */
+        public double getUtilization(){
+            long e = getElapsedNanos();
+            return (e==0) ? 0 : (double)busyNanos.get()/((long)workers*e);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-6s x%d: %d ok, %d pulados, %d falhas, %.1f/s, uso %.0f%%",
+                    name, workers, getProcessed(), getSkipped(), getFailed(), 
+                    getThroughput(), 100*getUtilization());
+        }
+    }
+    
+    /**
+     * Trabalho de um estagio sobre um item.
+     */
+    private interface Step {
+        
+        /**
+         * @return true para passar o item adiante, false para descarta-lo.
+         */
+        public boolean apply(Job j) throws Exception;
+    }
+    
+    private final class Stage {
+        private final StageStats stats;
+        private final Step step;
+        private final BlockingQueue<Job> in, out;
+        private final AtomicInteger alive;
+        private Stage next;
+        
+        private Stage(String name, int workers, Step step, BlockingQueue<Job> in, BlockingQueue<Job> out){
+            this.stats = new StageStats(name, workers);
+            this.step = step;
+            this.in = in;
+            this.out = out;
+            this.alive = new AtomicInteger(workers);
+        }
+        
+        private void start(){
+            final String name = stats.getName();
+            final AtomicInteger n = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(stats.getWorkers(), r -> {
+                Thread t = new Thread(r, "pipeline-"+name+"-"+n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            pools.add(pool);
+            stats.startNanos = System.nanoTime();
+            for(int i=0; i<stats.getWorkers(); i++) { pool.execute(this::work); }
+            pool.shutdown();
+        }
+        
+        private void work(){
+            Metrics.Timer timer = metrics.timer("pipeline."+stats.getName());
+            try{
+                while(true){
+                    Job j = (in==null) ? null : in.take();
+                    if(j==poison) { break; }
+                    long t0 = System.nanoTime();
+                    boolean pass, threw = false;
+                    try{
+                        pass = step.apply(j);
+                    } catch(InterruptedException ex) {
+                        throw ex;
+                    } catch(Exception ex) {
+                        stats.failed.increment();
+                        failures.add( new Failure(stats.getName(), (j==null) ? null : j.getFile(), ex) );
+                        pass = false;
+                        threw = true;
+                    }
+                    long busy = System.nanoTime()-t0;
+                    stats.busyNanos.addAndGet(busy);
+                    timer.record(busy);
+                    if(j==null) { //Fonte: conta as imagens achadas.
+                        stats.processed.add(found.get());
+                        stats.skipped.add(alreadyDone.get());
+                    } else {
+                        if(!pass) { if(!threw) { stats.skipped.increment(); } }//Falha já contada.
+                        else {
+                            stats.processed.increment();
+                            if(out!=null) { out.put(j); }
+                        }
+                    }
+                    if(in==null) { break; }//Fonte: roda uma vez só.
+                }
+            } catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();//Cancelado.
+            } finally {
+                if(alive.decrementAndGet()==0) { finish(); }
+            }
+        }
+        
+        /**
+         * Ultima thread do estagio: avisa cada thread do proximo que acabou.
+         */
+        private void finish(){
+            stats.endNanos = System.nanoTime();
+            if(next==null) { return; }
+            for(int i=0; i<next.stats.getWorkers(); i++){
+                try{
+                    out.put(poison);
+                } catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+    
+    private Stage[] stages;
+    
+    /**
+     * @param dir diretório cujas imagens serão renomeadas.
+     * @param parser parser usado por todas as threads de busca. Deve ser 
+     * seguro para varias threads, como os deste pacote.
+     * @param generators fornece um gerador de nomes por thread do estagio 
+     * name.
+     */
+    public TaggingPipeline(AbstractImageDirectory dir, AbstractPostParser parser,
+            Supplier<? extends AbstractFileNameGenerator> generators){
+        if( (dir==null)||(parser==null)||(generators==null) ) { throw new NullPointerException("Nada de nulls!"); }
+        this.dir = dir;
+        this.parser = parser;
+        this.generators = ThreadLocal.withInitial(generators);
+    }
+    
+    private static int throwIfZeroOrNeg(int v){
+        if(v<=0) { throw new IllegalArgumentException("Deve ser maior que 0"); }
+        return v;
+    }
+    
+    private void throwIfRunning(){
+        if(running) { throw new IllegalStateException("Pipeline já iniciado."); }
+    }
+    
+    //Configuração:
+    
+    /**
+     * Seta as threads de cada estagio (o scan sempre usa uma).
+     * 
+     * @param fetch threads de busca de tags. Limitadas pela rede; padrão 8.
+     * @param name threads de geração de nomes. Padrão 2.
+     * @param rename threads de renomeação. Padrão 1.
+     */
+    public void setThreads(int fetch, int name, int rename){
+        throwIfRunning();
+        this.fetchThreads = throwIfZeroOrNeg(fetch);
+        this.nameThreads = throwIfZeroOrNeg(name);
+        this.renameThreads = throwIfZeroOrNeg(rename);
+    }
+    
+    /**
+     * @param capacity capacidade de cada fila entre estagios. Padrão 256.
+     */
+    public void setQueueCapacity(int capacity){
+        throwIfRunning();
+        this.queueCapacity = throwIfZeroOrNeg(capacity);
+    }
+    
+    /**
+     * @param dryRun true para gerar os nomes sem renomear nada.
+     */
+    public void setDryRun(boolean dryRun){
+        throwIfRunning();
+        this.dryRun = dryRun;
+    }
+    
+    /**
+     * @param c checkpoint consultado no scan e atualizado a cada imagem 
+     * renomeada. null (padrão) para nenhum.
+     */
+    public void setCheckpoint(CheckpointFile c){
+        throwIfRunning();
+        this.checkpoint = c;
+    }
+    
+    /**
+     * @param idx indice que recebe as tags de cada post buscado, com o id do
+     * ImgFile. null (padrão) para nenhum.
+     * @since 2.5
+     */
+    public void setTagIndex(InvertedTagIndex idx){
+        throwIfRunning();
+        this.tagIndex = idx;
+    }
+    
+    /**
+     * @param m Metrics que recebe o timer <tt>pipeline.{estagio}</tt> de 
+     * cada estagio. Se null, usado NoopMetrics.
+     */
+    public void setMetrics(Metrics m){
+        throwIfRunning();
+        this.metrics = (m==null) ? NoopMetrics.instance : m;
+    }
+    
+    /**
+     * @param pl ouvinte notificado a cada imagem renomeada. Se null, usado
+     * NoopMetrics.
+     */
+    public void setProgressListener(ProgressListener pl){
+        this.log_progress = (pl==null) ? NoopMetrics.instance : pl;
+    }
+    
+    //Estagios:
+    
+    private boolean scan(BlockingQueue<Job> out) throws InterruptedException{
+        for(ImgFile f : dir.getAllImgFiles()){
+            if( (checkpoint!=null) && checkpoint.isDone(f.getId()) ) {
+                alreadyDone.incrementAndGet();
+                continue;
+            }
+            found.incrementAndGet();
+            out.put( new Job(f) );
+        }
+        return true;
+    }
+    
+    private boolean fetch(Job j) throws IOException{
+        try{
+            j.tags = parser.fetchAllTagsById( j.getFile().getId() );
+        } catch(PostNotFoundException ex) {
+            return false;//Apagado do ImageBooru: pula, como um post sem tags.
+        }
+        if(j.tags.isEmpty()) { throw new IOException("Nenhuma tag obtida para o post "+j.getFile().getId()+"; tentativas esgotadas."); }
+        if(tagIndex!=null) { tagIndex.add(j.getFile().getId(), j.tags); }
+        return true;
+    }
+    
+    private boolean name(Job j){
+        j.newName = generators.get().generateAsString( j.getFile().getId(), j.getTags() );
+        return true;
+    }
+    
+    private boolean rename(Job j) throws IOException{
+        if(!dryRun){
+            if( !dir.rename(j.getFile(), j.getNewName()) ) {
+                throw new IOException("Não foi possivel renomear "+j.getFile().getFilename()+" para "+j.getNewName());
+            }
+            if(checkpoint!=null) { checkpoint.markDone( j.getFile().getId() ); }
+        }
+        int done = renamed.incrementAndGet();
+        log_progress.doNotifyProgress(done, Math.max(found.get()-done, 0));
+        return true;
+    }
+    
+    //Execução:
+    
+    /**
+     * Inicia todos os estagios. Retorna imediatamente.
+     */
+    public synchronized void start(){
+        throwIfRunning();
+        running = true;
+        BlockingQueue<Job> toFetch  = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Job> toName   = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Job> toRename = new ArrayBlockingQueue<>(queueCapacity);
+        stages = new Stage[]{
+            new Stage("scan",   1,             j -> scan(toFetch),  null,     toFetch),
+            new Stage("fetch",  fetchThreads,  this::fetch,         toFetch,  toName),
+            new Stage("name",   nameThreads,   this::name,          toName,   toRename),
+            new Stage("rename", renameThreads, this::rename,        toRename, null),
+        };
+        for(int i=0; i<stages.length-1; i++) { stages[i].next = stages[i+1]; }
+        for(int i=stages.length-1; i>=0; i--) { stages[i].start(); }
+    }
+    
+    /**
+     * Espera todos os estagios terminarem.
+     * 
+     * @throws InterruptedException se interrompido durante a espera.
+     */
+    public void awaitTermination() throws InterruptedException{
+        ArrayList<ExecutorService> all;
+        synchronized(this){ all = new ArrayList<>(pools); }
+        for(ExecutorService p : all) { p.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS); }
+    }
+    
+    /**
+     * Inicia e espera todos os estagios.
+     * 
+     * @return estatisticas de cada estagio, em ordem.
+     * @throws InterruptedException se interrompido; o pipeline é cancelado.
+     */
+    public List<StageStats> run() throws InterruptedException{
+        start();
+        try{
+            awaitTermination();
+        } catch(InterruptedException ex) {
+            cancel();
+            throw ex;
+        }
+        return getStageStats();
+    }
+    
+    /**
+     * Interrompe todas as threads. Imagens em andamento podem ou não ser
+     * renomeadas.
+     */
+    public synchronized void cancel(){
+        for(ExecutorService p : pools) { p.shutdownNow(); }
+    }
+    
+    /**
+     * @return estatisticas de cada estagio, em ordem. Vazia se não iniciado.
+     */
+    public synchronized List<StageStats> getStageStats(){
+        ArrayList<StageStats> ret = new ArrayList<>();
+        if(stages!=null) {
+            for(Stage s : stages) { ret.add(s.stats); }
+        }
+        return ret;
+    }
+    
+    /**
+     * @return texto com uma linha de estatisticas por estagio.
+     */
+    public String report(){
+        StringBuilder sb = new StringBuilder();
+        for(StageStats s : getStageStats()) { sb.append(s).append('\n'); }
+        return sb.toString();
+    }
+    
+    /**
+     * @return falhas ocorridas até agora.
+     */
+    public List<Failure> getFailures(){
+        return Collections.unmodifiableList( new ArrayList<>(failures) );
+    }
+    
+    /**
+     * @return true se <tt>start()</tt> já foi chamado.
+     */
+    public boolean isStarted(){
+        return running;
+    }
+    
+    /**
+     * @return imagens puladas no scan por já constarem no checkpoint.
+     */
+    public int getAlreadyDoneCount(){
+        return alreadyDone.get();
+    }
+    
+    /**
+     * @return imagens renomeadas (ou que seriam, em dryRun) até agora.
+     */
+    public int getRenamedCount(){
+        return renamed.get();
+    }
+}
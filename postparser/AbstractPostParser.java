@@ -1,10 +1,27 @@
 package imagebooru.postparser;
 
+import imagebooru.AliasIndex;
 import imagebooru.ImgTag;
 import imagebooru.ImgTags;
+import imagebooru.persistence.AbstractPostTagsStore;
+import imagebooru.persistence.AbstractPostTagsStore.StoredPost;
+import imagebooru.persistence.AbstractPostTagsStore.TagRef;
+import imagebooru.persistence.AbstractTagsPersistence;
+import imagebooru.persistence.NegativePostCache;
+import imagebooru.utils.Metrics;
+import imagebooru.utils.NoopMetrics;
 import imagebooru.utils.ProgressListener;
-import imagebooru.utils.StubProgressListener;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
 import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 
 /**
  * Modela um "Parser" para Imagens postadas em um ImageBooru.
@@ -24,6 +41,27 @@ import java.util.Collection;
  * fornecer métodos para obter uma cópia este cache, métodos para carregar este 
  * cache de uma fonte externa e empregar alguma lógica para que o mesmo não 
  * fique muito desatualizado em relação ao ImageBooru.
+ * 
+ * Implementações devem ser seguras para uso por varias threads: o estado de
+ * cada busca fica em variaveis locais, e o cache de tags é sincronizado.
+ * 
+ * Opcionalmente, um AbstractPostTagsStore pode ser configurado para guardar
+ * as tags de cada post buscado. As implementações devem consulta-lo antes de
+ * ir à rede (veja <tt>readFromPostStore()</tt> e <tt>writeToPostStore()</tt>).
+ * 
+ * Metricas são reportadas ao Metrics configurado (por padrão, nenhum):
+ * <tt>postparser.fetch.{host}</tt> (latencia de cada pagina buscada, veja
+ * <tt>fetchDocument()</tt>), <tt>postparser.fetch.errors.{host}</tt>,
+ * <tt>postparser.fetch.throttled.{host}</tt> (respostas 429/503),
+ * <tt>postparser.retries</tt>, <tt>postparser.tagcache.hit</tt>/<tt>miss</tt>,
+ * as gauges <tt>postparser.tagcache.size.{host}</tt> e
+ * <tt>postparser.tagcache.evictions.{host}</tt> (do host de baseURL),
+ * <tt>postparser.poststore.hit</tt>/<tt>miss</tt>,
+ * <tt>postparser.notfound</tt> (posts que responderam 404/410) e
+ * <tt>postparser.negative.hit</tt> (posts recusados pelo cache negativo,
+ * veja <tt>setNegativePostCache()</tt>). As implementações
+ * tambem geram eventos JFR (PostFetchEvent, TagFetchEvent e HtmlParseEvent),
+ * que custam praticamente nada quando a gravação não está ativa.
  *
  * @author Guilherme
  * @created 23/02/2013
@@ -31,7 +69,34 @@ import java.util.Collection;
  */
 public abstract class AbstractPostParser {
     protected String baseURL;
-    protected ProgressListener log_progress = new StubProgressListener();
+    protected ProgressListener log_progress = NoopMetrics.instance;
+    protected Metrics metrics = NoopMetrics.instance;
+    protected RequestScheduler scheduler = null;
+    protected AdaptiveConcurrencyLimiter limiter = null;
+    protected AbstractTagCache tagCache = new HashTagCacheImpl();
+    protected Metrics.Counter retries, tagCacheHits, tagCacheMisses, postStoreHits, postStoreMisses;
+    protected AbstractPostTagsStore postStore = null;
+    protected long postStoreMaxAge = Long.MAX_VALUE;
+    protected NegativePostCache negativeCache = null;
+    protected Metrics.Counter notFound, negativeHits;
+    protected long retryDelayMillis = 3000;
+    private final CopyOnWriteArrayList<TagInfoListener> tagInfoListeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<String,HostMetrics> hostMetrics = new ConcurrentHashMap<>();//Por host, do Metrics atual.
+    
+    /**
+     * Metricas de <tt>fetchDocument()</tt> de um host, obtidas uma vez por
+     * host em vez de montar o nome e busca-lo no Metrics a cada pagina.
+     */
+    private static final class HostMetrics {
+        final Metrics.Timer fetch;
+        final Metrics.Counter errors, throttled;
+        
+        HostMetrics(Metrics m, String host){
+            fetch     = m.timer("postparser.fetch."+host);
+            errors    = m.counter("postparser.fetch.errors."+host);
+            throttled = m.counter("postparser.fetch.throttled."+host);
+        }
+    }
     
     private String throwIfInvalidURL(String u){
         if(u==null) { throw new NullPointerException(); }
@@ -50,18 +115,483 @@ public abstract class AbstractPostParser {
      */
     public AbstractPostParser(String baseURL){        
         this.baseURL = throwIfInvalidURL(baseURL);
+        setMetrics(null);
     }
     
     /**
      * Seta o ProgressListener deste PostParser.
      *
-     * @param pl novo progressListener. Se null, usado stub por conviniencia.
+     * @param pl novo progressListener. Se null, usado NoopMetrics por conviniencia.
      */
     public void setProgressListener(ProgressListener pl){
         this.log_progress=pl;
-        if(log_progress==null) { log_progress = new StubProgressListener(); }
+        if(log_progress==null) { log_progress = NoopMetrics.instance; }
+    }
+    
+    /**
+     * Seta o Metrics deste PostParser.
+     * 
+     * @param m novo Metrics. Se null, usado NoopMetrics.
+     * @since 2.5
+     */
+    public void setMetrics(Metrics m){
+        this.metrics = (m==null) ? NoopMetrics.instance : m;
+        hostMetrics.clear();
+        retries         = metrics.counter("postparser.retries");
+        tagCacheHits    = metrics.counter("postparser.tagcache.hit");
+        tagCacheMisses  = metrics.counter("postparser.tagcache.miss");
+        postStoreHits   = metrics.counter("postparser.poststore.hit");
+        postStoreMisses = metrics.counter("postparser.poststore.miss");
+        notFound        = metrics.counter("postparser.notfound");
+        negativeHits    = metrics.counter("postparser.negative.hit");
+        //Gauges por host, como as do limiter: com um só nome, cada PostParser
+        //registrado substituiria a gauge do anterior.
+        String host = String.valueOf( URI.create(baseURL).getHost() );
+        metrics.gauge("postparser.tagcache.size."+host, () -> tagCache.size());
+        metrics.gauge("postparser.tagcache.evictions."+host, () -> tagCache.getEvictionCount());
+    }
+    
+    /**
+     * Seta o cache de info. de tags deste PostParser. As tags do cache atual
+     * são copiadas para o novo. Deve ser chamado antes de começar as buscas.
+     * <br/><br/>
+     * 
+     * O padrão é um HashTagCacheImpl, sem limite. Para buscas em ImageBooru(s)
+     * com muitas tags, use um TieredTagCacheImpl, que limita as tags em 
+     * memória e guarda as demais em disco.
+     * 
+     * @param c novo cache. Não nulo, e não compartilhado com outro PostParser.
+     * @since 2.5
+     */
+    public void setTagCache(AbstractTagCache c){
+        if(c==null) { throw new NullPointerException("c não deve ser null"); }
+        if(c==tagCache) { return; }
+        AbstractTagCache old = tagCache;
+        for(ImgTag t : old.values()) { c.putIfAbsent(tagCacheKey(t), t); }
+        tagCache = c;
+    }
+    
+    /**
+     * @return o cache de info. de tags deste PostParser.
+     * @since 2.5
+     */
+    public AbstractTagCache getTagCache(){
+        return tagCache;
+    }
+    
+    /**
+     * Retorna a chave de uma tag no cache deste PostParser.
+     * 
+     * @param t tag.
+     * @return chave de t.
+     * @since 2.5
+     */
+    protected abstract String tagCacheKey(ImgTag t);
+    
+    /**
+     * Seta o intervalo entre tentativas de buscar um post.
+     * 
+     * @param millis intervalo em ms. Padrão: 3000. Não negativo.
+     * @since 2.5
+     */
+    public void setRetryDelay(long millis){
+        if(millis<0) { throw new IllegalArgumentException("millis não deve ser negativo."); }
+        this.retryDelayMillis = millis;
+    }
+    
+    /**
+     * Seta o agendador das requisições deste PostParser.
+     * Para que os limites por host e o limite global valham, o mesmo 
+     * RequestScheduler deve ser usado por todos os PostParsers.
+     * 
+     * @param s agendador. Se null (padrão), as requisições são feitas 
+     * imediatamente.
+     * @since 2.5
+     */
+    public void setRequestScheduler(RequestScheduler s){
+        this.scheduler = s;
+    }
+    
+    /**
+     * Seta o limite adaptativo de requisições simultaneas deste PostParser.
+     * Diferente do RequestScheduler, cada PostParser (isto é, cada 
+     * ImageBooru) deve ter o seu.
+     * 
+     * @param l limiter. Se null (padrão), sem limite.
+     * @since 2.5
+     */
+    public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter l){
+        this.limiter = l;
+    }
+    
+    /**
+     * Busca e interpreta uma pagina HTML, registrando a latencia em
+     * <tt>postparser.fetch.{host}</tt>, as falhas em 
+     * <tt>postparser.fetch.errors.{host}</tt> e um HtmlParseEvent.
+     * Implementações devem usa-lo em vez de chamar o Jsoup diretamente.
+     * Com um RequestScheduler e/ou AdaptiveConcurrencyLimiter configurados,
+     * espera antes a vez do host; a espera não entra na latencia. Respostas
+     * HTTP 429 e 503, e timeouts, reduzem o limite do limiter.
+     * 
+     * @param url URL completa da pagina.
+     * @return documento da pagina.
+     * @throws IOException se a pagina não puder ser obtida.
+     * @since 2.5
+     */
+    protected Document fetchDocument(String url) throws IOException{
+        String host = URI.create(url).getHost();
+        final Metrics m = metrics;
+        HostMetrics hm = hostMetrics.computeIfAbsent(String.valueOf(host), h -> new HostMetrics(m, h));//Sem host: "null", como antes.
+        RequestScheduler.Permit permit = null;
+        AdaptiveConcurrencyLimiter.Permit lp = null;
+        //Primeiro a vaga do limiter, que pode esperar um Retry-After inteiro,
+        //e só depois a do scheduler, para não segurar as vagas dos outros 
+        //hosts durante essa espera.
+        try{
+            if(limiter!=null) { lp = limiter.acquire(); }
+            if(scheduler!=null) { permit = scheduler.acquire(host); }
+        } catch(InterruptedException ex) {
+            if(lp!=null) { lp.ignore(); }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrompido esperando a vez de "+host);
+        }
+        long start = System.nanoTime();
+        long latency = -1, retryAfter = -1;//Resultado para o limiter: sucesso, sobrecarga ou nenhum.
+        HtmlParseEvent ev = new HtmlParseEvent();
+        ev.begin();
+        try{
+            //Lê o status em vez de deixar o Jsoup lançar exceção, para que o
+            //limiter distinga sobrecarga (429/503) de outros erros.
+            Connection.Response r = Jsoup.connect(url).ignoreHttpErrors(true).execute();
+            int status = r.statusCode();
+            if(status>=400){
+                if( (lp!=null) && ((status==429)||(status==503)) ) {
+                    hm.throttled.inc();
+                    retryAfter = AdaptiveConcurrencyLimiter.parseRetryAfter(r.header("Retry-After"));
+                }
+                throw new HttpStatusException("HTTP error fetching URL", status, url);
+            }
+            byte[] body = r.bodyAsBytes();//Lê o corpo antes do parse, que o reaproveita.
+            latency = System.nanoTime()-start;
+            Document doc = r.parse();
+            hm.fetch.record(System.nanoTime()-start);
+            ev.end();
+            if(ev.shouldCommit()){
+                ev.url = url;
+                ev.status = status;
+                ev.bytes = body.length;
+                ev.outcome = "ok";
+                ev.commit();
+            }
+            return doc;
+        } catch(IOException | RuntimeException ex) {
+            if( (ex instanceof SocketTimeoutException) && (retryAfter<0) ) { retryAfter = 0; }
+            hm.errors.inc();
+            ev.end();
+            if(ev.shouldCommit()){
+                ev.url = url;
+                ev.status = (ex instanceof HttpStatusException) ? ((HttpStatusException)ex).getStatusCode() : -1;
+                ev.outcome = String.valueOf(ex.getMessage());
+                ev.commit();
+            }
+            throw ex;
+        } finally {
+            //Libera na ordem inversa da obtenção.
+            if(permit!=null) { permit.close(); }
+            if(lp!=null){
+                if(retryAfter>=0) { lp.dropped(retryAfter); }
+                else if(latency>=0) { lp.success(latency); }
+                else { lp.ignore(); }
+            }
+        }
     }
     
+    /**
+     * Adiciona um ouvinte das tags novas ou atualizadas no cache de tags.
+     * 
+     * @param l ouvinte a ser adicionado.
+     */
+    public void addTagInfoListener(TagInfoListener l){
+        if(l==null) { throw new NullPointerException("l não deve ser null"); }
+        tagInfoListeners.add(l);
+    }
+    
+    /**
+     * @param l ouvinte a ser removido.
+     */
+    public void removeTagInfoListener(TagInfoListener l){
+        tagInfoListeners.remove(l);
+    }
+    
+    /**
+     * Notifica os ouvintes de que t foi adicionada ou atualizada no cache.
+     * Implementações devem chama-lo sempre que obtiverem uma tag do 
+     * ImageBooru que altere seu cache.
+     * 
+     * @param t tag adicionada ou atualizada.
+     */
+    protected void doNotifyTagAdded(ImgTag t){
+        for(TagInfoListener l : tagInfoListeners) { l.doNotifyTagAdded(t); }
+    }
+    
+    /**
+     * Adiciona a idx as tags atuais do cache e o registra como ouvinte das
+     * tags novas deste PostParser (veja {@link TagInfoListener}). Tags 
+     * carregadas depois disso com <tt>addAllToTagInfo()</tt> não são 
+     * notificadas, e devem ser passadas a 
+     * {@link AliasIndex#addAll(java.util.Collection) idx.addAll()}.
+     * 
+     * @param idx indice a ser mantido atualizado.
+     * @return o listener registrado, para <tt>removeTagInfoListener()</tt>.
+     * @since 2.5
+     */
+    public TagInfoListener attachAliasIndex(AliasIndex idx){
+        if(idx==null) { throw new NullPointerException("idx não deve ser null"); }
+        idx.addAll( getAllTagsInfo() );
+        TagInfoListener l = idx::add;
+        addTagInfoListener(l);
+        return l;
+    }
+    
+    /**
+     * Adiciona ao cache uma tag lida de uma persistencia; para uso do
+     * <tt>addAllToTagInfo(Collection)</tt> das implementações. Se a chave já
+     * está no cache (ex. buscada do ImageBooru durante um 
+     * <tt>warmStartTagInfo()</tt>), a tag do cache é mantida, mas recebe o
+     * alias de t se não tiver um. Nesse caso os ouvintes são notificados,
+     * para que uma persistencia em fundo grave de novo a versão com alias.
+     * 
+     * @param t tag persistida.
+     * @since 2.5
+     */
+    protected void mergeIntoTagInfo(ImgTag t){
+        String key = tagCacheKey(t);
+        ImgTag merged = null;
+        AbstractTagCache cache = tagCache;
+        synchronized(cache){//Mesmo lock das atualizações de count e tipo.
+            ImgTag cur = cache.putIfAbsent(key, t);
+            if( (cur!=null) && !cur.hasAlias() && t.hasAlias() ){
+                cur.setAlias( t.getAlias() );
+                cache.put(key, cur);//Para que um cache em disco grave a mudança.
+                merged = cur;
+            }
+        }
+        if(merged!=null) { doNotifyTagAdded(merged); }//Fora do lock: ouvintes podem demorar.
+    }
+    
+    /**
+     * Seta o armazenamento local de tags por post.
+     * Posts armazenados a menos de <tt>maxAgeMillis</tt> são respondidos a
+     * partir dele, sem acessar a rede.
+     * 
+     * @param store armazenamento a ser usado. Se null, desliga o armazenamento.
+     * @param maxAgeMillis idade maxima, em ms, de um post armazenado para que 
+     * ele ainda seja usado. Long.MAX_VALUE para nunca expirar.
+     */
+    public void setPostTagsStore(AbstractPostTagsStore store, long maxAgeMillis){
+        if(maxAgeMillis<=0) { throw new IllegalArgumentException("maxAgeMillis deve ser maior que 0."); }
+        this.postStore = store;
+        this.postStoreMaxAge = maxAgeMillis;
+    }
+    
+    /**
+     * Seta o cache negativo deste PostParser: posts que responderam 404 ou
+     * 410 são marcados nele, e enquanto a marcação valer, 
+     * <tt>fetchAllTagsById()</tt> os recusa com PostNotFoundException sem 
+     * acessar a rede. Pode ser compartilhado entre PostParsers.
+     * 
+     * @param c cache negativo. Se null (padrão), nada é lembrado.
+     * @since 2.5
+     */
+    public void setNegativePostCache(NegativePostCache c){
+        this.negativeCache = c;
+    }
+    
+    /**
+     * @return o cache negativo deste PostParser, ou null.
+     * @since 2.5
+     */
+    public NegativePostCache getNegativePostCache(){
+        return negativeCache;
+    }
+    
+    /**
+     * Recusa um post marcado como inexistente no cache negativo. 
+     * Implementações devem chama-lo antes de qualquer requisição.
+     * 
+     * @param id id do post.
+     * @throws PostNotFoundException se o post está no cache negativo.
+     * @since 2.5
+     */
+    protected void throwIfKnownMissing(int id){
+        if( (negativeCache!=null) && negativeCache.contains(baseURL, id) ){
+            negativeHits.inc();
+            throw new PostNotFoundException(baseURL, id, true);
+        }
+    }
+    
+    /**
+     * Verifica se a falha ao buscar a pagina de um post quer dizer que ele 
+     * não existe (HTTP 404 ou 410). Se sim, marca o post no cache negativo.
+     * 
+     * @param id id do post.
+     * @param ex falha ao buscar a pagina do post.
+     * @return a exceção a ser lançada no lugar de uma nova tentativa, ou 
+     * null se ex é uma falha comum.
+     * @since 2.5
+     */
+    protected PostNotFoundException asPostNotFound(int id, Exception ex){
+        if( !(ex instanceof HttpStatusException) ) { return null; }
+        int status = ((HttpStatusException)ex).getStatusCode();
+        if( (status!=404)&&(status!=410) ) { return null; }
+        notFound.inc();
+        if(negativeCache!=null) { negativeCache.markMissing(baseURL, id); }
+        return new PostNotFoundException(baseURL, id, false);
+    }
+    
+    /**
+     * Resolve a referencia de uma tag armazenada no cache de tags.
+     * A implementação padrão não resolve nada, o que faz todo post ser 
+     * buscado na rede.
+     * 
+     * @param ref referencia da tag.
+     * @return a ImgTag do cache, ou null se não estiver nele.
+     */
+    protected ImgTag resolveTagRef(TagRef ref){
+        return null;
+    }
+    
+    /**
+     * Obtem as tags de um post do armazenamento local, se possivel.
+     * 
+     * @param id id do post.
+     * @return tags do post, ou null se ele não estiver armazenado, estiver
+     * velho demais, ou alguma de suas tags não estiver no cache de tags.
+     */
+    protected ImgTags readFromPostStore(int id){
+        if(postStore==null) { return null; }
+        StoredPost p = postStore.get(baseURL, id);
+        if( (p==null)||(System.currentTimeMillis()-p.getFetchedAt() > postStoreMaxAge) ) {
+            postStoreMisses.inc();
+            return null;
+        }
+        ImgTags ret = new ImgTags();
+        for(TagRef r : p.getTags()){
+            ImgTag t = resolveTagRef(r);
+            if(t==null) { postStoreMisses.inc(); return null; }
+            ret.add(t);
+        }
+        postStoreHits.inc();
+        return ret;
+    }
+    
+    /**
+     * Guarda as tags de um post buscado na rede no armazenamento local.
+     * Listas vazias não são guardadas, pois não se distinguem de falhas.
+     * 
+     * @param id id do post.
+     * @param tags tags do post.
+     */
+    protected void writeToPostStore(int id, ImgTags tags){
+        if( (postStore==null)||tags.isEmpty() ) { return; }
+        postStore.put(baseURL, id, tags, System.currentTimeMillis());
+    }
+    
+    /**
+     * Termina e grava um PostFetchEvent, se o JFR o quiser.
+     * 
+     * @param ev evento iniciado no começo da tentativa.
+     * @param id id do post.
+     * @param attempt numero da tentativa, a partir de 1.
+     * @param tags tags obtidas, ou null se falhou.
+     * @param outcome "store", "ok" ou a mensagem da falha.
+     */
+    void commitPostFetch(PostFetchEvent ev, int id, int attempt, ImgTags tags, String outcome){
+        ev.end();
+        if(ev.shouldCommit()){
+            ev.booru = baseURL;
+            ev.postId = id;
+            ev.attempt = attempt;
+            ev.tagCount = (tags==null) ? 0 : tags.size();
+            ev.outcome = outcome;
+            ev.commit();
+        }
+    }
+    
+    /**
+     * Carrega o cache de tags diretamente de um médium de persistencia.
+     * As tags são lidas em fluxo e repassadas a 
+     * <tt>addAllToTagInfo(Collection)</tt> em lotes, sem montar uma lista com
+     * o dicionario inteiro. Registros inválidos são ignorados.
+     * 
+     * @param src persistencia de onde as tags serão lidas.
+     * @return quantidade de registros inválidos encontrados.
+     * @see #warmStartTagInfo(imagebooru.persistence.AbstractTagsPersistence)
+     */
+    public long addAllToTagInfo(AbstractTagsPersistence src){
+        return loadTagInfo(src, null);
+    }
+    
+    /**
+     * Carrega o cache de tags em segundo plano, como 
+     * <tt>addAllToTagInfo(AbstractTagsPersistence)</tt>, e retorna 
+     * imediatamente. As buscas podem começar logo em seguida: uma tag ainda 
+     * não carregada é um miss comum, e é obtida da rede. O cache só trava
+     * durante cada inserção, não durante a carga inteira, e uma tag obtida 
+     * da rede não é substituida pela versão persistida, mais antiga.
+     * 
+     * @param src persistencia de onde as tags serão lidas.
+     * @return acompanhamento da carga.
+     * @since 2.5
+     */
+    public TagCacheWarmStart warmStartTagInfo(AbstractTagsPersistence src){
+        if(src==null) { throw new NullPointerException("src não deve ser null"); }
+        TagCacheWarmStart w = new TagCacheWarmStart();
+        Thread t = new Thread(() -> w.run(() -> loadTagInfo(src, w)), "tagcache-warmstart");
+        t.setDaemon(true);
+        t.start();
+        return w;
+    }
+    
+    private long loadTagInfo(AbstractTagsPersistence src, TagCacheWarmStart w){
+        final int batchSize = 1024;
+        final ImgTags batch = new ImgTags();
+        final long[] malformed = { 0 };
+        src.load(new AbstractTagsPersistence.TagVisitor() {
+            @Override
+            public void visit(ImgTag tag) {
+                batch.add(tag);
+                if(batch.size()<batchSize) { return; }
+                flush();
+            }
+
+            @Override
+            public void malformed(long recordNo, String raw, RuntimeException cause) {
+                malformed[0]++;
+            }
+            
+            private void flush(){
+                if(w!=null) { w.throwIfCancelled(); }
+                addAllToTagInfo(batch);
+                if(w!=null) { w.loaded(batch.size(), malformed[0]); }
+                batch.clear();
+            }
+        });
+        if(!batch.isEmpty()) {
+            addAllToTagInfo(batch);
+            if(w!=null) { w.loaded(batch.size(), malformed[0]); }
+        }
+        return malformed[0];
+    }
+    
+    /**
+     * Obtem as tags de um post.
+     * 
+     * @param id id do post. Maior que 0.
+     * @return tags do post. Vazia se todas as tentativas falharem.
+     * @throws PostNotFoundException se o post não existe, sem novas 
+     * tentativas.
+     */
     public abstract ImgTags fetchAllTagsById(int id);
     public abstract ImgTags fetchAllTagsByMD5(String md5);
     public abstract ImgTags getAllTagsInfo();
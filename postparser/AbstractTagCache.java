@@ -0,0 +1,85 @@
+package imagebooru.postparser;
+
+import imagebooru.ImgTag;
+import imagebooru.ImgTags;
+
+/**
+ * Modela o cache de info. de tags de um PostParser.
+ * Cada PostParser decide a chave de suas tags (o nome no konachan, o id no
+ * e-shuushuu), então um cache não deve ser compartilhado entre PostParsers.
+ * <br/><br/>
+ *
+ * Implementações devem ser seguras para uso por varias threads. Operações
+ * compostas (buscar, alterar e gravar de volta) devem ser feitas com o
+ * cache sincronizado (<tt>synchronized(cache)</tt>).<br/><br/>
+ *
+ * As estatisticas contam as chamadas a <tt>get()</tt>: hits, misses e, nas
+ * implementações limitadas, quantas tags foram retiradas da memória.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @see AbstractPostParser#setTagCache(imagebooru.postparser.AbstractTagCache)
+ * @since 2.5
+ */
+public abstract class AbstractTagCache {
+    protected long hits = 0, misses = 0, evictions = 0;
+
+    /**
+     * @param key chave da tag.
+     * @return a tag, ou null se não estiver no cache.
+     */
+    public abstract ImgTag get(String key);
+
+    /**
+     * Adiciona ou substitui uma tag.
+     *
+     * @param key chave da tag.
+     * @param tag tag. Não nula.
+     */
+    public abstract void put(String key, ImgTag tag);
+
+    /**
+     * Adiciona uma tag somente se a chave ainda não estiver no cache.
+     * Não conta nas estatisticas.
+     *
+     * @param key chave da tag.
+     * @param tag tag. Não nula.
+     * @return a tag já existente, ou null se tag foi adicionada.
+     */
+    public abstract ImgTag putIfAbsent(String key, ImgTag tag);
+
+    /**
+     * @return quantidade de tags no cache, em todos os niveis.
+     */
+    public abstract int size();
+
+    /**
+     * @return todas as tags do cache, em ordem indefinida.
+     */
+    public abstract ImgTags values();
+
+    public synchronized long getHitCount(){ return hits; }
+
+    public synchronized long getMissCount(){ return misses; }
+
+    /**
+     * @return quantidade de tags retiradas da memória desde a criação.
+     */
+    public synchronized long getEvictionCount(){ return evictions; }
+
+    /**
+     * @return fração dos get() atendidos, entre 0 e 1.
+     */
+    public synchronized double getHitRate(){
+        long n = hits+misses;
+        return (n==0) ? 0 : (double)hits/n;
+    }
+
+    /**
+     * @return texto curto com as estatisticas do cache.
+     */
+    public synchronized String getStats(){
+        return String.format("%d tags, %d hits, %d misses (%.1f%%), %d removidas da memória",
+                size(), hits, misses, 100*getHitRate(), evictions);
+    }
+}
@@ -0,0 +1,208 @@
+package imagebooru.postparser;
+
+import imagebooru.utils.Metrics;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Limite adaptativo de requisições simultaneas a um ImageBooru, no estilo
+ * AIMD (aumento aditivo, redução multiplicativa).<br/><br/>
+ * 
+ * Enquanto a latencia observada fica perto da menor latencia recente, o 
+ * limite sobe cerca de 1 a cada "volta" completa de requisições 
+ * (<tt>+1/limite</tt> por sucesso). Se a latencia passa de 
+ * <tt>latencyTolerance</tt> vezes essa base, o limite cai 10%. Um sinal de 
+ * sobrecarga do servidor (HTTP 429 ou 503, ou timeout) corta o limite pela
+ * metade, e um <tt>Retry-After</tt> bloqueia novas requisições até o prazo 
+ * pedido.<br/><br/>
+ * 
+ * O limite atual pode ser acompanhado pela gauge <tt>{nome}.limit</tt> (veja
+ * {@link #setMetrics(imagebooru.utils.Metrics, java.lang.String) setMetrics()}).
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final double backoffRatio = 0.5, latencyBackoffRatio = 0.9;
+    private static final long baselineWindowNanos = 60_000_000_000L;//Base esquecida após 1 min.
+    
+    private final int minLimit, maxLimit;
+    private final double latencyTolerance;
+    private double limit;
+    private int inFlight = 0;
+    private long blockedUntil = 0;//nanoTime; 0 para não bloqueado.
+    private long baseline = Long.MAX_VALUE, baselineAt = 0;
+    
+    /**
+     * Vaga de uma requisição. Deve ser terminada com exatamente um de 
+     * <tt>success()</tt>, <tt>dropped()</tt> ou <tt>ignore()</tt>.
+     */
+    public final class Permit {
+        private final long start = System.nanoTime();
+        private boolean done = false;
+        
+        private Permit(){ }
+        
+        private boolean finish(){
+            synchronized(AdaptiveConcurrencyLimiter.this){
+                if(done) { return false; }
+                done = true;
+                inFlight--;
+                AdaptiveConcurrencyLimiter.this.notifyAll();
+                return true;
+            }
+        }
+        
+        /**
+         * A requisição foi atendida; sua latencia alimenta o limite.
+         */
+        public void success(){
+            success(System.nanoTime()-start);
+        }
+        
+        /**
+         * Como {@link #success()}, com a latencia medida por quem fez a 
+         * requisição, para não contar esperas entre a vaga e a requisição.
+         */
+        void success(long latencyNanos){
+            if(finish()) { onSuccess(latencyNanos); }
+        }
+        
+        /**
+         * O servidor indicou sobrecarga (429, 503 ou timeout).
+         * 
+         * @param retryAfterMillis prazo pedido pelo servidor, ou 0 se nenhum.
+         */
+        public void dropped(long retryAfterMillis){
+            if(finish()) { onDropped(retryAfterMillis); }
+        }
+        
+        /**
+         * A requisição falhou por motivo que não diz nada sobre a carga do
+         * servidor (ex. 404). O limite não muda.
+         */
+        public void ignore(){
+            finish();
+        }
+    }
+    
+    /**
+     * Limite entre 1 e 64, começando em 4, com tolerancia de 2x a latencia
+     * base.
+     */
+    public AdaptiveConcurrencyLimiter(){
+        this(4, 1, 64, 2.0);
+    }
+    
+    /**
+     * @param initialLimit limite inicial.
+     * @param minLimit menor limite. Maior que 0.
+     * @param maxLimit maior limite.
+     * @param latencyTolerance quantas vezes a latencia base é aceita antes
+     * de reduzir o limite. Maior que 1.
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double latencyTolerance){
+        if( (minLimit<=0)||(maxLimit<minLimit)||(initialLimit<minLimit)||(initialLimit>maxLimit) ) {
+            throw new IllegalArgumentException("Deve valer 0 < minLimit <= initialLimit <= maxLimit.");
+        }
+        if( !(latencyTolerance>1) ) { throw new IllegalArgumentException("latencyTolerance deve ser maior que 1."); }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+    }
+    
+    /**
+     * Registra as gauges <tt>{name}.limit</tt> e <tt>{name}.inflight</tt>.
+     * 
+     * @param m Metrics onde registrar.
+     * @param name prefixo das gauges, ex. "postparser.limiter.konachan.com".
+     */
+    public void setMetrics(Metrics m, String name){
+        m.gauge(name+".limit", this::getLimit);
+        m.gauge(name+".inflight", this::getInFlight);
+    }
+    
+    /**
+     * Espera até haver vaga dentro do limite e nenhum Retry-After pendente.
+     * 
+     * @return vaga da requisição.
+     * @throws InterruptedException se interrompido durante a espera.
+     */
+    public synchronized Permit acquire() throws InterruptedException{
+        while(true){
+            long wait = blockedUntil - System.nanoTime();
+            if( (blockedUntil!=0) && (wait>0) ) {
+                long ms = Math.max(1, wait/1000000);
+                wait(ms);
+                continue;
+            }
+            blockedUntil = 0;
+            if( inFlight < (int)limit ) { break; }
+            wait();
+        }
+        inFlight++;
+        return new Permit();
+    }
+    
+    private synchronized void onSuccess(long latency){
+        long now = System.nanoTime();
+        if( (latency<baseline) || (now-baselineAt>baselineWindowNanos) ){
+            baseline = latency;
+            baselineAt = now;
+        }
+        if( latency > baseline*latencyTolerance ) {
+            limit = Math.max(minLimit, limit*latencyBackoffRatio);
+        } else {
+            limit = Math.min(maxLimit, limit + 1/limit);
+        }
+        notifyAll();
+    }
+    
+    private synchronized void onDropped(long retryAfterMillis){
+        limit = Math.max(minLimit, limit*backoffRatio);
+        if(retryAfterMillis>0){
+            long until = System.nanoTime() + retryAfterMillis*1000000;
+            if( (blockedUntil==0)||(until-blockedUntil>0) ) { blockedUntil = until; }
+        }
+        notifyAll();
+    }
+    
+    /**
+     * @return limite atual de requisições simultaneas.
+     */
+    public synchronized int getLimit(){
+        return (int)limit;
+    }
+    
+    /**
+     * @return requisições em andamento.
+     */
+    public synchronized int getInFlight(){
+        return inFlight;
+    }
+    
+    /**
+     * Interpreta um cabeçalho Retry-After, em segundos ou como data HTTP.
+     * 
+     * @param value valor do cabeçalho. Pode ser null.
+     * @return prazo em ms, ou 0 se ausente ou inválido.
+     */
+    public static long parseRetryAfter(String value){
+        if( (value==null)||value.trim().isEmpty() ) { return 0; }
+        value = value.trim();
+        try{
+            return Math.max(0, Long.parseLong(value)*1000);
+        } catch(NumberFormatException ex) {
+            //Não é um numero: tenta como data.
+        }
+        try{
+            ZonedDateTime at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, at.toInstant().toEpochMilli()-System.currentTimeMillis());
+        } catch(DateTimeParseException ex) {
+            return 0;
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package imagebooru.postparser;
 
-import contnrutils.tree.AVLTreeExtended;
 import imagebooru.ImgTag;
 import imagebooru.ImgTag.TagType;
 import imagebooru.ImgTags;
+import imagebooru.persistence.AbstractPostTagsStore.TagRef;
+import imagebooru.utils.SingleFlight;
 import java.io.IOException;
 import java.util.Collection;
-import org.jsoup.Jsoup;
+import java.util.regex.Pattern;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
@@ -31,20 +32,28 @@ public final class EshuushuuPostParserImpl extends AbstractPostParser {
     
     private static final String imgURL = "/image/";
 
-    private AVLTreeExtended tagInfo = new AVLTreeExtended(ImgTag.CompareById);
-    private int curId;//Auxiliar para não passar este id pela pilha.
-    private int cur_retry = 0;//Auxiliar para controlar maximo de tentativas.
+    private static final int maxRetries = 5;
+    
+    private static final Pattern nonDigits = Pattern.compile("[^0-9]*");
+
+    private final SingleFlight<Integer,ImgTag> tagFetches = new SingleFlight<>();
+
        
     private int tagIdFromLink(String link){
-        return Integer.parseInt( link.replaceAll("[^0-9]*","") );
+        return Integer.parseInt( nonDigits.matcher(link).replaceAll("") );
     }
     
     private int tagCountFromText(String text){
         return Integer.parseInt(text.trim().split(" ")[0]);//Pega a primeira "palavra".
     }
     
+    @Override
+    protected String tagCacheKey(ImgTag t) {
+        return Integer.toString(t.getId());
+    }
+    
     private ImgTag getFromTagInfo(int id){
-        return (ImgTag)tagInfo.get( ImgTag.getDummyWithId(id) );
+        return tagCache.get(Integer.toString(id));
     }
 
     private TagType TagTypeFromHtmlId(int id) {
@@ -61,13 +70,38 @@ public final class EshuushuuPostParserImpl extends AbstractPostParser {
      * Retorna um ImgTag apartir do link recebido.
      * 
      * @param link String com o link da pagina da Tag.
+     * @param postId id do post onde a tag foi encontrada.
      * @return novo ImgTag com a info formatada do link.
      * @throws IOException 
      */
-    private ImgTag fetchTagInfo(String link, int html_id) throws IOException{
+    private ImgTag fetchTagInfo(String link, int html_id, int postId) throws IOException{
         assert(link!=null);
+        TagFetchEvent ev = new TagFetchEvent();
+        ev.begin();
+        try{
+            ImgTag ret = parseTagInfo(link, html_id);
+            commitTagFetch(ev, link, postId, "ok");
+            return ret;
+        } catch(IOException | RuntimeException ex) {
+            commitTagFetch(ev, link, postId, String.valueOf(ex.getMessage()));
+            throw ex;
+        }
+    }
+    
+    private void commitTagFetch(TagFetchEvent ev, String link, int postId, String outcome){
+        ev.end();
+        if(ev.shouldCommit()){
+            ev.booru = baseURL;
+            ev.postId = postId;
+            ev.tagId = tagIdFromLink(link);
+            ev.outcome = outcome;
+            ev.commit();
+        }
+    }
+    
+    private ImgTag parseTagInfo(String link, int html_id) throws IOException{
         //Doc da URL.
-        Document doc = Jsoup.connect(baseURL+link).get();
+        Document doc = fetchDocument(baseURL+link);
         //Define o id, nome, quantidade no booru e tipo da TAG.
         int id = tagIdFromLink(link);
         String nome = doc.select("div.title") .select("h2")
@@ -85,68 +119,109 @@ public final class EshuushuuPostParserImpl extends AbstractPostParser {
      * post.
      * A ImgTag retornada pode tanto ser obtida do cache interno como do link
      * contido em <tt>e</tt>. <br/>
+     * Se varias threads precisarem da mesma tag ao mesmo tempo (uma tag
+     * popular em varios posts buscados juntos), somente uma a busca, e as 
+     * outras recebem a mesma ImgTag. Uma falha é repassada a todas elas, e
+     * nada entra no cache.<br/>
      * Se não conseguir buscar a tag no link especificado, leva RuntimeException.
      * 
      * @param e Elemento HTML com o nome e link para a tag.
      * @param html_id id Html do qual foi extraido o elemento.
+     * @param postId id do post.
      * @return ImgTag com info. detalhada desta tag.
      */
-    private ImgTag elementToTag(Element e, int html_id){
-        ImgTag t = getFromTagInfo( tagIdFromLink( e.attr("href") ) );
-        try{
-            if(t==null){
-                t = fetchTagInfo(e.attr("href"),html_id);
-                tagInfo.add(t);
-            }            
+    private ImgTag elementToTag(Element e, int html_id, int postId){
+        final String link = e.attr("href");
+        final int tagId = tagIdFromLink(link);
+        ImgTag t = getFromTagInfo(tagId);
+        if(t!=null) {
+            tagCacheHits.inc();
             return t;
+        }
+        tagCacheMisses.inc();
+        try{
+            return tagFetches.execute(tagId, () -> {
+                //Uma busca pela mesma tag pode ter terminado agora há pouco.
+                ImgTag cached = getFromTagInfo(tagId);
+                if(cached!=null) { return cached; }
+                ImgTag f = fetchTagInfo(link, html_id, postId);
+                ImgTag other = tagCache.putIfAbsent(tagCacheKey(f), f);
+                if(other!=null) { return other; }
+                doNotifyTagAdded(f);
+                return f;
+            });
         } catch(IOException ex) {
             ex.printStackTrace();
             throw new RuntimeException("FALHA AO BUSCAR TAG INFO. PQP.");
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrompido esperando a tag "+tagId);
         }
     }
     
+    /**
+     * @return quantas buscas de tag foram evitadas por aproveitar a busca de
+     * outra thread.
+     * @since 2.5
+     */
+    public long getCoalescedTagFetchCount(){
+        return tagFetches.getSharedCount();
+    }
+    
     /**
      * Obtem todas as tags de um post e-shuushuu, dado seu id HTML_DOM.
      * 
      * @param doc Documento Jsoup com a pagina do post.
      * @param html_id id da tag html na qual as tags desejadas estão.
+     * @param postId id do post.
      * @return Lista com info. detalhada das tags obtidas
      */
-    private ImgTags getTags(Document doc,int html_id){
+    private ImgTags getTags(Document doc,int html_id,int postId){
         ImgTags ret = new ImgTags();
         Elements tags = doc.select(
-                String.format("#quicktag%d_%d", html_id, curId)
+                String.format("#quicktag%d_%d", html_id, postId)
             ).select("a");
         log_progress.doNotifyProgress("Buscando Tags... ("+html_id+")");
         int done=0;
         log_progress.doNotifyProgress(done, tags.size()-done);
         for(Element e : tags) { 
-            ret.add( elementToTag(e,html_id) );
+            ret.add( elementToTag(e,html_id,postId) );
             log_progress.doNotifyProgress(++done, tags.size()-done);
         }
         return ret;
     }
     
-    private ImgTags getArtist(Document doc){
-        return getTags(doc, 3);
+    private ImgTags getArtist(Document doc, int postId){
+        return getTags(doc, 3, postId);
     }
     
-    private ImgTags getCopyright(Document doc){
-        return getTags(doc, 2);
+    private ImgTags getCopyright(Document doc, int postId){
+        return getTags(doc, 2, postId);
     }
     
-    private ImgTags getCaracters(Document doc){
-        return getTags(doc, 4);
+    private ImgTags getCaracters(Document doc, int postId){
+        return getTags(doc, 4, postId);
     }
     
-    private ImgTags getGeneral(Document doc){
-        return getTags(doc, 1);
+    private ImgTags getGeneral(Document doc, int postId){
+        return getTags(doc, 1, postId);
     }
 
     public EshuushuuPostParserImpl() {
         super("http://e-shuushuu.net");
     }
     
+    /**
+     * Constroi o parser para um espelho ou servidor local com as mesmas
+     * paginas de http://e-shuushuu.net.
+     * 
+     * @param baseURL URL de base, sem a barra final.
+     * @since 2.5
+     */
+    public EshuushuuPostParserImpl(String baseURL) {
+        super(baseURL);
+    }
+    
     private int throwIfZeroOrNeg(int v){
         if(v<=0) { throw new IllegalArgumentException("Deve ser maior que 0"); }
         return v;
@@ -155,40 +230,66 @@ public final class EshuushuuPostParserImpl extends AbstractPostParser {
     /**
      * Consulta um id de imagem para obter suas tags.
      *
+     * Um post apagado ou inexistente (404/410) não é tentado de novo.
+     *
      * @param id id do post no e-shuushuu.
      * @return Lista de tags deste post, em ordem de tipo.
+     * @throws PostNotFoundException se o post não existe, ou está no cache
+     * negativo.
      */
     @Override
     public ImgTags fetchAllTagsById(int id) {
         //Pré-Condição:
         throwIfZeroOrNeg(id);
-        //Prepara o retorno:
-        ImgTags ret = new ImgTags();
-        try {
-            //Conecta.
-            log_progress.doNotifyProgress("Conectando...");
-            Document doc = Jsoup.connect(baseURL+imgURL+id).get();
-            log_progress.doNotifyProgress("Conectado.");
-            //Armazena id para uso geral de outros métodos.
-            curId=id;
-            //Busca tags em ordem.
-            ret.addAll( getArtist(doc) );
-            ret.addAll( getCopyright(doc) );
-            ret.addAll( getCaracters(doc) );
-            ret.addAll( getGeneral(doc) );
-            //limpa id geral.
-            curId=-1;
-            log_progress.doNotifyProgress("Completo.");
-        } catch (Exception ex) {
-            //Se erros, tenta novamente até 5 vezes.
-            if(cur_retry++ < 5) { 
-                log_progress.doNotifyProgress("Falha: "+ex.getMessage()+", Tentando denovo em 3 segs.");
-                try { Thread.sleep(3000); } catch (InterruptedException ex1) { }
-                return fetchAllTagsById(id); 
+        throwIfKnownMissing(id);
+        PostFetchEvent ev = new PostFetchEvent();
+        ev.begin();
+        //Armazenamento local:
+        ImgTags ret = readFromPostStore(id);
+        if(ret!=null) {
+            log_progress.doNotifyProgress("Lido do armazenamento local.");
+            commitPostFetch(ev, id, 1, ret, "store");
+            return ret;
+        }
+        //Se erros, tenta novamente até 5 vezes. Tudo em variaveis locais, 
+        //então varias threads podem usar o mesmo parser.
+        for(int attempt=1; ; attempt++){
+            //Prepara o retorno:
+            ret = new ImgTags();
+            try {
+                //Conecta.
+                log_progress.doNotifyProgress("Conectando...");
+                Document doc = fetchDocument(baseURL+imgURL+id);
+                log_progress.doNotifyProgress("Conectado.");
+                //Busca tags em ordem.
+                ret.addAll( getArtist(doc, id) );
+                ret.addAll( getCopyright(doc, id) );
+                ret.addAll( getCaracters(doc, id) );
+                ret.addAll( getGeneral(doc, id) );
+                log_progress.doNotifyProgress("Completo.");
+                writeToPostStore(id, ret);
+                commitPostFetch(ev, id, attempt, ret, "ok");
+                return ret;
+            } catch (Exception ex) {
+                commitPostFetch(ev, id, attempt, null, String.valueOf(ex.getMessage()));
+                PostNotFoundException nf = asPostNotFound(id, ex);
+                if(nf!=null) { throw nf; }//Apagado: não adianta tentar de novo.
+                if(attempt>maxRetries) { return ret; }
+                retries.inc();
+                log_progress.doNotifyProgress("Falha: "+ex.getMessage()+", Tentando denovo em "+retryDelayMillis+" ms.");
+                try { Thread.sleep(retryDelayMillis); } catch (InterruptedException ex1) {
+                    Thread.currentThread().interrupt();//Cancelado: desiste das tentativas.
+                    return ret;
+                }
+                ev = new PostFetchEvent();
+                ev.begin();
             }
         }
-        cur_retry=0;//reseta contador de tentativas.
-        return ret;
+    }
+
+    @Override
+    protected ImgTag resolveTagRef(TagRef ref) {
+        return getFromTagInfo(ref.getId());
     }
 
     @Override
@@ -196,20 +297,21 @@ public final class EshuushuuPostParserImpl extends AbstractPostParser {
         throw new UnsupportedOperationException("e-shuushuu não suporta pesquisa por MD5.");
     }
 
+    /**
+     * @return todas as tags do cache, ordenadas por id.
+     */
     @Override
+    @SuppressWarnings("unchecked")
     public ImgTags getAllTagsInfo() {
-        ImgTags ret = new ImgTags();
-        for( Object o : tagInfo.toArray() ){
-            if(!(o instanceof ImgTag)) { continue; }
-            ret.add((ImgTag)o);
-        }
+        ImgTags ret = tagCache.values();
+        ret.sort(ImgTag.CompareById);
         return ret;
     }
 
     @Override
     public void addAllToTagInfo(Collection<ImgTag> c) {
-        //AvlExtended Ignora duplicadas por default.
-        for(ImgTag i : c) { tagInfo.add(i); }
+        //Duplicadas mantêm a do cache, completando só o alias.
+        for(ImgTag i : c) { mergeIntoTagInfo(i); }
         log_progress.doNotifyProgress("Tag Info. Atualizada.");
     }
     
@@ -0,0 +1,50 @@
+package imagebooru.postparser;
+
+import imagebooru.ImgTag;
+import imagebooru.ImgTags;
+import java.util.HashMap;
+
+/**
+ * Cache de tags sem limite, todo em memória. É o cache padrão dos
+ * PostParsers, e equivale ao comportamento anterior a AbstractTagCache:
+ * nenhuma tag é descartada enquanto o parser existir.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class HashTagCacheImpl extends AbstractTagCache {
+    private final HashMap<String,ImgTag> map = new HashMap<>();
+
+    private Object throwIfNull(Object o){
+        if(o==null) { throw new NullPointerException("Nada de nulls!"); }
+        return o;
+    }
+
+    @Override
+    public synchronized ImgTag get(String key) {
+        ImgTag t = map.get(key);
+        if(t!=null) { hits++; } else { misses++; }
+        return t;
+    }
+
+    @Override
+    public synchronized void put(String key, ImgTag tag) {
+        map.put((String)throwIfNull(key), (ImgTag)throwIfNull(tag));
+    }
+
+    @Override
+    public synchronized ImgTag putIfAbsent(String key, ImgTag tag) {
+        return map.putIfAbsent((String)throwIfNull(key), (ImgTag)throwIfNull(tag));
+    }
+
+    @Override
+    public synchronized int size() {
+        return map.size();
+    }
+
+    @Override
+    public synchronized ImgTags values() {
+        return new ImgTags(map.values());
+    }
+}
@@ -0,0 +1,35 @@
+package imagebooru.postparser;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR da transferencia e interpretação de uma pagina HTML, feitas por
+ * <tt>AbstractPostParser.fetchDocument()</tt>. Ocorre dentro do PostFetch ou
+ * TagFetch da mesma thread.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+@Name("imagebooru.HtmlParse")
+@Label("HTML Fetch and Parse")
+@Category({"ImageBooru", "PostParser"})
+@Description("Transferencia e interpretação de uma pagina HTML.")
+final class HtmlParseEvent extends jdk.jfr.Event {
+    @Label("URL")
+    String url;
+    
+    @Label("Status")
+    int status;
+    
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+    
+    @Label("Outcome")
+    String outcome;
+}
@@ -1,10 +1,9 @@
 package imagebooru.postparser;
 
-import contnrutils.tree.AVLTreeExtended;
 import imagebooru.ImgTag;
 import imagebooru.ImgTags;
+import imagebooru.persistence.AbstractPostTagsStore.TagRef;
 import java.util.Collection;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
@@ -32,26 +31,41 @@ public class KonachanPostParserImpl extends AbstractPostParser {
     
     public static int konachanDefaultTagID = 23232;    
     
-    private AVLTreeExtended tagInfo = new AVLTreeExtended(ImgTag.CompareByNome);
-    private int cur_retry = 0;//contador para tentativas.
-        
+    private static final int maxRetries = 5;
+    
     private int throwIfZeroOrNeg(int v){
         if(v<=0) { throw new IllegalArgumentException("Deve ser maior que 0"); }
         return v;
     }
     
+    @Override
+    protected String tagCacheKey(ImgTag t) {
+        return t.getNome();
+    }
+    
     private ImgTag addToTagInfo(ImgTag t){
-        //Busca a tag que deve adicionar.
-        ImgTag i = (ImgTag)tagInfo.get(t);
-        //se não existe, adiciona e retorna.
-        if(i==null){
-            tagInfo.add(t);
-            return t;
-        } else { //se existe, atualiza tipo e count, e retorna.
-            i.setCount( t.getCount() );
-            i.setType( t.getType() );
-            return i;
+        ImgTag i;
+        boolean changed;
+        AbstractTagCache cache = tagCache;
+        synchronized(cache){
+            //Busca a tag que deve adicionar.
+            i = cache.get(tagCacheKey(t));
+            //se não existe, adiciona.
+            if(i==null){
+                cache.put(tagCacheKey(t), t);
+                i = t;
+                changed = true;
+                tagCacheMisses.inc();
+            } else { //se existe, atualiza tipo e count.
+                changed = (i.getCount()!=t.getCount()) || (i.getType()!=t.getType());
+                i.setCount( t.getCount() );
+                i.setType( t.getType() );
+                if(changed) { cache.put(tagCacheKey(i), i); }//Para que um cache em disco grave a mudança.
+                tagCacheHits.inc();
+            }
         }
+        if(changed) { doNotifyTagAdded(i); }//Fora do lock: ouvintes podem demorar.
+        return i;
     }
     
     private ImgTag.TagType getTypeFromTex(String t){
@@ -85,37 +99,67 @@ public class KonachanPostParserImpl extends AbstractPostParser {
 
     /**
      * Retorna a lista de tags de um post dado seu id.
-     * Tenta a conexão até 5 vezes, com 3segs de intervalo entre elas.
+     * Tenta a conexão até 5 vezes, com 3segs (veja setRetryDelay()) de 
+     * intervalo entre elas.
      * Não realiza nenhuma consulta extra para obter info detalhada das tags.
      * 
+     * Um post apagado ou inexistente (404/410) não é tentado de novo.
+     * 
      * @param id id do post. se menor ou igual a 0, leva exceção.
      * @return lista de tags atualizadas do post.
+     * @throws PostNotFoundException se o post não existe, ou está no cache
+     * negativo.
      */
     @Override
     public ImgTags fetchAllTagsById(int id) {
         //Pré-Condição:
         throwIfZeroOrNeg(id);
-        //Prepara o retorno:
-        ImgTags ret = new ImgTags();
-        try {
-            //Conecta.
-            log_progress.doNotifyProgress("Conectando...");
-            Document doc = Jsoup.connect(baseURL+"/post/show/"+id).get();
-            log_progress.doNotifyProgress("Conectado.");
-            //Busca tags.
-            ret.addAll( getTags(doc) );
-            //Fim.
-            log_progress.doNotifyProgress("Completo.");
-        } catch (Exception ex) {
-            //Se erros, tenta novamente até 5 vezes.
-            if(cur_retry++ < 5) { 
-                log_progress.doNotifyProgress("Falha: "+ex.getMessage()+", Tentando denovo em 3 segs.");
-                try { Thread.sleep(3000); } catch (InterruptedException ex1) { }
-                return fetchAllTagsById(id); 
+        throwIfKnownMissing(id);
+        PostFetchEvent ev = new PostFetchEvent();
+        ev.begin();
+        //Armazenamento local:
+        ImgTags ret = readFromPostStore(id);
+        if(ret!=null) {
+            log_progress.doNotifyProgress("Lido do armazenamento local.");
+            commitPostFetch(ev, id, 1, ret, "store");
+            return ret;
+        }
+        //Se erros, tenta novamente até 5 vezes. Tudo em variaveis locais, 
+        //então varias threads podem usar o mesmo parser.
+        for(int attempt=1; ; attempt++){
+            //Prepara o retorno:
+            ret = new ImgTags();
+            try {
+                //Conecta.
+                log_progress.doNotifyProgress("Conectando...");
+                Document doc = fetchDocument(baseURL+"/post/show/"+id);
+                log_progress.doNotifyProgress("Conectado.");
+                //Busca tags.
+                ret.addAll( getTags(doc) );
+                log_progress.doNotifyProgress("Completo.");
+                writeToPostStore(id, ret);
+                commitPostFetch(ev, id, attempt, ret, "ok");
+                return ret;
+            } catch (Exception ex) {
+                commitPostFetch(ev, id, attempt, null, String.valueOf(ex.getMessage()));
+                PostNotFoundException nf = asPostNotFound(id, ex);
+                if(nf!=null) { throw nf; }//Apagado: não adianta tentar de novo.
+                if(attempt>maxRetries) { return ret; }
+                retries.inc();
+                log_progress.doNotifyProgress("Falha: "+ex.getMessage()+", Tentando denovo em "+retryDelayMillis+" ms.");
+                try { Thread.sleep(retryDelayMillis); } catch (InterruptedException ex1) {
+                    Thread.currentThread().interrupt();//Cancelado: desiste das tentativas.
+                    return ret;
+                }
+                ev = new PostFetchEvent();
+                ev.begin();
             }
         }
-        cur_retry=0;//reseta contador de tentativas.
-        return ret;
+    }
+
+    @Override
+    protected ImgTag resolveTagRef(TagRef ref) {
+        return tagCache.get(ref.getNome());
     }
 
     @Override
@@ -123,20 +167,21 @@ public class KonachanPostParserImpl extends AbstractPostParser {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    /**
+     * @return todas as tags do cache, ordenadas por nome.
+     */
     @Override
+    @SuppressWarnings("unchecked")
     public ImgTags getAllTagsInfo() {
-        ImgTags ret = new ImgTags();
-        for( Object o : tagInfo.toArray() ){
-            if(!(o instanceof ImgTag)) { continue; }
-            ret.add((ImgTag)o);
-        }
+        ImgTags ret = tagCache.values();
+        ret.sort(ImgTag.CompareByNome);
         return ret;
     }
 
     @Override
     public void addAllToTagInfo(Collection<ImgTag> c) {
-        //AvlExtended Ignora duplicadas por default.
-        for(ImgTag i : c) { tagInfo.add(i); }
+        //Duplicadas mantêm a do cache, completando só o alias.
+        for(ImgTag i : c) { mergeIntoTagInfo(i); }
         log_progress.doNotifyProgress("Tag Info. Atualizada.");
     }
 
@@ -144,4 +189,15 @@ public class KonachanPostParserImpl extends AbstractPostParser {
         super("http://konachan.com");
     }
     
+    /**
+     * Constroi o parser para um espelho ou servidor local com as mesmas
+     * paginas de http://konachan.com.
+     * 
+     * @param baseURL URL de base, sem a barra final.
+     * @since 2.5
+     */
+    public KonachanPostParserImpl(String baseURL) {
+        super(baseURL);
+    }
+    
 }
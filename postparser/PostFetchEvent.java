@@ -0,0 +1,36 @@
+package imagebooru.postparser;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de uma busca das tags de um post, do armazenamento local ou da
+ * rede. Cada tentativa com falha gera seu proprio evento.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+@Name("imagebooru.PostFetch")
+@Label("Post Fetch")
+@Category({"ImageBooru", "PostParser"})
+@Description("Busca das tags de um post.")
+final class PostFetchEvent extends jdk.jfr.Event {
+    @Label("Booru")
+    String booru;
+    
+    @Label("Post Id")
+    int postId;
+    
+    @Label("Tag Count")
+    int tagCount;
+    
+    @Label("Attempt")
+    int attempt;
+    
+    @Label("Outcome")
+    @Description("store, ok ou a mensagem da falha.")
+    String outcome;
+}
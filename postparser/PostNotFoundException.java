@@ -0,0 +1,40 @@
+package imagebooru.postparser;
+
+/**
+ * O post pedido não existe no ImageBooru: foi apagado, ou nunca existiu
+ * (HTTP 404 ou 410). Diferente de uma falha de rede, não adianta tentar de
+ * novo, e diferente de uma lista vazia, não quer dizer "post sem tags".
+ * Não checada, como as demais falhas de <tt>fetchAllTagsById()</tt>.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class PostNotFoundException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final String booru;
+    private final int postId;
+    private final boolean cached;
+
+    /**
+     * @param booru URL do ImageBooru.
+     * @param postId id do post.
+     * @param cached true se a resposta veio do cache negativo, sem acessar
+     * a rede.
+     */
+    public PostNotFoundException(String booru, int postId, boolean cached) {
+        super("Post "+postId+" não existe em "+booru+(cached ? " (cache negativo)." : "."));
+        this.booru = booru;
+        this.postId = postId;
+        this.cached = cached;
+    }
+
+    public String getBooru() { return booru; }
+
+    public int getPostId() { return postId; }
+
+    /**
+     * @return true se a resposta veio do cache negativo, sem acessar a rede.
+     */
+    public boolean isCached() { return cached; }
+}
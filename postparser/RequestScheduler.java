@@ -0,0 +1,247 @@
+package imagebooru.postparser;
+
+import imagebooru.utils.Metrics;
+import imagebooru.utils.NoopMetrics;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agenda requisições a varios ImageBoorus de forma justa e educada.
+ * <br/><br/>
+ * 
+ * Cada host tem sua propria fila de espera, um token bucket (taxa maxima de
+ * requisições por segundo, com rajadas de até <tt>burst</tt>) e um limite de
+ * requisições simultaneas. Alem disso há um limite global de requisições
+ * simultaneas. Sempre que uma vaga abre, as filas são atendidas em 
+ * round-robin, uma requisição por host por volta, então um host lento ou 
+ * com fila grande nunca segura o trabalho de outro.<br/><br/>
+ * 
+ * Quem requisita espera a sua vez em {@link #acquire(java.lang.String) acquire()}
+ * e faz a requisição na propria thread, liberando a vaga com 
+ * <tt>Permit.close()</tt>. Um mesmo RequestScheduler deve ser compartilhado
+ * por todos os PostParsers (veja 
+ * {@link AbstractPostParser#setRequestScheduler(imagebooru.postparser.RequestScheduler) setRequestScheduler()}).
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class RequestScheduler {
+    private final int globalMaxConcurrent;
+    private final double defaultRate;
+    private final int defaultBurst, defaultMaxPerHost;
+    
+    private final HashMap<String,Host> hosts = new HashMap<>();
+    private final ArrayList<Host> ring = new ArrayList<>();//Ordem do round-robin.
+    private int next = 0, inFlight = 0;
+    private long wakeupAt = Long.MAX_VALUE;//Proxima chamada agendada de dispatch().
+    private Metrics metrics = NoopMetrics.instance;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "request-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+    
+    private static final class Host {
+        final String name;
+        final ArrayDeque<CompletableFuture<Permit>> waiting = new ArrayDeque<>();
+        double rate, tokens;
+        int burst, maxConcurrent, inFlight = 0;
+        long lastRefill = System.nanoTime();
+        
+        Host(String name, double rate, int burst, int maxConcurrent){
+            this.name = name;
+            setLimits(rate, burst, maxConcurrent);
+            this.tokens = burst;
+        }
+        
+        final void setLimits(double rate, int burst, int maxConcurrent){
+            this.rate = rate;
+            this.burst = burst;
+            this.maxConcurrent = maxConcurrent;
+            this.tokens = Math.min(tokens, burst);
+        }
+        
+        void refill(long now){
+            tokens = Math.min(burst, tokens + (now-lastRefill)*rate/1e9);
+            lastRefill = now;
+        }
+        
+        /**
+         * @return ns até haver um token, ou 0 se já há.
+         */
+        long nanosToToken(){
+            return (tokens>=1) ? 0 : (long)Math.ceil((1-tokens)*1e9/rate);
+        }
+    }
+    
+    /**
+     * Vaga para uma requisição. Deve ser fechada ao fim da requisição.
+     */
+    public final class Permit implements AutoCloseable {
+        private final Host host;
+        private boolean closed = false;
+        
+        private Permit(Host host){
+            this.host = host;
+        }
+
+        @Override
+        public void close() {
+            synchronized(RequestScheduler.this){
+                if(closed) { return; }
+                closed = true;
+                host.inFlight--;
+                inFlight--;
+                dispatch();
+            }
+        }
+    }
+    
+    /**
+     * @param globalMaxConcurrent maximo de requisições simultaneas, somando 
+     * todos os hosts.
+     * @param defaultRate requisições por segundo de cada host, se não 
+     * configurado com <tt>setHostLimits()</tt>.
+     * @param defaultBurst rajada maxima de cada host.
+     * @param defaultMaxPerHost maximo de requisições simultaneas por host.
+     */
+    public RequestScheduler(int globalMaxConcurrent, double defaultRate, int defaultBurst, int defaultMaxPerHost){
+        throwIfInvalid(defaultRate, defaultBurst, defaultMaxPerHost);
+        if(globalMaxConcurrent<=0) { throw new IllegalArgumentException("globalMaxConcurrent deve ser maior que 0."); }
+        this.globalMaxConcurrent = globalMaxConcurrent;
+        this.defaultRate = defaultRate;
+        this.defaultBurst = defaultBurst;
+        this.defaultMaxPerHost = defaultMaxPerHost;
+    }
+    
+    private static void throwIfInvalid(double rate, int burst, int maxConcurrent){
+        if( !(rate>0)||(burst<=0)||(maxConcurrent<=0) ) {
+            throw new IllegalArgumentException("rate, burst e maxConcurrent devem ser maiores que 0.");
+        }
+    }
+    
+    private Host host(String name){
+        Host h = hosts.get(name);
+        if(h==null){
+            h = new Host(name, defaultRate, defaultBurst, defaultMaxPerHost);
+            hosts.put(name, h);
+            ring.add(h);
+        }
+        return h;
+    }
+    
+    /**
+     * Configura os limites de um host.
+     * 
+     * @param host nome do host, ex. "konachan.com".
+     * @param rate requisições por segundo.
+     * @param burst rajada maxima.
+     * @param maxConcurrent maximo de requisições simultaneas.
+     */
+    public synchronized void setHostLimits(String host, double rate, int burst, int maxConcurrent){
+        if(host==null) { throw new NullPointerException("host não deve ser null"); }
+        throwIfInvalid(rate, burst, maxConcurrent);
+        host(host).setLimits(rate, burst, maxConcurrent);
+        dispatch();
+    }
+    
+    /**
+     * @param m Metrics que recebe o tempo de espera por host em 
+     * <tt>scheduler.wait.{host}</tt>. Se null, usado NoopMetrics.
+     */
+    public synchronized void setMetrics(Metrics m){
+        this.metrics = (m==null) ? NoopMetrics.instance : m;
+    }
+    
+    /**
+     * Espera a vez de uma requisição a host.
+     * 
+     * @param host nome do host.
+     * @return vaga, a ser fechada ao fim da requisição.
+     * @throws InterruptedException se interrompido durante a espera; nesse
+     * caso nenhuma vaga é ocupada.
+     */
+    public Permit acquire(String host) throws InterruptedException{
+        if(host==null) { throw new NullPointerException("host não deve ser null"); }
+        long start = System.nanoTime();
+        CompletableFuture<Permit> grant = new CompletableFuture<>();
+        Metrics.Timer wait;
+        synchronized(this){
+            Host h = host(host);
+            h.waiting.add(grant);
+            wait = metrics.timer("scheduler.wait."+host);
+            dispatch();
+        }
+        try{
+            Permit p = grant.get();
+            wait.record(System.nanoTime()-start);
+            return p;
+        } catch(InterruptedException ex) {
+            synchronized(this){
+                if( !hosts.get(host).waiting.remove(grant) ) { grant.join().close(); }//Já concedida: devolve.
+            }
+            throw ex;
+        } catch(ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());//Nunca completada com erro.
+        }
+    }
+    
+    /**
+     * Concede vagas enquanto possivel, uma por host por volta.
+     */
+    private void dispatch(){
+        long now = System.nanoTime(), wakeup = Long.MAX_VALUE;
+        boolean granted = true;
+        while( granted && (inFlight<globalMaxConcurrent) ){
+            granted = false;
+            for(int k=0; (k<ring.size()) && (inFlight<globalMaxConcurrent); k++){
+                Host h = ring.get( (next+k)%ring.size() );
+                if( h.waiting.isEmpty()||(h.inFlight>=h.maxConcurrent) ) { continue; }
+                h.refill(now);
+                long toToken = h.nanosToToken();
+                if(toToken>0) { wakeup = Math.min(wakeup, toToken); continue; }
+                h.tokens -= 1;
+                h.inFlight++;
+                inFlight++;
+                h.waiting.poll().complete( new Permit(h) );
+                granted = true;
+            }
+            if(!ring.isEmpty()) { next = (next+1)%ring.size(); }
+        }
+        if( (wakeup!=Long.MAX_VALUE) && (now+wakeup<wakeupAt) ){
+            wakeupAt = now+wakeup;
+            timer.schedule(() -> {
+                synchronized(RequestScheduler.this){
+                    if(wakeupAt<=System.nanoTime()) { wakeupAt = Long.MAX_VALUE; }
+                    dispatch();
+                }
+            }, wakeup, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    /**
+     * @param host nome do host.
+     * @return requisições esperando a vez em host.
+     */
+    public synchronized int getQueuedCount(String host){
+        Host h = hosts.get(host);
+        return (h==null) ? 0 : h.waiting.size();
+    }
+    
+    /**
+     * @param host nome do host, ou null para todos.
+     * @return requisições em andamento.
+     */
+    public synchronized int getInFlight(String host){
+        if(host==null) { return inFlight; }
+        Host h = hosts.get(host);
+        return (h==null) ? 0 : h.inFlight;
+    }
+}
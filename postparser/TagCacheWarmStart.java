@@ -0,0 +1,121 @@
+package imagebooru.postparser;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Acompanhamento da carga do cache de tags em segundo plano, iniciada por
+ * <tt>AbstractPostParser.warmStartTagInfo()</tt>. Enquanto a carga não
+ * termina, o PostParser já pode ser usado; este objeto só informa o
+ * progresso, permite esperar o fim e cancelar.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @see AbstractPostParser#warmStartTagInfo(imagebooru.persistence.AbstractTagsPersistence)
+ * @since 2.5
+ */
+public final class TagCacheWarmStart {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final long startNanos = System.nanoTime();
+    private volatile long loaded = 0, malformed = 0, elapsedNanos = -1;
+    private volatile boolean cancelled = false;
+    private volatile RuntimeException failure = null;
+
+    TagCacheWarmStart(){
+    }
+
+    /**
+     * Executa a carga na thread atual. Chamado pela thread de segundo plano.
+     */
+    void run(LongSupplier load){
+        try{
+            malformed = load.getAsLong();
+        } catch(CancellationException ex) {
+            //Cancelado: o que já foi carregado continua no cache.
+        } catch(RuntimeException ex) {
+            failure = ex;
+        } finally {
+            elapsedNanos = System.nanoTime()-startNanos;
+            done.countDown();
+        }
+    }
+
+    void loaded(int n, long malformedSoFar){
+        loaded += n;//Somente a thread da carga escreve.
+        malformed = malformedSoFar;
+    }
+
+    void throwIfCancelled(){
+        if(cancelled) { throw new CancellationException(); }
+    }
+
+    /**
+     * Pede o fim da carga. As tags já carregadas continuam no cache.
+     */
+    public void cancel(){
+        cancelled = true;
+    }
+
+    /**
+     * @return true se a carga terminou, com sucesso, falha ou cancelada.
+     */
+    public boolean isDone(){
+        return done.getCount()==0;
+    }
+
+    /**
+     * Espera a carga terminar.
+     *
+     * @throws InterruptedException se interrompido esperando.
+     * @throws RuntimeException a falha da carga, se houver.
+     */
+    public void await() throws InterruptedException{
+        done.await();
+        if(failure!=null) { throw failure; }
+    }
+
+    /**
+     * Espera a carga terminar, no maximo timeout.
+     *
+     * @param timeout tempo maximo.
+     * @param unit unidade de timeout.
+     * @return true se terminou.
+     * @throws InterruptedException se interrompido esperando.
+     * @throws RuntimeException a falha da carga, se houver.
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException{
+        if( !done.await(timeout, unit) ) { return false; }
+        if(failure!=null) { throw failure; }
+        return true;
+    }
+
+    /**
+     * @return quantidade de tags já entregues ao cache.
+     */
+    public long getLoadedCount(){
+        return loaded;
+    }
+
+    /**
+     * @return quantidade de registros inválidos encontrados até agora.
+     */
+    public long getMalformedCount(){
+        return malformed;
+    }
+
+    /**
+     * @return duração da carga em ns, ou -1 se ainda não terminou.
+     */
+    public long getElapsedNanos(){
+        return elapsedNanos;
+    }
+
+    /**
+     * @return a falha da carga, ou null.
+     */
+    public RuntimeException getFailure(){
+        return failure;
+    }
+}
@@ -0,0 +1,32 @@
+package imagebooru.postparser;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de uma busca de info. detalhada de uma tag, feita quando ela
+ * não está no cache.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+@Name("imagebooru.TagFetch")
+@Label("Tag Fetch")
+@Category({"ImageBooru", "PostParser"})
+@Description("Busca da info. detalhada de uma tag.")
+final class TagFetchEvent extends jdk.jfr.Event {
+    @Label("Booru")
+    String booru;
+    
+    @Label("Post Id")
+    int postId;
+    
+    @Label("Tag Id")
+    int tagId;
+    
+    @Label("Outcome")
+    String outcome;
+}
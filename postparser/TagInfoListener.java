@@ -0,0 +1,22 @@
+package imagebooru.postparser;
+
+import imagebooru.ImgTag;
+
+/**
+ * Interface para um ouvinte das tags adicionadas ao cache de um PostParser.
+ * Notificado sempre que o PostParser obtem, do ImageBooru, uma tag nova ou
+ * uma versão atualizada de uma tag já conhecida. Tags carregadas com
+ * <tt>addAllToTagInfo()</tt> não são notificadas, exceto quando completam o
+ * alias de uma tag que já estava no cache.<br/><br/>
+ * 
+ * A notificação é feita na thread que buscou a tag, então implementações
+ * não devem bloquear.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @see AbstractPostParser#addTagInfoListener(TagInfoListener)
+ * @since 2.5
+ */
+public interface TagInfoListener {
+    public void doNotifyTagAdded(ImgTag tag);
+}
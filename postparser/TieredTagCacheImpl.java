@@ -0,0 +1,521 @@
+package imagebooru.postparser;
+
+import imagebooru.ImgTag;
+import imagebooru.ImgTags;
+import imagebooru.persistence.TagsPersistenceException;
+import imagebooru.utils.CountMinSketch;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Cache de tags com limite de memória, em dois niveis: até
+ * <tt>capacity</tt> tags em memória, e as demais num arquivo local.<br/><br/>
+ *
+ * A memória usa a politica W-TinyLFU: uma janela LRU pequena (1% da
+ * capacidade) recebe as tags novas, e o resto é um LRU segmentado
+ * (probatório, 20%, e protegido, 80%). Quando a janela enche, a tag mais
+ * antiga dela só entra no segmento principal se tiver sido acessada mais
+ * vezes que a vitima que sairia, segundo um CountMinSketch. Assim uma
+ * varredura de tags raras não expulsa as tags comuns, que aparecem em quase
+ * todo post.<br/><br/>
+ *
+ * Tags que saem da memória são gravadas no arquivo (se ainda não estiverem
+ * lá, ou se foram alteradas), e voltam para a memória quando pedidas. O
+ * arquivo é um log de registros <tt>int tamanho, chave\nImgTag.toString()</tt>
+ * com um indice em memória de poucas dezenas de bytes por tag (hash de 64
+ * bits da chave e offset, sem objetos), e é compactado quando mais da
+ * metade dele for de registros substituidos. O arquivo é recriado a cada abertura: é um cache, não uma
+ * persistencia (para isso, veja AbstractTagsPersistence).<br/><br/>
+ *
+ * Seguro para uso por varias threads; todas as operações são sincronizadas.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class TieredTagCacheImpl extends AbstractTagCache implements Closeable {
+    private static final long minCompactBytes = 1<<20;
+
+    private final int windowMax, mainMax, protectedMax;
+    private final LinkedHashMap<String,Node> window, probation, protectedSeg;
+    private final CountMinSketch sketch;
+    private final Overflow disk;
+    private long diskHits = 0, rejected = 0;
+    private int memoryOnly = 0;//Tags em memória que ainda não estão no arquivo.
+
+    /**
+     * Entrada da memória.
+     */
+    private static final class Node {
+        final String key;
+        ImgTag tag;
+        boolean dirty;//Diferente (ou ausente) do arquivo.
+        final boolean onDisk;//A chave já tem um registro no arquivo.
+
+        Node(String key, ImgTag tag, boolean dirty, boolean onDisk){
+            this.key = key;
+            this.tag = tag;
+            this.dirty = dirty;
+            this.onDisk = onDisk;
+        }
+    }
+
+    private Object throwIfNull(Object o){
+        if(o==null) { throw new NullPointerException("Nada de nulls!"); }
+        return o;
+    }
+
+    /**
+     * Cria o cache com o arquivo num temporario, apagado no close().
+     *
+     * @param capacity maximo de tags em memória. Maior que 0.
+     */
+    public TieredTagCacheImpl(int capacity){
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity maximo de tags em memória. Maior que 0.
+     * @param overflow arquivo para as tags que saem da memória. Se existir, é
+     * apagado. Se null, usa um temporario, apagado no close().
+     */
+    public TieredTagCacheImpl(int capacity, File overflow){
+        if(capacity<=0) { throw new IllegalArgumentException("capacity deve ser maior que 0."); }
+        this.windowMax = Math.max(1, capacity/100);
+        this.mainMax = Math.max(1, capacity-windowMax);
+        this.protectedMax = Math.max(1, mainMax*4/5);
+        this.window = new LinkedHashMap<>(16, 0.75f, true);
+        this.probation = new LinkedHashMap<>(16, 0.75f, true);
+        this.protectedSeg = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = new CountMinSketch(capacity);
+        try{
+            this.disk = new Overflow(overflow);
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel abrir o arquivo!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+
+    //Memória:
+
+    /**
+     * Busca na memória, promovendo a entrada como um acesso.
+     */
+    private Node findInMemory(String key){
+        Node n = window.get(key);
+        if(n!=null) { return n; }
+        n = protectedSeg.get(key);
+        if(n!=null) { return n; }
+        n = probation.remove(key);
+        if(n!=null){
+            //Segundo acesso: sobe para o protegido, que devolve o seu LRU.
+            protectedSeg.put(key, n);
+            if(protectedSeg.size()>protectedMax){
+                Node demoted = removeEldest(protectedSeg);
+                probation.put(demoted.key, demoted);
+            }
+        }
+        return n;
+    }
+
+    private static Node removeEldest(LinkedHashMap<String,Node> seg){
+        Iterator<Node> it = seg.values().iterator();
+        Node n = it.next();
+        it.remove();
+        return n;
+    }
+
+    private static Node peekEldest(LinkedHashMap<String,Node> seg){
+        return seg.values().iterator().next();
+    }
+
+    private void insert(Node n){
+        window.put(n.key, n);
+        if(window.size()<=windowMax) { return; }
+        Node candidate = removeEldest(window);
+        if(probation.size()+protectedSeg.size()<mainMax){
+            probation.put(candidate.key, candidate);
+            return;
+        }
+        LinkedHashMap<String,Node> victimSeg = probation.isEmpty() ? protectedSeg : probation;
+        Node victim = peekEldest(victimSeg);
+        if( sketch.frequency(candidate.key)>sketch.frequency(victim.key) ){
+            victimSeg.remove(victim.key);
+            evict(victim);
+            probation.put(candidate.key, candidate);
+        } else {
+            rejected++;
+            evict(candidate);
+        }
+    }
+
+    private void evict(Node n){
+        evictions++;
+        if(!n.dirty) { return; }//Igual ao que já está no arquivo.
+        if(!n.onDisk) { memoryOnly--; }//Passa a ser contada pelo arquivo.
+        try{
+            disk.write(n.key, n.tag);
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel salvar!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+
+    private Node find(String key){
+        sketch.increment(key);
+        Node n = findInMemory(key);
+        if(n!=null) { return n; }
+        ImgTag t;
+        try{
+            t = disk.read(key);
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel localizar o arquivo!\n"
+                    +ex.getMessage(), ex);
+        }
+        if(t==null) { return null; }
+        diskHits++;
+        n = new Node(key, t, false, true);
+        insert(n);
+        return n;
+    }
+
+    /**
+     * Insere uma tag que não está em memória.
+     */
+    private void insertNew(String key, ImgTag tag){
+        boolean onDisk = disk.contains(key);
+        if(!onDisk) { memoryOnly++; }
+        insert(new Node(key, tag, true, onDisk));
+    }
+
+    @Override
+    public synchronized ImgTag get(String key) {
+        Node n = find(key);
+        if(n!=null) { hits++; } else { misses++; }
+        return (n!=null) ? n.tag : null;
+    }
+
+    @Override
+    public synchronized void put(String key, ImgTag tag) {
+        throwIfNull(key);
+        throwIfNull(tag);
+        Node n = find(key);
+        if(n==null) {
+            insertNew(key, tag);
+        } else {
+            n.tag = tag;
+            n.dirty = true;
+        }
+    }
+
+    @Override
+    public synchronized ImgTag putIfAbsent(String key, ImgTag tag) {
+        throwIfNull(key);
+        throwIfNull(tag);
+        Node n = find(key);
+        if(n!=null) { return n.tag; }
+        insertNew(key, tag);
+        return null;
+    }
+
+    private boolean inMemory(String key){
+        return window.containsKey(key) || probation.containsKey(key) || protectedSeg.containsKey(key);
+    }
+
+    private int memorySize(){
+        return window.size()+probation.size()+protectedSeg.size();
+    }
+
+    /**
+     * Mantida por contagem, sem percorrer as tags: é lida como a gauge
+     * <tt>postparser.tagcache.size.{host}</tt>.
+     */
+    @Override
+    public synchronized int size() {
+        return disk.size()+memoryOnly;
+    }
+
+    @SuppressWarnings({"unchecked","rawtypes"})
+    private LinkedHashMap<String,Node>[] segments(){
+        return new LinkedHashMap[]{ window, probation, protectedSeg };
+    }
+
+    @Override
+    public synchronized ImgTags values() {
+        ImgTags ret = new ImgTags();
+        ret.ensureCapacity(memorySize()+disk.size());
+        for(LinkedHashMap<String,Node> seg : segments()){
+            for(Node e : seg.values()) { ret.add(e.tag); }
+        }
+        try{
+            disk.forEach((k, t) -> { if(!inMemory(k)) { ret.add(t); } });
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel localizar o arquivo!\n"
+                    +ex.getMessage(), ex);
+        }
+        return ret;
+    }
+
+    /**
+     * @return quantidade de tags em memória.
+     */
+    public synchronized int getMemorySize(){
+        return memorySize();
+    }
+
+    /**
+     * @return quantos get() foram atendidos pelo arquivo.
+     */
+    public synchronized long getDiskHitCount(){
+        return diskHits;
+    }
+
+    /**
+     * @return quantas tags novas a politica de admissão recusou.
+     */
+    public synchronized long getRejectedCount(){
+        return rejected;
+    }
+
+    /**
+     * @return tamanho do arquivo, em bytes.
+     */
+    public synchronized long getDiskBytes(){
+        return disk.length;
+    }
+
+    @Override
+    public synchronized String getStats(){
+        return super.getStats()+String.format(", %d em memória, %d hits no disco, %d recusadas, %d KB em disco",
+                memorySize(), diskHits, rejected, disk.length/1024);
+    }
+
+    /**
+     * Fecha o arquivo. Se for temporario, o apaga.
+     */
+    @Override
+    public synchronized void close() {
+        try{
+            disk.close();
+        } catch (IOException ex) {
+            throw new TagsPersistenceException("Não Foi possivel fechar o arquivo!\n"
+                    +ex.getMessage(), ex);
+        }
+    }
+
+    //Disco:
+
+    private interface RecordVisitor {
+        void visit(String key, ImgTag tag);
+    }
+
+    /**
+     * Log de tags em arquivo com indice compacto.
+     */
+    private static final class Overflow {
+        private final File file;
+        private final boolean temporary;
+        private FileChannel ch;
+        private LongLongMap index = new LongLongMap();
+        private long length = 0, garbage = 0;
+
+        Overflow(File f) throws IOException{
+            this.temporary = (f==null);
+            this.file = temporary ? File.createTempFile("imagebooru-tagcache", ".log") : f;
+            this.ch = open(file);
+        }
+
+        private static FileChannel open(File f) throws IOException{
+            return FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+         * FNV-1a de 64 bits, com mistura final.
+         */
+        private static long hash(String key){
+            long h = 0xcbf29ce484222325L;
+            for(int i=0; i<key.length(); i++){
+                h ^= key.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= h>>>33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h>>>33;
+            return h;
+        }
+
+        int size(){
+            return index.size();
+        }
+
+        boolean contains(String key){
+            return index.get(hash(key))>=0;
+        }
+
+        void write(String key, ImgTag tag) throws IOException{
+            byte[] data = (key+"\n"+tag).getBytes(StandardCharsets.UTF_8);
+            ByteBuffer b = ByteBuffer.allocate(4+data.length);
+            b.putInt(data.length).put(data).flip();
+            long pos = length;
+            while(b.hasRemaining()) { ch.write(b, pos+b.position()); }
+            length += b.limit();
+            long old = index.put(hash(key), pos);
+            if(old>=0) { garbage += 4+readLength(ch, old); }
+            if( (garbage>minCompactBytes) && (garbage*2>length) ) { compact(); }
+        }
+
+        ImgTag read(String key) throws IOException{
+            long pos = index.get(hash(key));
+            if(pos<0) { return null; }
+            String rec = readRecord(ch, pos);
+            int nl = rec.indexOf('\n');
+            //Colisão de hash (improvavel): a chave gravada é outra.
+            if( !rec.regionMatches(0, key, 0, key.length()) || (nl!=key.length()) ) { return null; }
+            return new ImgTag(rec.substring(nl+1));
+        }
+
+        void forEach(RecordVisitor v) throws IOException{
+            for(long pos : index.values()){
+                String rec = readRecord(ch, pos);
+                int nl = rec.indexOf('\n');
+                v.visit(rec.substring(0, nl), new ImgTag(rec.substring(nl+1)));
+            }
+        }
+
+        private static int readLength(FileChannel ch, long pos) throws IOException{
+            ByteBuffer head = ByteBuffer.allocate(4);
+            readFully(ch, head, pos);
+            return head.getInt(0);
+        }
+
+        private static String readRecord(FileChannel ch, long pos) throws IOException{
+            ByteBuffer data = ByteBuffer.allocate(readLength(ch, pos));
+            readFully(ch, data, pos+4);
+            return new String(data.array(), StandardCharsets.UTF_8);
+        }
+
+        private static void readFully(FileChannel ch, ByteBuffer b, long pos) throws IOException{
+            while( b.hasRemaining() ){
+                if( ch.read(b, pos+b.position())<0 ) { throw new IOException("Fim de arquivo inesperado."); }
+            }
+        }
+
+        /**
+         * Reescreve o arquivo só com os registros em uso.
+         */
+        private void compact() throws IOException{
+            File tmp = new File(file.getAbsolutePath()+".compact");
+            LongLongMap newIndex = new LongLongMap();
+            long newLength = 0;
+            try( FileChannel out = open(tmp) ){
+                long[] keys = index.keys();
+                for(long k : keys){
+                    long pos = index.get(k);
+                    long len = 4+readLength(ch, pos), done = 0;
+                    while(done<len) { done += ch.transferTo(pos+done, len-done, out); }
+                    newIndex.put(k, newLength);
+                    newLength += len;
+                }
+            }
+            ch.close();
+            boolean moved = false;
+            try{
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                moved = true;
+            } finally {
+                //Reabre o novo arquivo, ou o antigo, ainda valido para o indice atual, se a troca falhou.
+                ch = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                if(!moved) { tmp.delete(); }
+            }
+            index = newIndex;
+            length = newLength;
+            garbage = 0;
+        }
+
+        void close() throws IOException{
+            ch.close();
+            if(temporary) { file.delete(); }
+        }
+    }
+
+    /**
+     * Mapa long para long (offset) com endereçamento aberto, sem objetos por
+     * entrada. Offsets são sempre não negativos; -1 indica ausencia.
+     */
+    private static final class LongLongMap {
+        private long[] keys = new long[64], vals = new long[64];
+        private boolean[] used = new boolean[64];
+        private int size = 0;
+
+        private int slot(long k){
+            int mask = keys.length-1, i = (int)(k ^ (k>>>32)) & mask;
+            while( used[i] && (keys[i]!=k) ) { i = (i+1)&mask; }
+            return i;
+        }
+
+        long get(long k){
+            int i = slot(k);
+            return used[i] ? vals[i] : -1;
+        }
+
+        /**
+         * @return valor anterior, ou -1.
+         */
+        long put(long k, long v){
+            int i = slot(k);
+            if(used[i]){
+                long old = vals[i];
+                vals[i] = v;
+                return old;
+            }
+            used[i] = true;
+            keys[i] = k;
+            vals[i] = v;
+            if(++size*2>keys.length) { grow(); }
+            return -1;
+        }
+
+        private void grow(){
+            long[] ok = keys, ov = vals;
+            boolean[] ou = used;
+            keys = new long[ok.length*2];
+            vals = new long[ok.length*2];
+            used = new boolean[ok.length*2];
+            for(int j=0; j<ok.length; j++){
+                if(!ou[j]) { continue; }
+                int i = slot(ok[j]);
+                used[i] = true;
+                keys[i] = ok[j];
+                vals[i] = ov[j];
+            }
+        }
+
+        int size(){
+            return size;
+        }
+
+        long[] keys(){
+            long[] ret = new long[size];
+            int n = 0;
+            for(int j=0; j<keys.length; j++) { if(used[j]) { ret[n++] = keys[j]; } }
+            return ret;
+        }
+
+        long[] values(){
+            long[] ret = new long[size];
+            int n = 0;
+            for(int j=0; j<keys.length; j++) { if(used[j]) { ret[n++] = vals[j]; } }
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package imagebooru.postparser;
+
+import imagebooru.ImgTag;
+import imagebooru.ImgTags;
+import imagebooru.persistence.AbstractTagsPersistence;
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persiste em fundo as tags que um ou mais PostParser(s) adicionam aos seus
+ * caches, para que uma queda não perca horas de buscas de info. de tags.
+ * <br/><br/>
+ *
+ * Registrado como TagInfoListener, recebe cada tag nova numa fila sem
+ * limite, então quem busca as tags nunca espera. Uma thread de fundo junta
+ * as tags em lotes, limitados por <tt>maxBatch</tt> tags ou por
+ * <tt>maxLatencyMillis</tt> desde a primeira tag do lote, e os grava com
+ * {@link AbstractTagsPersistence#append(imagebooru.ImgTags) append()}. Se
+ * uma gravação falhar, o lote é mantido e tentado novamente no proximo.<br/><br/>
+ *
+ * Ao fechar, deixa de ouvir os PostParser(s) em que foi registrado por
+ * {@link #attach(AbstractPostParser)}. Tags que ainda chegarem depois disso
+ * são descartadas e contadas em {@link #getDroppedCount()}, sem afetar a
+ * busca que as notificou.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class WriteBehindTagsPersister implements TagInfoListener, Closeable {
+    private final AbstractTagsPersistence target;
+    private final int maxBatch;
+    private final long maxLatencyMillis;
+
+    private final LinkedBlockingQueue<ImgTag> queue = new LinkedBlockingQueue<>();
+    private final LinkedHashMap<String,ImgTag> pending = new LinkedHashMap<>();//Lote atual, só da thread de fundo.
+    private final Thread worker;
+    private final CopyOnWriteArrayList<AbstractPostParser> attached = new CopyOnWriteArrayList<>();
+    private volatile boolean closed = false;
+    private volatile int taken = 0;//Tags retiradas da fila para o lote atual.
+    private long enqueued = 0, persisted = 0, failures = 0, dropped = 0;
+    private RuntimeException lastError = null;
+
+    /**
+     * @param target persistencia onde os lotes serão gravados.
+     * @param maxBatch maximo de tags por lote. Maior que 0.
+     * @param maxLatencyMillis tempo maximo, em ms, que uma tag espera na fila
+     * antes do seu lote ser gravado. Maior que 0.
+     */
+    public WriteBehindTagsPersister(AbstractTagsPersistence target, int maxBatch, long maxLatencyMillis){
+        if(target==null) { throw new NullPointerException("target não deve ser null"); }
+        if( (maxBatch<=0)||(maxLatencyMillis<=0) ) {
+            throw new IllegalArgumentException("maxBatch e maxLatencyMillis devem ser maiores que 0.");
+        }
+        this.target = target;
+        this.maxBatch = maxBatch;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.worker = new Thread(this::run, "write-behind-tags");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Registra este objeto como ouvinte das tags de p.
+     *
+     * @param p PostParser cujas tags serão persistidas.
+     * @return este objeto.
+     */
+    public WriteBehindTagsPersister attach(AbstractPostParser p){
+        if(closed) { throw new IllegalStateException("WriteBehindTagsPersister já fechado."); }
+        attached.add(p);
+        p.addTagInfoListener(this);
+        return this;
+    }
+
+    /**
+     * Enfileira uma cópia de tag. Nunca bloqueia. Depois de fechado, descarta
+     * a tag.
+     *
+     * @param tag tag nova ou atualizada.
+     */
+    @Override
+    public void doNotifyTagAdded(ImgTag tag) {
+        ImgTag copy = new ImgTag(tag);//Copia: alguns parsers alteram suas tags depois.
+        synchronized(this){//Atomico com close(): ou entra na fila antes do fechamento, ou é descartada.
+            if(closed) { dropped++; return; }
+            queue.offer(copy);
+            enqueued++;
+        }
+    }
+
+    private void run(){
+        while( !closed || !queue.isEmpty() || !pending.isEmpty() ){
+            try{
+                fillBatch();
+            } catch(InterruptedException ex) {
+                closed = true;
+            }
+            if(!pending.isEmpty()) { writeBatch(); }
+        }
+    }
+
+    /**
+     * Espera a primeira tag e junta outras até o lote encher ou o prazo
+     * vencer.
+     */
+    private void fillBatch() throws InterruptedException{
+        if(pending.isEmpty()){
+            ImgTag first = queue.poll(maxLatencyMillis, TimeUnit.MILLISECONDS);
+            if(first==null) { return; }
+            pending.put(first.getKey(), first);
+            taken++;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        while( pending.size()<maxBatch ){
+            long left = deadline-System.nanoTime();
+            ImgTag t = closed ? queue.poll() : queue.poll(left, TimeUnit.NANOSECONDS);
+            if(t==null) { return; }
+            pending.put(t.getKey(), t);//Versões repetidas no mesmo lote: vale a ultima.
+            taken++;
+        }
+    }
+
+    private void writeBatch(){
+        ImgTags batch = new ImgTags(pending.values());
+        try{
+            target.append(batch);
+            pending.clear();
+            synchronized(this){
+                persisted += taken;
+                taken = 0;
+                notifyAll();
+            }
+        } catch(RuntimeException ex) {
+            synchronized(this){
+                failures++;
+                lastError = ex;
+                notifyAll();
+            }
+            if(closed) { pending.clear(); taken = 0; return; }//Não insiste para sempre ao fechar.
+            try { Thread.sleep(maxLatencyMillis); } catch (InterruptedException ex1) { }
+        }
+    }
+
+    /**
+     * Espera até que todas as tags enfileiradas até agora sejam gravadas,
+     * ou que uma gravação falhe.
+     *
+     * @throws InterruptedException se interrompido durante a espera.
+     */
+    public synchronized void flush() throws InterruptedException{
+        long goal = enqueued, failed = failures;
+        while( (persisted<goal) && (failures==failed) && worker.isAlive() ) { wait(maxLatencyMillis); }
+        if( failures!=failed ) { throw lastError; }
+    }
+
+    /**
+     * @return quantidade de tags recebidas e ainda não gravadas.
+     */
+    public int getPendingCount(){
+        return queue.size() + taken;
+    }
+
+    /**
+     * @return quantidade de tags recebidas depois do fechamento, e descartadas.
+     */
+    public synchronized long getDroppedCount(){
+        return dropped;
+    }
+
+    /**
+     * @return ultima falha de gravação, ou null se nunca falhou.
+     */
+    public synchronized RuntimeException getLastError(){
+        return lastError;
+    }
+
+    /**
+     * Deixa de ouvir os PostParser(s) registrados, para de aceitar tags, grava
+     * o que estiver pendente e encerra a thread de fundo. A thread não é
+     * interrompida, para não abortar uma gravação em andamento; ela percebe o
+     * fechamento em até <tt>maxLatencyMillis</tt>.
+     */
+    @Override
+    public void close() {
+        synchronized(this){ closed = true; }//Depois disso a fila só esvazia.
+        for(AbstractPostParser p : attached) { p.removeTagInfoListener(this); }
+        attached.clear();
+        try{
+            worker.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
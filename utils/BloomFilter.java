@@ -0,0 +1,90 @@
+package imagebooru.utils;
+
+/**
+ * Filtro de Bloom para chaves long: responde "talvez esteja" ou "com
+ * certeza não está" em tempo constante, usando poucos bits por chave.
+ * Não há remoção; para esquecer chaves, crie um filtro novo.<br/><br/>
+ *
+ * As k posições de cada chave vem de dois hashes (h1 + i*h2) de uma mistura
+ * de 64 bits da chave. O tamanho é calculado a partir da quantidade esperada
+ * de chaves e da taxa de falsos positivos desejada.<br/><br/>
+ *
+ * Somente add() é sincronizado. {@link #mightContain(long)} não usa lock:
+ * concorrente com um add(), pode ver só parte dos bits da chave sendo
+ * adicionada e responder false para ela. Na frente de um cache, isso só
+ * custa uma consulta a mais.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final int numBits, numHashes;
+    private int count = 0;
+
+    /**
+     * @param expected quantidade esperada de chaves. Maior que 0.
+     * @param fpp taxa de falsos positivos desejada, entre 0 e 1 (exclusivo).
+     */
+    public BloomFilter(int expected, double fpp){
+        if(expected<=0) { throw new IllegalArgumentException("expected deve ser maior que 0."); }
+        if( (fpp<=0)||(fpp>=1) ) { throw new IllegalArgumentException("fpp deve estar entre 0 e 1."); }
+        long m = (long)Math.ceil( -expected*Math.log(fpp)/(Math.log(2)*Math.log(2)) );
+        m = Math.max(64, Math.min(m, Integer.MAX_VALUE-63));
+        this.bits = new long[(int)((m+63)>>>6)];
+        this.numBits = bits.length*64;
+        this.numHashes = Math.max(1, (int)Math.round( (double)numBits/expected*Math.log(2) ));
+    }
+
+    private static long mix(long z){
+        z = (z^(z>>>33))*0xff51afd7ed558ccdL;
+        z = (z^(z>>>33))*0xc4ceb9fe1a85ec53L;
+        return z^(z>>>33);
+    }
+
+    /**
+     * @param key chave a adicionar.
+     */
+    public synchronized void add(long key){
+        long h = mix(key);
+        int h1 = (int)h, h2 = (int)(h>>>32);
+        for(int i=0; i<numHashes; i++){
+            int b = ((h1+i*h2)&Integer.MAX_VALUE)%numBits;
+            bits[b>>>6] |= 1L<<b;
+        }
+        count++;
+    }
+
+    /**
+     * @param key chave a consultar.
+     * @return false se key com certeza não foi adicionada.
+     */
+    public boolean mightContain(long key){
+        long h = mix(key);
+        int h1 = (int)h, h2 = (int)(h>>>32);
+        for(int i=0; i<numHashes; i++){
+            int b = ((h1+i*h2)&Integer.MAX_VALUE)%numBits;
+            if( (bits[b>>>6]&(1L<<b))==0 ) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * @return quantidade de chamadas a add().
+     */
+    public synchronized int getCount(){
+        return count;
+    }
+
+    /**
+     * @return tamanho do filtro, em bits.
+     */
+    public int getBitCount(){
+        return numBits;
+    }
+
+    public int getHashCount(){
+        return numHashes;
+    }
+}
@@ -0,0 +1,97 @@
+package imagebooru.utils;
+
+/**
+ * Estimativa compacta da frequencia de acesso de objetos (count-min sketch
+ * com contadores de 4 bits), usada para decidir admissões em caches.
+ * <br/><br/>
+ *
+ * Cada objeto é contado em 4 contadores, um por "linha", e a frequencia
+ * estimada é o menor deles; colisões só podem superestimar. Os contadores
+ * saturam em 15, e depois de <tt>10 * capacidade</tt> incrementos todos são
+ * divididos por 2, para que a estimativa acompanhe mudanças no padrão de
+ * acesso (o "envelhecimento" do TinyLFU). Usa 8 bytes para cada 16
+ * contadores.<br/><br/>
+ *
+ * Não é seguro para uso por varias threads sem sincronização externa.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class CountMinSketch {
+    private static final long[] seeds = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long resetMask = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int tableMask, sampleSize;
+    private int additions = 0;
+
+    /**
+     * @param capacity quantidade de objetos distintos que se espera acompanhar
+     * (em geral, a capacidade do cache). Maior que 0.
+     */
+    public CountMinSketch(int capacity){
+        if(capacity<=0) { throw new IllegalArgumentException("capacity deve ser maior que 0."); }
+        int n = Integer.highestOneBit( Math.max(16, Math.min(capacity, 1<<26)) - 1 ) << 1;
+        this.table = new long[n];
+        this.tableMask = n-1;
+        this.sampleSize = (int)Math.min(10L*capacity, Integer.MAX_VALUE);
+    }
+
+    private static int spread(int h){
+        h ^= h>>>17;
+        h *= 0xed5ad4bb;
+        h ^= h>>>11;
+        h *= 0xac4c1b51;
+        h ^= h>>>15;
+        return h;
+    }
+
+    private int indexOf(int h, int row){
+        long hash = (h+seeds[row]) * seeds[row];
+        hash += hash>>>32;
+        return (int)hash & tableMask;
+    }
+
+    /**
+     * @param e objeto.
+     * @return frequencia estimada de e, de 0 a 15.
+     */
+    public int frequency(Object e){
+        int h = spread(e.hashCode()), start = (h&3)<<2, f = 15;
+        for(int row=0; row<4; row++){
+            int shift = (start+row)<<2;
+            f = Math.min(f, (int)( (table[indexOf(h, row)]>>>shift) & 0xFL ));
+        }
+        return f;
+    }
+
+    /**
+     * Conta mais um acesso a e.
+     *
+     * @param e objeto.
+     */
+    public void increment(Object e){
+        int h = spread(e.hashCode()), start = (h&3)<<2;
+        boolean added = false;
+        for(int row=0; row<4; row++){
+            int idx = indexOf(h, row), shift = (start+row)<<2;
+            long mask = 0xFL<<shift;
+            if( (table[idx]&mask)!=mask ){
+                table[idx] += 1L<<shift;
+                added = true;
+            }
+        }
+        if( added && (++additions>=sampleSize) ) { reset(); }
+    }
+
+    /**
+     * Divide todos os contadores por 2.
+     */
+    private void reset(){
+        for(int i=0; i<table.length; i++) { table[i] = (table[i]>>>1) & resetMask; }
+        additions /= 2;
+    }
+}
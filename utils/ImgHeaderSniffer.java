@@ -0,0 +1,244 @@
+package imagebooru.utils;
+
+import imagebooru.ImgFile.ImgFormat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Identifica o formato de um arquivo de imagem pelos seus "magic bytes".
+ * Lê somente os primeiros <tt>headerLength</tt> bytes do arquivo para
+ * classifica-lo, sem confiar na extensão. As dimensões da imagem são obtidas
+ * do cabeçalho de cada formato, nunca decodificando a imagem inteira.<br/><br/>
+ *
+ * Os buffers usados nas leituras são diretos e pequenos, e ficam num pool
+ * estático para que cada arquivo testado não custe uma nova alocação.
+ * Seguro para uso por varias threads.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @see ImgFormat
+ * @since 2.5
+ */
+public final class ImgHeaderSniffer {
+
+    /** Quantidade de bytes lidos para classificar um arquivo. */
+    public static final int headerLength = 16;
+
+    private static final int bufferCapacity = 32;//Cabe o cabeçalho de png, gif, bmp e webp.
+    private static final int poolSize = 8;
+    private static final int maxJpegSegments = 64;//Evita varrer um jpeg corrompido para sempre.
+
+    private static final ArrayBlockingQueue<ByteBuffer> pool =
+            new ArrayBlockingQueue<>(poolSize);
+
+    private ImgHeaderSniffer(){ }
+
+    //Pool de buffers:
+
+    private static ByteBuffer borrow(int length){
+        ByteBuffer b = pool.poll();
+        if(b==null) { b = ByteBuffer.allocateDirect(bufferCapacity); }
+        b.clear();
+        b.limit(length);
+        return b;
+    }
+
+    private static void giveBack(ByteBuffer b){
+        pool.offer(b);//Se o pool estiver cheio, o buffer é simplesmente descartado.
+    }
+
+    /**
+     * Lê até <tt>b.remaining()</tt> bytes de ch a partir de pos.
+     *
+     * @return quantidade de bytes lidos, que pode ser menor no fim do arquivo.
+     */
+    private static int readAt(FileChannel ch, ByteBuffer b, long pos) throws IOException{
+        int total = 0, n;
+        while( b.hasRemaining() && (n = ch.read(b, pos+total)) > 0 ) { total += n; }
+        b.flip();
+        return total;
+    }
+
+    private static boolean startsWith(ByteBuffer b, int off, int... magic){
+        if(b.limit() < off+magic.length) { return false; }
+        for(int i=0; i<magic.length; i++){
+            if((b.get(off+i)&0xFF) != magic[i]) { return false; }
+        }
+        return true;
+    }
+
+    private static int u16be(ByteBuffer b, int off){
+        return ((b.get(off)&0xFF)<<8) | (b.get(off+1)&0xFF);
+    }
+
+    private static int u16le(ByteBuffer b, int off){
+        return (b.get(off)&0xFF) | ((b.get(off+1)&0xFF)<<8);
+    }
+
+    private static int u24le(ByteBuffer b, int off){
+        return u16le(b, off) | ((b.get(off+2)&0xFF)<<16);
+    }
+
+    //Classificação:
+
+    /**
+     * Classifica o formato de imagem a partir dos bytes iniciais de um
+     * arquivo.
+     * Usa somente posições absolutas, não altera a posição de b.
+     *
+     * @param b buffer com os primeiros bytes do arquivo, de 0 a <tt>limit()</tt>.
+     * @return formato detectado, ou <tt>fmtUnknown</tt>.
+     */
+    public static ImgFormat classify(ByteBuffer b){
+        if( startsWith(b, 0, 0xFF, 0xD8, 0xFF) ) { return ImgFormat.fmtJpeg; }
+        if( startsWith(b, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A) ) { return ImgFormat.fmtPng; }
+        if( startsWith(b, 0, 'G', 'I', 'F', '8')
+                && (startsWith(b, 4, '7', 'a') || startsWith(b, 4, '9', 'a')) ) { return ImgFormat.fmtGif; }
+        if( startsWith(b, 0, 'R', 'I', 'F', 'F') && startsWith(b, 8, 'W', 'E', 'B', 'P') ) { return ImgFormat.fmtWebp; }
+        //"BM" sozinho é fraco demais, exige os 4 bytes reservados zerados.
+        if( startsWith(b, 0, 'B', 'M') && startsWith(b, 6, 0, 0, 0, 0) ) { return ImgFormat.fmtBmp; }
+        return ImgFormat.fmtUnknown;
+    }
+
+    /**
+     * Classifica o formato de imagem de um arquivo.
+     * Lê somente os primeiros <tt>headerLength</tt> bytes dele.
+     *
+     * @param ch canal aberto para leitura do arquivo.
+     * @return formato detectado, ou <tt>fmtUnknown</tt>.
+     * @throws IOException se a leitura falhar.
+     */
+    public static ImgFormat sniff(FileChannel ch) throws IOException{
+        ByteBuffer b = borrow(headerLength);
+        try{
+            readAt(ch, b, 0);
+            return classify(b);
+        } finally {
+            giveBack(b);
+        }
+    }
+
+    /**
+     * Classifica o formato de imagem de um arquivo.
+     * Arquivos ilegiveis são considerados de formato desconhecido.
+     *
+     * @param f arquivo a ser testado.
+     * @return formato detectado, ou <tt>fmtUnknown</tt>.
+     */
+    public static ImgFormat sniff(File f){
+        try( FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ) ){
+            return sniff(ch);
+        } catch (IOException ex) {
+            return ImgFormat.fmtUnknown;
+        }
+    }
+
+    //Dimensões:
+
+    /**
+     * Obtem largura e altura de uma imagem lendo apenas seu cabeçalho.
+     *
+     * @param f arquivo da imagem.
+     * @param fmt formato já detectado de f.
+     * @return {largura, altura}, ou null se não for possivel determina-las.
+     */
+    public static int[] readDimensions(File f, ImgFormat fmt){
+        if( (fmt==null)||(fmt==ImgFormat.fmtUnknown) ) { return null; }
+        try( FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ) ){
+            return readDimensions(ch, fmt);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Obtem largura e altura de uma imagem lendo apenas seu cabeçalho.
+     * Para jpeg, percorre os marcadores de segmento até o primeiro SOFn,
+     * pulando o conteudo dos outros segmentos sem lê-lo.
+     *
+     * @param ch canal aberto para leitura da imagem.
+     * @param fmt formato já detectado da imagem.
+     * @return {largura, altura}, ou null se não for possivel determina-las.
+     * @throws IOException se a leitura falhar.
+     */
+    public static int[] readDimensions(FileChannel ch, ImgFormat fmt) throws IOException{
+        if(fmt==ImgFormat.fmtJpeg) { return readJpegDimensions(ch); }
+        ByteBuffer b = borrow(bufferCapacity);
+        try{
+            int n = readAt(ch, b, 0);
+            switch(fmt){
+                case fmtPng: //IHDR é sempre o primeiro chunk.
+                    if( (n<24) || !startsWith(b, 12, 'I', 'H', 'D', 'R') ) { return null; }
+                    return dims(b.getInt(16), b.getInt(20));
+                case fmtGif: //Logical Screen Descriptor.
+                    if(n<10) { return null; }
+                    return dims(u16le(b, 6), u16le(b, 8));
+                case fmtBmp: //BITMAPINFOHEADER, altura negativa indica imagem "de cima para baixo".
+                    if(n<26) { return null; }
+                    b.order(ByteOrder.LITTLE_ENDIAN);
+                    return dims(b.getInt(18), Math.abs(b.getInt(22)));
+                case fmtWebp:
+                    return (n<30) ? null : readWebpDimensions(b);
+                default:
+                    return null;
+            }
+        } finally {
+            b.order(ByteOrder.BIG_ENDIAN);
+            giveBack(b);
+        }
+    }
+
+    private static int[] dims(int w, int h){
+        return ( (w>0)&&(h>0) ) ? new int[]{ w, h } : null;
+    }
+
+    private static int[] readWebpDimensions(ByteBuffer b){
+        if( startsWith(b, 12, 'V', 'P', '8', ' ') ) { //Lossy: start code 9D 01 2A.
+            if( !startsWith(b, 23, 0x9D, 0x01, 0x2A) ) { return null; }
+            return dims(u16le(b, 26)&0x3FFF, u16le(b, 28)&0x3FFF);
+        }
+        if( startsWith(b, 12, 'V', 'P', '8', 'L') ) { //Lossless: 14 bits para cada, menos 1.
+            if( !startsWith(b, 20, 0x2F) ) { return null; }
+            int bits = (b.get(21)&0xFF) | ((b.get(22)&0xFF)<<8)
+                    | ((b.get(23)&0xFF)<<16) | ((b.get(24)&0xFF)<<24);
+            return dims((bits&0x3FFF)+1, ((bits>>>14)&0x3FFF)+1);
+        }
+        if( startsWith(b, 12, 'V', 'P', '8', 'X') ) { //Extendido: canvas de 24 bits, menos 1.
+            return dims(u24le(b, 24)+1, u24le(b, 27)+1);
+        }
+        return null;
+    }
+
+    private static boolean isSOF(int marker){
+        return (marker>=0xC0) && (marker<=0xCF)
+                && (marker!=0xC4) && (marker!=0xC8) && (marker!=0xCC);
+    }
+
+    private static int[] readJpegDimensions(FileChannel ch) throws IOException{
+        ByteBuffer b = borrow(9);
+        try{
+            long pos = 2;//Pula SOI.
+            for(int seg=0; seg<maxJpegSegments; seg++){
+                b.clear(); b.limit(9);
+                if( readAt(ch, b, pos) < 4 ) { return null; }
+                if( (b.get(0)&0xFF) != 0xFF ) { return null; }
+                int marker = b.get(1)&0xFF;
+                if(marker==0xFF) { pos++; continue; }//Byte de preenchimento.
+                if( (marker==0x01) || ((marker>=0xD0)&&(marker<=0xD7)) ) { pos+=2; continue; }//Sem tamanho.
+                if( (marker==0xD9) || (marker==0xDA) ) { return null; }//EOI ou dados antes de um SOF.
+                if( isSOF(marker) ) {
+                    return (b.limit()<9) ? null : dims(u16be(b, 7), u16be(b, 5));
+                }
+                pos += 2 + u16be(b, 2);
+            }
+            return null;
+        } finally {
+            giveBack(b);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package imagebooru.utils;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Interface para um registro de metricas tipadas.
+ * Diferente de ProgressListener, que só recebe textos e porcentagens, um
+ * Metrics recebe valores: contadores (tags no cache, retentativas, arquivos
+ * lidos), timers (latencia de cada busca, tempo de geração de um nome) e 
+ * gauges (valores lidos sob demanda, como o tamanho de uma fila).<br/><br/>
+ * 
+ * Os nomes são livres, mas por convenção começam pelo pacote de quem 
+ * reporta, ex. <tt>"postparser.fetch.konachan.com"</tt>. Quem reporta deve
+ * obter seus Counter/Timer uma vez e guarda-los, pois a busca pelo nome pode
+ * ter custo. Implementações devem ser seguras para uso por varias threads.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @see NoopMetrics
+ * @see SimpleMetrics
+ * @since 2.5
+ */
+public interface Metrics {
+    
+    /**
+     * Contador monotonico.
+     */
+    public interface Counter {
+        public void inc();
+        public void add(long n);
+    }
+    
+    /**
+     * Registra durações e mantem sua distribuição.
+     */
+    public interface Timer {
+        
+        /**
+         * @param nanos duração, em nanosegundos.
+         */
+        public void record(long nanos);
+    }
+    
+    public Counter counter(String name);
+    public Timer timer(String name);
+    
+    /**
+     * Registra um valor lido sob demanda, somente quando as metricas são
+     * consultadas.
+     * 
+     * @param name nome da gauge.
+     * @param value fonte do valor.
+     */
+    public void gauge(String name, LongSupplier value);
+}
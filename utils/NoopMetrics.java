@@ -0,0 +1,53 @@
+package imagebooru.utils;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics e ProgressListener que descartam tudo.
+ * Padrão de todos os componentes que reportam metricas ou progresso, para 
+ * evitar checagem constante de nulls. Os métodos são vazios e os 
+ * Counter/Timer são instancias unicas, então o JIT elimina as chamadas por 
+ * completo. Substitui StubProgressListener.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public final class NoopMetrics implements Metrics, ProgressListener {
+    
+    public static final NoopMetrics instance = new NoopMetrics();
+    
+    private static final Counter counter = new Counter() {
+        @Override
+        public void inc() { }
+
+        @Override
+        public void add(long n) { }
+    };
+    
+    private static final Timer timer = new Timer() {
+        @Override
+        public void record(long nanos) { }
+    };
+    
+    private NoopMetrics(){ }
+
+    @Override
+    public Counter counter(String name) { return counter; }
+
+    @Override
+    public Timer timer(String name) { return timer; }
+
+    @Override
+    public void gauge(String name, LongSupplier value) { }
+
+    @Override
+    public void doNotifyProgress(String progress_decription) { }
+
+    @Override
+    public void doNotifyProgress(double percentDone) { }
+
+    @Override
+    public void doNotifyProgress(int itensDone, int itensLeft) { }
+    
+}
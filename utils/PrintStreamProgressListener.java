@@ -40,7 +40,7 @@ public class PrintStreamProgressListener implements ProgressListener{
     public void doNotifyProgress(int itensDone, int itensLeft) {
         this.done = itensDone;
         this.left = itensLeft;
-        this.percent = done*((itensDone+itensLeft)/100);
+        this.percent = (done+left>0) ? 100.0*done/(done+left) : 0;//Sem divisão inteira.
         printProgress("\n");
     }
     
@@ -0,0 +1,511 @@
+package imagebooru.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Conjunto comprimido de ints no estilo Roaring: os valores são divididos
+ * pelos 16 bits altos em blocos de 65536, e cada bloco usa o container mais
+ * compacto para sua densidade. Blocos com até 4096 valores guardam um array
+ * ordenado de chars (2 bytes por valor); blocos mais cheios guardam um
+ * bitmap de 8KB. Operações entre conjuntos percorrem somente os blocos
+ * presentes, palavra a palavra nos bitmaps.<br/><br/>
+ *
+ * Versão reduzida do formato original: não há containers de "runs", e a
+ * serialização é propria (veja {@link #serialize(ByteBuffer)}). As operações
+ * estaticas nunca alteram os operandos. Não é seguro para varias threads.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public final class RoaringBitmap implements Cloneable {
+    private static final int maxArray = 4096;
+    private static final byte typeArray = 0, typeBitmap = 1;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size = 0;
+
+    //Containers:
+
+    private static abstract class Container {
+        abstract int cardinality();
+        abstract boolean contains(char v);
+        abstract Container add(char v);
+        abstract Container remove(char v);
+        abstract Container copy();
+        abstract void forEach(int high, IntConsumer c);
+        abstract int serializedSize();
+        abstract void serialize(ByteBuffer b);
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] content;
+        int card;
+
+        ArrayContainer(char[] content, int card){
+            this.content = content;
+            this.card = card;
+        }
+
+        @Override
+        int cardinality() { return card; }
+
+        @Override
+        boolean contains(char v) {
+            return Arrays.binarySearch(content, 0, card, v)>=0;
+        }
+
+        @Override
+        Container add(char v) {
+            int i = Arrays.binarySearch(content, 0, card, v);
+            if(i>=0) { return this; }
+            if(card>=maxArray) { return toBitmap().add(v); }
+            i = -i-1;
+            if(card==content.length) { content = Arrays.copyOf(content, Math.min(maxArray, Math.max(4, card*2))); }
+            System.arraycopy(content, i, content, i+1, card-i);
+            content[i] = v;
+            card++;
+            return this;
+        }
+
+        @Override
+        Container remove(char v) {
+            int i = Arrays.binarySearch(content, 0, card, v);
+            if(i<0) { return this; }
+            System.arraycopy(content, i+1, content, i, card-i-1);
+            card--;
+            return this;
+        }
+
+        BitmapContainer toBitmap(){
+            long[] w = new long[1024];
+            for(int i=0; i<card; i++) { w[content[i]>>>6] |= 1L<<content[i]; }
+            return new BitmapContainer(w, card);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(content, card), card);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer c) {
+            for(int i=0; i<card; i++) { c.accept(high|content[i]); }
+        }
+
+        @Override
+        int serializedSize() { return 2*card; }
+
+        @Override
+        void serialize(ByteBuffer b) {
+            for(int i=0; i<card; i++) { b.putChar(content[i]); }
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words;
+        int card;
+
+        BitmapContainer(long[] words, int card){
+            this.words = words;
+            this.card = card;
+        }
+
+        /** Cria a partir de palavras ja calculadas, contando os bits. */
+        static Container of(long[] words){
+            int card = 0;
+            for(long w : words) { card += Long.bitCount(w); }
+            if(card==0) { return null; }
+            BitmapContainer c = new BitmapContainer(words, card);
+            return (card<=maxArray) ? c.toArray() : c;
+        }
+
+        @Override
+        int cardinality() { return card; }
+
+        @Override
+        boolean contains(char v) {
+            return (words[v>>>6]&(1L<<v))!=0;
+        }
+
+        @Override
+        Container add(char v) {
+            long before = words[v>>>6];
+            words[v>>>6] = before|(1L<<v);
+            if(before!=words[v>>>6]) { card++; }
+            return this;
+        }
+
+        @Override
+        Container remove(char v) {
+            long before = words[v>>>6];
+            words[v>>>6] = before&~(1L<<v);
+            if(before!=words[v>>>6]) { card--; }
+            return (card<=maxArray) ? toArray() : this;
+        }
+
+        ArrayContainer toArray(){
+            char[] a = new char[card];
+            int n = 0;
+            for(int i=0; i<words.length; i++){
+                long w = words[i];
+                while(w!=0){
+                    a[n++] = (char)((i<<6)+Long.numberOfTrailingZeros(w));
+                    w &= w-1;
+                }
+            }
+            return new ArrayContainer(a, n);
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), card);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer c) {
+            for(int i=0; i<words.length; i++){
+                long w = words[i];
+                while(w!=0){
+                    c.accept(high|((i<<6)+Long.numberOfTrailingZeros(w)));
+                    w &= w-1;
+                }
+            }
+        }
+
+        @Override
+        int serializedSize() { return 8*words.length; }
+
+        @Override
+        void serialize(ByteBuffer b) {
+            for(long w : words) { b.putLong(w); }
+        }
+    }
+
+    //Operações entre containers. Retornam null se o resultado é vazio, e
+    //nunca alteram (nem retornam) os operandos.
+
+    private static Container and(Container a, Container b){
+        if( (a instanceof BitmapContainer)&&(b instanceof BitmapContainer) ){
+            long[] x = ((BitmapContainer)a).words, y = ((BitmapContainer)b).words, w = new long[1024];
+            for(int i=0; i<1024; i++) { w[i] = x[i]&y[i]; }
+            return BitmapContainer.of(w);
+        }
+        if(a instanceof BitmapContainer) { Container t = a; a = b; b = t; }
+        //a é array: filtra por b.
+        ArrayContainer arr = (ArrayContainer)a;
+        char[] out = new char[arr.card];
+        int n = 0;
+        if(b instanceof ArrayContainer){
+            ArrayContainer o = (ArrayContainer)b;
+            int i = 0, j = 0;
+            while( (i<arr.card)&&(j<o.card) ){
+                char x = arr.content[i], y = o.content[j];
+                if(x<y) { i++; }
+                else if(x>y) { j++; }
+                else { out[n++] = x; i++; j++; }
+            }
+        } else {
+            for(int i=0; i<arr.card; i++) { if(b.contains(arr.content[i])) { out[n++] = arr.content[i]; } }
+        }
+        return (n==0) ? null : new ArrayContainer(out, n);
+    }
+
+    private static int andCardinality(Container a, Container b){
+        if( (a instanceof BitmapContainer)&&(b instanceof BitmapContainer) ){
+            long[] x = ((BitmapContainer)a).words, y = ((BitmapContainer)b).words;
+            int n = 0;
+            for(int i=0; i<1024; i++) { n += Long.bitCount(x[i]&y[i]); }
+            return n;
+        }
+        if(a instanceof BitmapContainer) { Container t = a; a = b; b = t; }
+        ArrayContainer arr = (ArrayContainer)a;
+        int n = 0;
+        for(int i=0; i<arr.card; i++) { if(b.contains(arr.content[i])) { n++; } }
+        return n;
+    }
+
+    private static Container or(Container a, Container b){
+        if( (a instanceof ArrayContainer)&&(b instanceof ArrayContainer) ){
+            ArrayContainer x = (ArrayContainer)a, y = (ArrayContainer)b;
+            if(x.card+y.card<=maxArray){
+                char[] out = new char[x.card+y.card];
+                int i = 0, j = 0, n = 0;
+                while( (i<x.card)&&(j<y.card) ){
+                    char p = x.content[i], q = y.content[j];
+                    if(p<q) { out[n++] = p; i++; }
+                    else if(p>q) { out[n++] = q; j++; }
+                    else { out[n++] = p; i++; j++; }
+                }
+                while(i<x.card) { out[n++] = x.content[i++]; }
+                while(j<y.card) { out[n++] = y.content[j++]; }
+                return new ArrayContainer(out, n);
+            }
+        }
+        long[] w = new long[1024];
+        orInto(w, a);
+        orInto(w, b);
+        return BitmapContainer.of(w);
+    }
+
+    private static void orInto(long[] w, Container c){
+        if(c instanceof BitmapContainer){
+            long[] x = ((BitmapContainer)c).words;
+            for(int i=0; i<1024; i++) { w[i] |= x[i]; }
+        } else {
+            ArrayContainer arr = (ArrayContainer)c;
+            for(int i=0; i<arr.card; i++) { w[arr.content[i]>>>6] |= 1L<<arr.content[i]; }
+        }
+    }
+
+    private static Container andNot(Container a, Container b){
+        if(a instanceof ArrayContainer){
+            ArrayContainer arr = (ArrayContainer)a;
+            char[] out = new char[arr.card];
+            int n = 0;
+            for(int i=0; i<arr.card; i++) { if(!b.contains(arr.content[i])) { out[n++] = arr.content[i]; } }
+            return (n==0) ? null : new ArrayContainer(out, n);
+        }
+        long[] w = ((BitmapContainer)a).words.clone();
+        if(b instanceof BitmapContainer){
+            long[] y = ((BitmapContainer)b).words;
+            for(int i=0; i<1024; i++) { w[i] &= ~y[i]; }
+        } else {
+            ArrayContainer arr = (ArrayContainer)b;
+            for(int i=0; i<arr.card; i++) { w[arr.content[i]>>>6] &= ~(1L<<arr.content[i]); }
+        }
+        return BitmapContainer.of(w);
+    }
+
+    //Blocos:
+
+    private int indexOf(char key){
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void append(char key, Container c){
+        if(c==null) { return; }
+        if(size==keys.length){
+            keys = Arrays.copyOf(keys, size*2);
+            containers = Arrays.copyOf(containers, size*2);
+        }
+        keys[size] = key;
+        containers[size] = c;
+        size++;
+    }
+
+    /**
+     * @param x valor a adicionar.
+     */
+    public void add(int x){
+        char hi = (char)(x>>>16), lo = (char)x;
+        int i = indexOf(hi);
+        if(i>=0) {
+            containers[i] = containers[i].add(lo);
+            return;
+        }
+        i = -i-1;
+        if(size==keys.length){
+            keys = Arrays.copyOf(keys, size*2);
+            containers = Arrays.copyOf(containers, size*2);
+        }
+        System.arraycopy(keys, i, keys, i+1, size-i);
+        System.arraycopy(containers, i, containers, i+1, size-i);
+        keys[i] = hi;
+        containers[i] = new ArrayContainer(new char[]{ lo }, 1);
+        size++;
+    }
+
+    /**
+     * @param x valor a remover.
+     */
+    public void remove(int x){
+        int i = indexOf((char)(x>>>16));
+        if(i<0) { return; }
+        containers[i] = containers[i].remove((char)x);
+        if(containers[i].cardinality()>0) { return; }
+        System.arraycopy(keys, i+1, keys, i, size-i-1);
+        System.arraycopy(containers, i+1, containers, i, size-i-1);
+        size--;
+        containers[size] = null;
+    }
+
+    /**
+     * @param x valor.
+     * @return true se x pertence ao conjunto.
+     */
+    public boolean contains(int x){
+        int i = indexOf((char)(x>>>16));
+        return (i>=0) && containers[i].contains((char)x);
+    }
+
+    /**
+     * @return quantidade de valores no conjunto.
+     */
+    public int getCardinality(){
+        int n = 0;
+        for(int i=0; i<size; i++) { n += containers[i].cardinality(); }
+        return n;
+    }
+
+    public boolean isEmpty(){
+        return size==0;
+    }
+
+    /**
+     * Entrega os valores em ordem crescente (sem sinal).
+     *
+     * @param c consumidor dos valores.
+     */
+    public void forEach(IntConsumer c){
+        for(int i=0; i<size; i++) { containers[i].forEach(keys[i]<<16, c); }
+    }
+
+    /**
+     * @return os valores, em ordem crescente (sem sinal).
+     */
+    public int[] toArray(){
+        int[] ret = new int[getCardinality()];
+        int[] n = { 0 };
+        forEach(v -> ret[n[0]++] = v);
+        return ret;
+    }
+
+    @Override
+    public RoaringBitmap clone(){
+        RoaringBitmap r = new RoaringBitmap();
+        r.keys = Arrays.copyOf(keys, Math.max(4, size));
+        r.containers = new Container[r.keys.length];
+        for(int i=0; i<size; i++) { r.containers[i] = containers[i].copy(); }
+        r.size = size;
+        return r;
+    }
+
+    //Operações entre conjuntos:
+
+    /**
+     * @return novo conjunto com os valores presentes em a e em b.
+     */
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b){
+        RoaringBitmap r = new RoaringBitmap();
+        int i = 0, j = 0;
+        while( (i<a.size)&&(j<b.size) ){
+            if(a.keys[i]<b.keys[j]) { i++; }
+            else if(a.keys[i]>b.keys[j]) { j++; }
+            else { r.append(a.keys[i], and(a.containers[i], b.containers[j])); i++; j++; }
+        }
+        return r;
+    }
+
+    /**
+     * @return quantidade de valores presentes em a e em b, sem montar o
+     * conjunto.
+     */
+    public static int andCardinality(RoaringBitmap a, RoaringBitmap b){
+        int i = 0, j = 0, n = 0;
+        while( (i<a.size)&&(j<b.size) ){
+            if(a.keys[i]<b.keys[j]) { i++; }
+            else if(a.keys[i]>b.keys[j]) { j++; }
+            else { n += andCardinality(a.containers[i], b.containers[j]); i++; j++; }
+        }
+        return n;
+    }
+
+    /**
+     * @return novo conjunto com os valores presentes em a ou em b.
+     */
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b){
+        RoaringBitmap r = new RoaringBitmap();
+        int i = 0, j = 0;
+        while( (i<a.size)||(j<b.size) ){
+            if( (j>=b.size) || ((i<a.size)&&(a.keys[i]<b.keys[j])) ) { r.append(a.keys[i], a.containers[i].copy()); i++; }
+            else if( (i>=a.size) || (a.keys[i]>b.keys[j]) ) { r.append(b.keys[j], b.containers[j].copy()); j++; }
+            else { r.append(a.keys[i], or(a.containers[i], b.containers[j])); i++; j++; }
+        }
+        return r;
+    }
+
+    /**
+     * @return novo conjunto com os valores presentes em a e ausentes em b.
+     */
+    public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b){
+        RoaringBitmap r = new RoaringBitmap();
+        int i = 0, j = 0;
+        while(i<a.size){
+            while( (j<b.size)&&(b.keys[j]<a.keys[i]) ) { j++; }
+            if( (j<b.size)&&(b.keys[j]==a.keys[i]) ) { r.append(a.keys[i], andNot(a.containers[i], b.containers[j])); }
+            else { r.append(a.keys[i], a.containers[i].copy()); }
+            i++;
+        }
+        return r;
+    }
+
+    //Serialização:
+
+    /**
+     * @return tamanho em bytes de {@link #serialize(ByteBuffer)}.
+     */
+    public int serializedSize(){
+        int n = 4+5*size;
+        for(int i=0; i<size; i++) { n += containers[i].serializedSize(); }
+        return n;
+    }
+
+    /**
+     * Grava o conjunto em b: <tt>int blocos</tt>, e para cada bloco
+     * <tt>char chave, char cardinalidade-1, byte tipo</tt>, seguidos dos
+     * dados de todos os blocos.
+     *
+     * @param b buffer com ao menos serializedSize() bytes livres.
+     */
+    public void serialize(ByteBuffer b){
+        b.putInt(size);
+        for(int i=0; i<size; i++){
+            b.putChar(keys[i]);
+            b.putChar((char)(containers[i].cardinality()-1));
+            b.put( (containers[i] instanceof BitmapContainer) ? typeBitmap : typeArray );
+        }
+        for(int i=0; i<size; i++) { containers[i].serialize(b); }
+    }
+
+    /**
+     * Lê um conjunto gravado por {@link #serialize(ByteBuffer)}, a partir da
+     * posição atual de b (que pode ser um MappedByteBuffer). A posição de b
+     * avança até o fim do conjunto.
+     *
+     * @param b buffer.
+     * @return novo conjunto.
+     */
+    public static RoaringBitmap deserialize(ByteBuffer b){
+        RoaringBitmap r = new RoaringBitmap();
+        int n = b.getInt();
+        if(n<0) { throw new IllegalArgumentException("Quantidade de blocos inválida: "+n); }
+        r.keys = new char[Math.max(4, n)];
+        r.containers = new Container[r.keys.length];
+        int[] cards = new int[n];
+        byte[] types = new byte[n];
+        for(int i=0; i<n; i++){
+            r.keys[i] = b.getChar();
+            cards[i] = b.getChar()+1;
+            types[i] = b.get();
+        }
+        for(int i=0; i<n; i++){
+            if(types[i]==typeBitmap){
+                long[] w = new long[1024];
+                b.asLongBuffer().get(w);
+                b.position(b.position()+8*1024);
+                r.containers[i] = new BitmapContainer(w, cards[i]);
+            } else {
+                char[] c = new char[cards[i]];
+                b.asCharBuffer().get(c);
+                b.position(b.position()+2*c.length);
+                r.containers[i] = new ArrayContainer(c, c.length);
+            }
+        }
+        r.size = n;
+        return r;
+    }
+}
@@ -0,0 +1,201 @@
+package imagebooru.utils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Implementação simples de Metrics, em memória.
+ * Contadores usam LongAdder, então incrementos de varias threads não
+ * disputam a mesma variavel. Timers guardam a distribuição das durações num
+ * histograma de buckets logaritmicos (4 buckets por potencia de 2, erro 
+ * maximo de 25%), o que basta para p50/p99 de latencias de rede.<br/><br/>
+ * 
+ * As taxas (por segundo) são calculadas desde a criação do objeto ou desde
+ * o ultimo {@link #reset()}. {@link #report()} gera um texto com todas as
+ * metricas, que pode ser repassado a um ProgressListener.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class SimpleMetrics implements Metrics {
+    private static final int bucketCount = 248;//4 por expoente, até 2^63.
+    
+    private final ConcurrentHashMap<String,SimpleCounter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String,SimpleTimer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String,LongSupplier> gauges = new ConcurrentHashMap<>();
+    private volatile long startNanos = System.nanoTime();
+    
+    /**
+     * Contador baseado em LongAdder.
+     */
+    public static final class SimpleCounter implements Counter {
+        private final LongAdder value = new LongAdder();
+
+        @Override
+        public void inc() { value.increment(); }
+
+        @Override
+        public void add(long n) { value.add(n); }
+        
+        public long getCount() { return value.sum(); }
+    }
+    
+    /**
+     * Timer com histograma logaritmico.
+     */
+    public static final class SimpleTimer implements Timer {
+        private final AtomicLongArray buckets = new AtomicLongArray(bucketCount);
+        private final LongAdder count = new LongAdder(), total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+        
+        private static int bucketOf(long v){
+            if(v<4) { return (v<0) ? 0 : (int)v; }
+            int e = 63-Long.numberOfLeadingZeros(v);
+            return 4*(e-1) + (int)((v>>>(e-2))&3);
+        }
+        
+        private static long upperBoundOf(int b){
+            if(b<4) { return b; }
+            int e = b/4+1;
+            long lower = (4L+(b%4))<<(e-2);
+            return lower + (1L<<(e-2)) - 1;
+        }
+
+        @Override
+        public void record(long nanos) {
+            buckets.incrementAndGet( bucketOf(nanos) );
+            count.increment();
+            total.add(nanos);
+            long m;
+            while( nanos>(m = max.get()) && !max.compareAndSet(m, nanos) ) { }
+        }
+        
+        public long getCount() { return count.sum(); }
+        
+        public long getMax() { return max.get(); }
+        
+        /**
+         * @return media das durações, em nanosegundos.
+         */
+        public double getMean() {
+            long n = count.sum();
+            return (n==0) ? 0 : (double)total.sum()/n;
+        }
+        
+        /**
+         * Estima um percentil das durações.
+         * 
+         * @param q percentil, entre 0 e 1 (ex. 0.99).
+         * @return limite superior do bucket do percentil, em nanosegundos, 
+         * nunca maior que a maior duração registrada.
+         */
+        public long percentile(double q){
+            if( (q<0)||(q>1) ) { throw new IllegalArgumentException("q deve estar entre 0 e 1."); }
+            long n = 0;
+            long[] c = new long[bucketCount];
+            for(int i=0; i<bucketCount; i++) { n += (c[i] = buckets.get(i)); }
+            if(n==0) { return 0; }
+            long rank = (long)Math.ceil(q*n), seen = 0;
+            for(int i=0; i<bucketCount; i++){
+                seen += c[i];
+                if( (seen>=rank)&&(seen>0) ) { return Math.min(upperBoundOf(i), getMax()); }
+            }
+            return getMax();
+        }
+    }
+
+    @Override
+    public SimpleCounter counter(String name) {
+        return counters.computeIfAbsent(name, k -> new SimpleCounter());
+    }
+
+    @Override
+    public SimpleTimer timer(String name) {
+        return timers.computeIfAbsent(name, k -> new SimpleTimer());
+    }
+
+    @Override
+    public void gauge(String name, LongSupplier value) {
+        if(value==null) { throw new NullPointerException("value não deve ser null"); }
+        gauges.put(name, value);
+    }
+    
+    /**
+     * @param name nome do contador.
+     * @return valor atual, ou 0 se não existir.
+     */
+    public long getCount(String name){
+        SimpleCounter c = counters.get(name);
+        return (c==null) ? 0 : c.getCount();
+    }
+    
+    /**
+     * @param name nome do contador ou timer.
+     * @return eventos por segundo desde a criação ou o ultimo reset().
+     */
+    public double getRate(String name){
+        SimpleTimer t = timers.get(name);
+        long n = (t!=null) ? t.getCount() : getCount(name);
+        double secs = (System.nanoTime()-startNanos)/1e9;
+        return (secs<=0) ? 0 : n/secs;
+    }
+    
+    /**
+     * @param name nome da gauge.
+     * @return valor atual, ou 0 se não existir.
+     */
+    public long getGauge(String name){
+        LongSupplier g = gauges.get(name);
+        return (g==null) ? 0 : g.getAsLong();
+    }
+    
+    /**
+     * Descarta contadores e timers (gauges são mantidas) e reinicia o 
+     * relógio das taxas. Counter/Timer obtidos antes disto deixam de ser 
+     * reportados.
+     */
+    public void reset(){
+        counters.clear();
+        timers.clear();
+        startNanos = System.nanoTime();
+    }
+    
+    /**
+     * Gera um texto com todas as metricas, uma por linha, em ordem de nome.
+     * Timers são reportados em ms.
+     * 
+     * @return relatório das metricas.
+     */
+    public String report(){
+        StringBuilder sb = new StringBuilder();
+        for(Map.Entry<String,SimpleCounter> e : new TreeMap<>(counters).entrySet()){
+            sb.append(String.format("%s: %d (%.1f/s)%n", e.getKey(), 
+                    e.getValue().getCount(), getRate(e.getKey())));
+        }
+        for(Map.Entry<String,SimpleTimer> e : new TreeMap<>(timers).entrySet()){
+            SimpleTimer t = e.getValue();
+            sb.append(String.format("%s: n=%d (%.1f/s) media=%.2fms p50=%.2fms p99=%.2fms max=%.2fms%n",
+                    e.getKey(), t.getCount(), getRate(e.getKey()), t.getMean()/1e6,
+                    t.percentile(0.5)/1e6, t.percentile(0.99)/1e6, t.getMax()/1e6));
+        }
+        for(Map.Entry<String,LongSupplier> e : new TreeMap<>(gauges).entrySet()){
+            sb.append(String.format("%s: %d%n", e.getKey(), e.getValue().getAsLong()));
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Envia {@link #report()} a um ProgressListener.
+     * 
+     * @param pl ouvinte que recebe o relatório.
+     */
+    public void reportTo(ProgressListener pl){
+        pl.doNotifyProgress(report());
+    }
+}
@@ -0,0 +1,102 @@
+package imagebooru.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Junta chamadas simultaneas para a mesma chave numa unica execução.
+ * A primeira thread a pedir uma chave executa a busca; as que pedirem a
+ * mesma chave enquanto ela não terminar esperam e recebem o mesmo resultado
+ * (o mesmo objeto), ou a mesma exceção.<br/><br/>
+ *
+ * Nada é guardado depois que a busca termina: a proxima chamada para a
+ * chave executa de novo. Em especial, uma falha só é repassada a quem já
+ * estava esperando, e não impede novas tentativas. Quem quiser guardar o
+ * resultado deve fazê-lo dentro da busca (e de preferencia conferir o cache
+ * no começo dela, já que uma busca anterior pode ter acabado de terminar).
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ * @param <K> tipo das chaves.
+ * @param <V> tipo dos resultados.
+ */
+public class SingleFlight<K,V> {
+    private final ConcurrentHashMap<K,CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder(), shared = new LongAdder();
+
+    /**
+     * Busca que pode lançar uma exceção verificada.
+     *
+     * @param <V> tipo do resultado.
+     * @param <X> tipo da exceção.
+     */
+    public interface Fetch<V, X extends Exception> {
+        V fetch() throws X;
+    }
+
+    /**
+     * Executa fn, ou espera a execução em andamento para a mesma chave.
+     *
+     * @param <X> tipo da exceção de fn.
+     * @param key chave. Não nula.
+     * @param fn busca, executada somente se não houver outra em andamento
+     * para key.
+     * @return resultado de fn, desta chamada ou da que estava em andamento.
+     * @throws X se a busca falhar. Todas as threads que esperavam recebem a
+     * mesma exceção.
+     * @throws InterruptedException se interrompida esperando a busca de
+     * outra thread.
+     */
+    @SuppressWarnings("unchecked")
+    public <X extends Exception> V execute(K key, Fetch<? extends V, X> fn) throws X, InterruptedException{
+        if(key==null) { throw new NullPointerException("key não deve ser null"); }
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if(running!=null){
+            shared.increment();
+            try{
+                return running.get();
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if(cause instanceof RuntimeException) { throw (RuntimeException)cause; }
+                if(cause instanceof Error) { throw (Error)cause; }
+                throw (X)cause;//Só pode ser o X da busca.
+            }
+        }
+        executions.increment();
+        try{
+            V v = fn.fetch();
+            inFlight.remove(key, mine);//Antes de completar: quem chegar depois busca de novo.
+            mine.complete(v);
+            return v;
+        } catch (Throwable t) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(t);
+            throw t;
+        }
+    }
+
+    /**
+     * @return quantidade de buscas em andamento.
+     */
+    public int getInFlightCount(){
+        return inFlight.size();
+    }
+
+    /**
+     * @return quantidade de buscas executadas.
+     */
+    public long getExecutionCount(){
+        return executions.sum();
+    }
+
+    /**
+     * @return quantidade de chamadas que aproveitaram a busca de outra.
+     */
+    public long getSharedCount(){
+        return shared.sum();
+    }
+}
@@ -7,7 +7,10 @@ package imagebooru.utils;
  *
  * @author Guilherme
  * @created 03/03/2013
+ * @deprecated use {@link NoopMetrics#instance}, que não aloca um objeto por 
+ * uso e tambem serve de Metrics.
  */
+@Deprecated
 public class StubProgressListener implements ProgressListener{
 
     @Override
@@ -0,0 +1,202 @@
+package imagebooru.utils;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorador de ProgressListener que limita a frequencia das notificações.
+ * Cada <tt>doNotifyProgress()</tt> só atualiza o estado do seu job em 
+ * memória; uma unica thread de fundo monta, no maximo 
+ * <tt>maxRendersPerSecond</tt> vezes por segundo e somente se algo mudou, um
+ * texto com uma linha por job, e o repassa ao ouvinte decorado. Assim quem 
+ * notifica nunca espera por I/O de console, e varias notificações entre dois
+ * quadros custam o mesmo que uma.<br/><br/>
+ * 
+ * Por padrão o job é a thread que notifica, então varios PostParsers em 
+ * threads diferentes podem compartilhar o mesmo ouvinte. Como threads de um
+ * pool mudam de tarefa e não avisam quando terminam, um job de thread que
+ * fica <tt>idleJobMillis</tt> sem notificações sai da visão, e volta se a
+ * thread notificar de novo. Para nomear os jobs explicitamente, use
+ * {@link #forJob(java.lang.String) forJob()}; esses nunca expiram, e devem
+ * ser encerrados com {@link Job#finish()}.
+ *
+ * @author Guilherme
+ * @created 19/10/2026
+ * @since 2.5
+ */
+public class ThrottledProgressListener implements ProgressListener, Closeable {
+    private final ProgressListener delegate;
+    private final ConcurrentHashMap<String,Job> jobs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService renderer;
+    private final long idleJobNanos;
+    private volatile boolean dirty = false;
+    
+    /**
+     * Estado de um job, e ProgressListener que o atualiza.
+     */
+    public final class Job implements ProgressListener {
+        private final String name;
+        private volatile boolean explicit = false;//Obtido por forJob(): não expira.
+        private volatile long lastUpdate = System.nanoTime();
+        private String desc = "";
+        private double percent = 0;
+        private int done = 0, left = 0;
+        
+        private Job(String name){
+            this.name = name;
+        }
+
+        @Override
+        public synchronized void doNotifyProgress(String progress_decription) {
+            this.desc = progress_decription;
+            lastUpdate = System.nanoTime();
+            dirty = true;
+        }
+
+        @Override
+        public synchronized void doNotifyProgress(double percentDone) {
+            this.percent = percentDone;
+            lastUpdate = System.nanoTime();
+            dirty = true;
+        }
+
+        @Override
+        public synchronized void doNotifyProgress(int itensDone, int itensLeft) {
+            this.done = itensDone;
+            this.left = itensLeft;
+            this.percent = (done+left>0) ? 100.0*done/(done+left) : 0;
+            lastUpdate = System.nanoTime();
+            dirty = true;
+        }
+        
+        /**
+         * Remove este job da visão.
+         */
+        public void finish(){
+            jobs.remove(name, this);
+            dirty = true;
+        }
+        
+        private synchronized String render(){
+            return String.format("%s [%.1f%% (%d/%d)] %s", name, percent, done, done+left, desc);
+        }
+    }
+    
+    /**
+     * Jobs de thread expiram depois de 60s sem notificações.
+     * 
+     * @param delegate ouvinte que recebe a visão agregada.
+     * @param maxRendersPerSecond maximo de notificações por segundo ao 
+     * delegate. Maior que 0; acima de 1000000 vale 1000000.
+     */
+    public ThrottledProgressListener(ProgressListener delegate, int maxRendersPerSecond){
+        this(delegate, maxRendersPerSecond, 60000);
+    }
+    
+    /**
+     * @param delegate ouvinte que recebe a visão agregada.
+     * @param maxRendersPerSecond maximo de notificações por segundo ao 
+     * delegate. Maior que 0; acima de 1000000 vale 1000000.
+     * @param idleJobMillis tempo sem notificações, em ms, depois do qual um 
+     * job de thread sai da visão. Maior que 0.
+     */
+    public ThrottledProgressListener(ProgressListener delegate, int maxRendersPerSecond, long idleJobMillis){
+        if(delegate==null) { throw new NullPointerException("delegate não deve ser null"); }
+        if(maxRendersPerSecond<=0) { throw new IllegalArgumentException("maxRendersPerSecond deve ser maior que 0."); }
+        if(idleJobMillis<=0) { throw new IllegalArgumentException("idleJobMillis deve ser maior que 0."); }
+        this.delegate = delegate;
+        this.idleJobNanos = TimeUnit.MILLISECONDS.toNanos(idleJobMillis);
+        this.renderer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "throttled-progress");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, 1000000/maxRendersPerSecond);//Em us; 0 faria o scheduleAtFixedRate lançar exceção.
+        renderer.scheduleAtFixedRate(this::render, period, period, TimeUnit.MICROSECONDS);
+    }
+    
+    /**
+     * @param name nome do job.
+     * @return o Job de nome name, criado se necessario.
+     */
+    public Job forJob(String name){
+        if(name==null) { throw new NullPointerException("name não deve ser null"); }
+        Job j = jobs.computeIfAbsent(name, Job::new);
+        j.explicit = true;
+        return j;
+    }
+    
+    private Job current(){
+        return jobs.computeIfAbsent(Thread.currentThread().getName(), Job::new);
+    }
+    
+    /**
+     * Remove os jobs de thread sem notificações há mais de idleJobNanos.
+     */
+    private void expireIdleJobs(){
+        long now = System.nanoTime();
+        for(Job j : jobs.values()){
+            if( !j.explicit && (now-j.lastUpdate>idleJobNanos) && jobs.remove(j.name, j) ) { dirty = true; }
+        }
+    }
+    
+    @Override
+    public void doNotifyProgress(String progress_decription) {
+        current().doNotifyProgress(progress_decription);
+    }
+
+    @Override
+    public void doNotifyProgress(double percentDone) {
+        current().doNotifyProgress(percentDone);
+    }
+
+    @Override
+    public void doNotifyProgress(int itensDone, int itensLeft) {
+        current().doNotifyProgress(itensDone, itensLeft);
+    }
+    
+    /**
+     * Monta a visão agregada, uma linha por job, em ordem de nome.
+     * 
+     * @return texto com o estado de todos os jobs.
+     */
+    public String getStatusView(){
+        StringBuilder sb = new StringBuilder();
+        for(Map.Entry<String,Job> e : new TreeMap<>(jobs).entrySet()){
+            if(sb.length()>0) { sb.append('\n'); }
+            sb.append( e.getValue().render() );
+        }
+        return sb.toString();
+    }
+    
+    private void render(){
+        expireIdleJobs();
+        if(!dirty) { return; }
+        dirty = false;
+        try{
+            delegate.doNotifyProgress( getStatusView() );
+        } catch(RuntimeException ex) {
+            //Uma falha do delegate não deve parar os proximos quadros.
+        }
+    }
+
+    /**
+     * Para a thread de fundo, entregando antes um ultimo quadro se algo
+     * mudou desde o anterior.
+     */
+    @Override
+    public void close() {
+        renderer.shutdown();
+        try{
+            renderer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        render();
+    }
+}